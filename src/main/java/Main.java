@@ -1,17 +1,39 @@
 import api.SpotifyAPI;
+import api.SubmissionIntake;
 import commands.*;
+import coordination.Coordination;
+import coordination.Coordinator;
 import events.CommentWatcher;
+import index.DuplicateIndex;
+import metrics.DiscordRestQueue;
+import metrics.Metrics;
+import metrics.StartupReport;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
 import net.dv8tion.jda.api.requests.GatewayIntent;
+import net.dv8tion.jda.api.requests.RestConfig;
+import net.dv8tion.jda.api.utils.SessionControllerAdapter;
+import repository.Repositories;
+import review.Reconciler;
+import stats.SubmissionStats;
+import tools.BulkTool;
+import tools.CdsTraining;
+import tools.SoakTest;
+import tracing.Tracing;
 import utils.Curator;
 import utils.Utility;
 
 import static spark.Spark.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import javax.security.auth.login.LoginException;
@@ -23,10 +45,63 @@ public class Main {
     private static final Logger logger = LoggerFactory.getLogger(Main.class);
 
     public static void main(String[] args) throws LoginException {
+        StartupReport.mainStarted();
+
+        // offline tools ship in the same jar: java -jar <jar> bulk ...
+        if (args.length > 0 && args[0].equals("bulk")) {
+            BulkTool.main(Arrays.copyOfRange(args, 1, args.length));
+
+            return;
+        }
+
+        // class-list run for the CDS archive (see Dockerfile): java -jar <jar> cds-training
+        if (args.length > 0 && args[0].equals("cds-training")) {
+            CdsTraining.main(Arrays.copyOfRange(args, 1, args.length));
+
+            return;
+        }
+
+        // leak hunting against local stand-ins: java -jar <jar> soak ...
+        if (args.length > 0 && args[0].equals("soak")) {
+            SoakTest.run(Arrays.copyOfRange(args, 1, args.length), () -> main(new String[0]));
+
+            return;
+        }
+
+        ScheduledExecutorService maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "maintenance");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        // the Spotify client and its HTTP stack load in the background while the rest starts up
+        CompletableFuture<SpotifyAPI> spotifyInit = CompletableFuture.supplyAsync(SpotifyAPI::getInstance,
+                maintenance);
+
         // bot
         JDABuilder builder = JDABuilder.createDefault(Utility.readFromDatabase("TOKEN"));
         builder.enableIntents(GatewayIntent.MESSAGE_CONTENT);
-        SpotifyAPI spotifyApi = SpotifyAPI.getInstance();
+
+        // REST queue depth for /metrics; a local Discord stand-in if configured (see tools.DiscordStub)
+        RestConfig restConfig = new RestConfig().setRateLimiterFactory(DiscordRestQueue::new);
+        String discordApiUrl = Utility.readFromDatabase("DISCORD_API_URL");
+        String discordGatewayUrl = Utility.readFromDatabase("DISCORD_GATEWAY_URL");
+
+        if (discordApiUrl != null) {
+            restConfig.setBaseUrl(discordApiUrl);
+        }
+
+        if (discordGatewayUrl != null) {
+            builder.setSessionController(new SessionControllerAdapter() {
+                @Override
+                public String getGateway() {
+                    return discordGatewayUrl;
+                }
+            });
+        }
+
+        builder.setRestConfig(restConfig);
 
         CountDownLatch latch = new CountDownLatch(1);
 
@@ -55,6 +130,16 @@ public class Main {
             return "No authorization code found in the request.";
         });
 
+        // bulk intake for submissions collected outside Discord
+        post("/submissions", new SubmissionIntake());
+
+        // counters and gauges for scraping
+        get("/metrics", (req, res) -> {
+            res.type("text/plain; version=0.0.4");
+
+            return Metrics.render();
+        });
+
         // server specific inputs
         String targetChannelId = Utility.readFromDatabase("TARGET_CHANNEL_ID");
         String helpChannelId = Utility.readFromDatabase("HELP_CHANNEL_ID");
@@ -80,7 +165,60 @@ public class Main {
 
         String[] tokens = tokenList.toArray(new String[0]);
 
-        // comments
+        StartupReport.phase("config");
+
+        // leases and message claims, shared with other replicas
+        Coordination.get().start();
+
+        // stats (load before any submission events come in)
+        SubmissionStats.getInstance().load();
+
+        // duplicate index (stored copy now, rescans of both playlists in the background)
+        DuplicateIndex.getInstance().load();
+
+        StartupReport.phase("stores");
+
+        // drop expired submission history once a day
+        String retentionSetting = Utility.readFromDatabase("HISTORY_RETENTION_MONTHS");
+        int retentionMonths = (retentionSetting != null) ? Integer.parseInt(retentionSetting) : 24;
+
+        maintenance.scheduleWithFixedDelay(() -> {
+            // one replica is enough, the one holding the review lease
+            if (!Coordination.get().holds(Coordinator.REVIEW)) {
+                return;
+            }
+
+            Repositories.get().dropHistoryOlderThan(retentionMonths)
+                    .exceptionally(e -> {
+                        logger.error("Error dropping expired history: {}", unwrap(e).getMessage());
+
+                        return null;
+                    });
+        }, 1, 24 * 60, TimeUnit.MINUTES);
+
+        // pick up playlist edits made directly in Spotify
+        maintenance.scheduleWithFixedDelay(() -> SpotifyAPI.getInstance().refreshDuplicateIndexAsync()
+                .exceptionally(e -> {
+                    logger.error("Error refreshing duplicate index: {}", unwrap(e).getMessage());
+
+                    return null;
+                }), 2, 15, TimeUnit.MINUTES);
+
+        // refresh the Spotify token ahead of expiry (only on the replica holding the lease)
+        spotifyInit.thenAccept(SpotifyAPI::startTokenRefresher);
+
+        // last stats checkpoint, lease release and flush of queued writes on shutdown
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            Coordination.get().stop();
+            SubmissionStats.getInstance().checkpoint();
+            Repositories.get().close();
+        }));
+
+        // config-backed singletons read their settings now, not on the first event thread to use them
+        Tracing.init();
+        Reconciler reconciler = Reconciler.getInstance();
+
+        // comments (waits for the Spotify client if it is still loading)
         CommentWatcher comments = new CommentWatcher(tokenName, adminId, curators, targetChannelId, helpChannelId, 0,
                 false, false);
 
@@ -89,6 +227,9 @@ public class Main {
         TBCommandsCommand tbCommandsCommand = new TBCommandsCommand(commandsChannelId);
         TBHelpCommand tbHelpCommand = new TBHelpCommand(helpChannelId, commandsChannelId);
         TBReviewSubsCommand tbReviewSubsCommand = new TBReviewSubsCommand(curators, targetChannelId, commandsChannelId);
+        TBStatsCommand tbStatsCommand = new TBStatsCommand(commandsChannelId);
+        TBReorderCommand tbReorderCommand = new TBReorderCommand(curators, commandsChannelId);
+        TBReviewCommand tbReviewCommand = new TBReviewCommand(curators, commandsChannelId);
 
         // add event listeners and build
         builder.addEventListeners(comments);
@@ -96,62 +237,92 @@ public class Main {
         builder.addEventListeners(tbCommandsCommand);
         builder.addEventListeners(tbHelpCommand);
         builder.addEventListeners(tbReviewSubsCommand);
+        builder.addEventListeners(tbStatsCommand);
+        builder.addEventListeners(tbReorderCommand);
+        builder.addEventListeners(tbReviewCommand);
+
+        StartupReport.phase("listeners");
 
         // build bot
         JDA jda = builder.build();
 
-        // init spotify app authentication
-        if (adminId != null) {
-            jda.retrieveUserById(adminId).queue(bonjr -> {
-                String initialAuthCode = Utility.readFromDatabase("SPOTIFY_AUTH_CODE");
+        StartupReport.phase("login");
 
-                if (initialAuthCode == null) {
-                    try {
-                        // Send the admin the auth link
-                        String authUrl = spotifyApi.initiateAuthorization();
+        // retries and rate-limit waits scheduled inside JDA
+        if (jda.getRateLimitPool() instanceof ScheduledThreadPoolExecutor) {
+            ScheduledThreadPoolExecutor rateLimitPool = (ScheduledThreadPoolExecutor) jda.getRateLimitPool();
 
-                        if (authUrl != null) {
-                            Utility.sendSecretMessage(bonjr, authUrl, 60);
-                        }
+            Metrics.gauge("discord_scheduled_tasks", () -> rateLimitPool.getQueue().size());
+        }
 
-                        if (!latch.await(60, TimeUnit.SECONDS)) {
-                            logger.error("Timeout while waiting for Spotify auth code. Please restart bot.");
-                        } else {
-                            // Read from file again in case it's changed after initiateAuthorization
-                            String newAuthCode = Utility.readFromDatabase("SPOTIFY_AUTH_CODE");
+        // background reconciliation of submissions, reactions paced
+        reconciler.start(jda, targetChannelId);
 
-                            if (newAuthCode != null) {
-                                spotifyApi.setAuthorizationCode(newAuthCode);
+        // init spotify app authentication
+        if (adminId != null) {
+            // off the JDA callback thread: this reads config and can wait a minute for the auth code
+            jda.retrieveUserById(adminId).queue(bonjr -> maintenance.execute(() -> {
+                    SpotifyAPI spotifyApi = spotifyInit.join();
+                    String initialAuthCode = Utility.readFromDatabase("SPOTIFY_AUTH_CODE");
+
+                    if (initialAuthCode == null) {
+                        try {
+                            // Send the admin the auth link
+                            String authUrl = spotifyApi.initiateAuthorization();
+
+                            if (authUrl != null) {
+                                Utility.sendSecretMessage(bonjr, authUrl, 60);
+                            }
+
+                            if (!latch.await(60, TimeUnit.SECONDS)) {
+                                logger.error("Timeout while waiting for Spotify auth code. Please restart bot.");
+                            } else {
+                                // Read from file again in case it's changed after initiateAuthorization
+                                String newAuthCode = Utility.readFromDatabase("SPOTIFY_AUTH_CODE");
 
-                                spotifyApi.setupAccessAndRefreshToken(); // Get and set the access and refresh tokens
+                                if (newAuthCode != null) {
+                                    spotifyApi.setAuthorizationCode(newAuthCode);
 
-                                // bot is ready
-                                comments.setBotIsReady(true);
+                                    spotifyApi.setupAccessAndRefreshToken(); // Get and set the access and refresh tokens
 
-                                logger.info("Bot is ready.");
+                                    // bot is ready
+                                    comments.setBotIsReady(true);
+
+                                    logger.info("Bot is ready.");
+                                    StartupReport.ready();
+                                }
                             }
+                        } catch (Exception e) {
+                            logger.error("Error completing Spotify authorization: {}", unwrap(e).getMessage());
                         }
-                    } catch (Exception e) {
-                        logger.error("Error: " + e.getMessage());
-                    }
-                } else if (spotifyApi.isAccessExpired()) {
-                    if (spotifyApi.refreshTokens()) {
+                    } else if (spotifyApi.isAccessExpired()) {
+                        if (spotifyApi.refreshTokens()) {
+                            comments.setBotIsReady(true);
+
+                            logger.info("Bot is ready.");
+                            StartupReport.ready();
+                        }
+                    } else {
+                        // bot is ready
                         comments.setBotIsReady(true);
 
                         logger.info("Bot is ready.");
+                        StartupReport.ready();
                     }
-                } else {
-                    // bot is ready
-                    comments.setBotIsReady(true);
 
-                    logger.info("Bot is ready.");
-                }
-
-            });
+            }));
         } else {
             logger.error("No admin ID provided. Authentication is not possible!");
         }
 
     }
 
+    private static Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+
+        return e;
+    }
+
 }
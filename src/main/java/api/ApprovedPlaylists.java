@@ -0,0 +1,147 @@
+package api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import metrics.Metrics;
+import utils.Utility;
+
+/**
+ * The approved playlist as a set of volumes. Spotify caps a playlist at
+ * 10,000 items, so once the active (newest) volume holds VOLUME_SIZE tracks
+ * approvals go to a new one. Older volumes are left as they are.
+ *
+ * Config keys: APPROVED_PLAYLIST_IDS, comma-separated playlist IDs, oldest
+ * first (falls back to APPROVED_PLAYLIST_ID as a single volume);
+ * APPROVED_VOLUME_SIZE (default 9500).
+ */
+class ApprovedPlaylists {
+    private static final Logger logger = LoggerFactory.getLogger(ApprovedPlaylists.class);
+
+    private static final String IDS_KEY = "APPROVED_PLAYLIST_IDS";
+
+    private final int volumeSize;
+    private final AtomicInteger activeSize = new AtomicInteger(-1); // tracks in the active volume, -1 if unknown
+    private volatile List<String> volumes;
+
+    ApprovedPlaylists() {
+        String size = Utility.readFromDatabase("APPROVED_VOLUME_SIZE");
+
+        volumeSize = (size != null) ? Integer.parseInt(size.trim()) : 9500;
+        volumes = read();
+
+        Metrics.gauge("approved_volumes", () -> volumes.size());
+        Metrics.gauge("approved_active_size", activeSize::get);
+    }
+
+    /**
+     * Pick up volumes another replica added.
+     */
+    synchronized void reload() {
+        List<String> current = read();
+
+        if (!current.equals(volumes)) {
+            logger.info("Approved playlist volumes changed: {} -> {}", volumes.size(), current.size());
+
+            volumes = current;
+            activeSize.set(-1); // until the new active volume is scanned
+        }
+    }
+
+    /**
+     * @return playlist IDs, oldest first
+     */
+    List<String> all() {
+        return volumes;
+    }
+
+    /**
+     * @return the volume approvals go to
+     */
+    String active() {
+        List<String> current = volumes;
+
+        return current.get(current.size() - 1);
+    }
+
+    boolean contains(String playlistId) {
+        return volumes.contains(playlistId);
+    }
+
+    /**
+     * @return false until the active volume was scanned or sized
+     */
+    boolean isSizeKnown() {
+        return activeSize.get() >= 0;
+    }
+
+    /**
+     * @return true if adding this many tracks would take the active volume
+     *         past the volume size
+     */
+    boolean isFull(int adding) {
+        return activeSize.get() + adding > volumeSize;
+    }
+
+    /**
+     * @return 1-based number the next volume gets
+     */
+    int nextNumber() {
+        return volumes.size() + 1;
+    }
+
+    /**
+     * Make a freshly created playlist the active volume and store the list.
+     */
+    synchronized void addVolume(String playlistId) {
+        List<String> next = new ArrayList<>(volumes);
+        next.add(playlistId);
+
+        Utility.saveToDatabase(IDS_KEY, String.join(",", next));
+
+        volumes = Collections.unmodifiableList(next);
+        activeSize.set(0);
+
+        logger.info("Approved playlist volume {} created: {}", next.size(), playlistId);
+    }
+
+    /**
+     * Record the size of a scanned or sized volume; only the active one
+     * counts.
+     */
+    void scanned(String playlistId, int size) {
+        if (playlistId.equals(active())) {
+            activeSize.set(size);
+        }
+    }
+
+    void added(int count) {
+        activeSize.addAndGet(count);
+    }
+
+    // private functions -------
+
+    private static List<String> read() {
+        String ids = Utility.readFromDatabase(IDS_KEY);
+        List<String> volumes = new ArrayList<>();
+
+        if (ids != null) {
+            for (String id : ids.split(",")) {
+                if (!id.trim().isEmpty()) {
+                    volumes.add(id.trim());
+                }
+            }
+        }
+
+        if (volumes.isEmpty()) {
+            volumes.add(Utility.readFromDatabase("APPROVED_PLAYLIST_ID"));
+        }
+
+        return Collections.unmodifiableList(volumes);
+    }
+}
@@ -0,0 +1,206 @@
+package api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.BadGatewayException;
+import se.michaelthelin.spotify.exceptions.detailed.BadRequestException;
+import se.michaelthelin.spotify.exceptions.detailed.ForbiddenException;
+import se.michaelthelin.spotify.exceptions.detailed.InternalServerErrorException;
+import se.michaelthelin.spotify.exceptions.detailed.NotFoundException;
+import se.michaelthelin.spotify.exceptions.detailed.ServiceUnavailableException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+import se.michaelthelin.spotify.exceptions.detailed.UnauthorizedException;
+import utils.Json;
+
+/**
+ * Spotify transport on java.net.http instead of the library's default
+ * Apache client.
+ *
+ * One HttpClient is shared by every request: it negotiates HTTP/2 where the
+ * server offers it (api.spotify.com does), so concurrent page fetches and
+ * track lookups are multiplexed over one kept-alive connection instead of
+ * each waiting for a pooled one. Connect and per-request timeouts are
+ * explicit, bodies are read as a stream and gzip is decoded on the fly when
+ * enabled. Status codes map to the same exceptions as the library's own
+ * manager, so callers can't tell the difference.
+ */
+public class JdkHttpManager implements IHttpManager {
+    private static final Logger logger = LoggerFactory.getLogger(JdkHttpManager.class);
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final boolean gzip;
+
+    /**
+     * @param connectTimeout connection setup, TLS included
+     * @param requestTimeout whole request, until the response headers arrive
+     * @param gzip           ask for gzip-encoded responses
+     */
+    public JdkHttpManager(Duration connectTimeout, Duration requestTimeout, boolean gzip) {
+        this.requestTimeout = requestTimeout;
+        this.gzip = gzip;
+
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(Executors.newCachedThreadPool(r -> {
+                    Thread thread = new Thread(r, "spotify-http");
+                    thread.setDaemon(true);
+
+                    return thread;
+                }))
+                .build();
+    }
+
+    // public functions -------
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException {
+        return send(request(uri, headers, null).GET().build());
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return send(request(uri, headers, body).POST(publisher(body)).build());
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return send(request(uri, headers, body).PUT(publisher(body)).build());
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return send(request(uri, headers, body).method("DELETE", publisher(body)).build());
+    }
+
+    // private functions -------
+
+    private HttpRequest.Builder request(URI uri, Header[] headers, HttpEntity body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(requestTimeout);
+        boolean hasContentType = false;
+
+        if (headers != null) {
+            for (Header header : headers) {
+                builder.header(header.getName(), header.getValue());
+                hasContentType |= header.getName().equalsIgnoreCase("Content-Type");
+            }
+        }
+
+        // form bodies (token refresh) carry their content type on the entity
+        if (!hasContentType && body != null && body.getContentType() != null) {
+            builder.header("Content-Type", body.getContentType());
+        }
+
+        if (gzip) {
+            builder.header("Accept-Encoding", "gzip");
+        }
+
+        return builder;
+    }
+
+    private static HttpRequest.BodyPublisher publisher(HttpEntity body) throws IOException {
+        return (body != null) ? HttpRequest.BodyPublishers.ofByteArray(EntityUtils.toByteArray(body))
+                : HttpRequest.BodyPublishers.noBody();
+    }
+
+    private String send(HttpRequest request) throws IOException, SpotifyWebApiException {
+        HttpResponse<InputStream> response;
+
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Interrupted: " + request.uri(), e);
+        }
+
+        String body = readBody(response);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("{} {} -> {} ({})", request.method(), request.uri().getPath(), response.statusCode(),
+                    response.version());
+        }
+
+        if (response.statusCode() < 400) {
+            return body;
+        }
+
+        String message = errorMessage(body, response.statusCode());
+
+        switch (response.statusCode()) {
+            case 400:
+                throw new BadRequestException(message);
+            case 401:
+                throw new UnauthorizedException(message);
+            case 403:
+                throw new ForbiddenException(message);
+            case 404:
+                throw new NotFoundException(message);
+            case 429:
+                Optional<String> retryAfter = response.headers().firstValue("Retry-After");
+
+                throw retryAfter.isPresent()
+                        ? new TooManyRequestsException(message, Integer.parseInt(retryAfter.get().trim()))
+                        : new TooManyRequestsException(message);
+            case 500:
+                throw new InternalServerErrorException(message);
+            case 502:
+                throw new BadGatewayException(message);
+            case 503:
+                throw new ServiceUnavailableException(message);
+            default:
+                return body;
+        }
+    }
+
+    private static String readBody(HttpResponse<InputStream> response) throws IOException {
+        boolean gzipped = response.headers().firstValue("Content-Encoding")
+                .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+                .orElse(false);
+
+        try (InputStream in = gzipped ? new GZIPInputStream(response.body()) : response.body()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // Spotify sends {"error": {"message": ...}}, the accounts service {"error": ..., "error_description": ...}
+    private static String errorMessage(String body, int status) {
+        try {
+            JsonNode root = Json.mapper().readTree(body);
+
+            if (root != null && root.has("error_description")) {
+                return root.get("error_description").asText();
+            }
+
+            if (root != null && root.path("error").has("message")) {
+                return root.path("error").get("message").asText();
+            }
+        } catch (IOException e) {
+            // not JSON, fall through
+        }
+
+        return "HTTP " + status;
+    }
+}
@@ -2,34 +2,80 @@ package api;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import org.apache.hc.core5.http.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import breaker.Breakers;
+import coordination.Coordination;
+import coordination.Coordinator;
+import exceptions.CircuitOpenException;
 import exceptions.DuplicateTrackException;
 import exceptions.MissingTokenException;
 import exceptions.TrackNotFoundException;
+import index.DuplicateIndex;
+import index.IndexedTrack;
+import index.IndexedTrack.Source;
+import index.TrackIdSet;
+import ordering.Move;
+import ordering.MovePlan;
+import ordering.PlaylistItem;
+import ordering.PlaylistOrder;
+import repository.Repositories;
+import review.ReviewResult;
 import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.SpotifyApiThreading;
 import se.michaelthelin.spotify.SpotifyHttpManager;
 import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.BadRequestException;
+import se.michaelthelin.spotify.exceptions.detailed.NotFoundException;
 import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+import se.michaelthelin.spotify.model_objects.special.SnapshotResult;
 import se.michaelthelin.spotify.model_objects.specification.Paging;
+import se.michaelthelin.spotify.model_objects.specification.Playlist;
 import se.michaelthelin.spotify.model_objects.specification.PlaylistTrack;
 import se.michaelthelin.spotify.model_objects.specification.Track;
 import se.michaelthelin.spotify.requests.authorization.authorization_code.AuthorizationCodeRefreshRequest;
 import se.michaelthelin.spotify.requests.authorization.authorization_code.AuthorizationCodeRequest;
-import se.michaelthelin.spotify.requests.data.playlists.AddItemsToPlaylistRequest;
-import se.michaelthelin.spotify.requests.data.tracks.GetTrackRequest;
+import stats.SubmissionStats;
+import tracing.Tracing;
 import utils.ReactionInfo;
+import utils.ResolvedSubmission;
+import utils.SpotifyLinks;
 import utils.Submission;
+import utils.SubmissionBatch;
+import utils.SubmissionOutcome;
+import utils.SubmissionRequest;
+import utils.SubmissionResult;
+import utils.SubmissionResult.Status;
 import utils.Utility;
 
 public class SpotifyAPI {
@@ -37,26 +83,46 @@ public class SpotifyAPI {
     private SpotifyApi spotifyApi;
     private String authorizationCode;
     private AuthorizationCodeCredentials authorizationCodeCredentials;
-    private String accessToken;
-    private String refreshToken;
+    private volatile String accessToken;
+    private volatile String refreshToken;
+    private TrackIdSet approvedHistory; // tracks in the approved volumes, kept across restarts
+    private final String playlistId; // submissions
+    private final ApprovedPlaylists approved; // volumes of the approved playlist
+    private final Map<String, ScannedPlaylist> scans = new ConcurrentHashMap<>(); // playlist ID -> last full scan
+    private final Set<String> approvedBeforePrune = new HashSet<>(); // approved by review since startup, until pruned
+    private boolean historyPruned; // approved history checked against every volume this run
 
-    private static final URI redirectUri = SpotifyHttpManager.makeUri(Utility.readFromDatabase("URI_STRING"));
     private static final Logger logger = LoggerFactory.getLogger(SpotifyAPI.class);
-    private static final String playlistId = Utility.readFromDatabase("PLAYLIST_ID");
-    private static final String approvedPlaylistId = Utility.readFromDatabase("APPROVED_PLAYLIST_ID");
+    private static final int PAGE_LIMIT = 100; // Spotify's max limit per request
+    private static final int TRACKS_PER_LOOKUP = 50; // Spotify's max IDs per "get several tracks"
+    private static final int LOOKUP_LANES = 4; // concurrent track lookups per batch
+    private static final int PAGE_LANES = 4; // concurrent page reads per playlist
+    private static final int TRACK_ID_LENGTH = 22; // base62 Spotify IDs
+    private static final long CALL_TIMEOUT_SECONDS = 10; // per Spotify call
+    private static final int REFRESH_MARGIN_SECONDS = 300; // refresh this long before the token expires
+    private static final Pattern VOLUME_SUFFIX = Pattern.compile("\\s+Vol\\.\\s*\\d+$");
+    private static final String DATA_DIR = System.getenv().getOrDefault("TOKENBOT_DATA_DIR", "data");
 
     // constructor
     private SpotifyAPI() {
+        // read here rather than in static initializers, so loading the class costs nothing
+        URI redirectUri = SpotifyHttpManager.makeUri(Utility.readFromDatabase("URI_STRING"));
+        playlistId = Utility.readFromDatabase("PLAYLIST_ID");
+        approved = new ApprovedPlaylists();
+
         // on boot grab current tokens
         accessToken = Utility.readFromDatabase("AUTH_ACCESS_TOKEN");
         refreshToken = Utility.readFromDatabase("AUTH_REFRESH_TOKEN");
 
         // build
-        this.spotifyApi = new SpotifyApi.Builder()
+        SpotifyApi.Builder builder = new SpotifyApi.Builder()
                 .setClientId(Utility.readFromDatabase("APP_CLIENT_ID"))
                 .setClientSecret(Utility.readFromDatabase("CLIENT_SECRET"))
-                .setRedirectUri(redirectUri)
-                .build();
+                .setRedirectUri(redirectUri);
+
+        configureTransport(builder);
+
+        this.spotifyApi = builder.build();
 
         // set to current tokens (could be null)
         spotifyApi.setAccessToken(accessToken);
@@ -75,72 +141,199 @@ public class SpotifyAPI {
         return instance;
     }
 
+    /**
+     * Blocking variant of {@link #addToPlaylistAsync(String, String, String)}.
+     *
+     * @throws DuplicateTrackException if the track is already queued or approved
+     * @throws TrackNotFoundException  if the track ID does not exist
+     */
     public Boolean addToPlaylist(String trackLink, String userId, String messageId) {
-        if (isAccessExpired()) {
-            refreshTokens();
-        }
-
-        Pattern pattern = Pattern.compile("(spotify:track:|\\/track\\/)([a-zA-Z0-9]+)(\\?|\\s|$)");
-        Matcher matcher = pattern.matcher(trackLink);
-
-        if (matcher.find()) {
-            String trackId = matcher.group(2);
+        return await(addToPlaylistAsync(trackLink, userId, messageId));
+    }
 
-            try {
-                Track track = getTrack(trackId);
+    /**
+     * Adds the track in the given link to the submissions playlist. Duplicates
+     * are checked against the DuplicateIndex, so the only Spotify calls are the
+     * track lookup and the add.
+     *
+     * The future completes exceptionally with DuplicateTrackException or
+     * TrackNotFoundException when the submission is rejected, with
+     * CircuitOpenException when Spotify is considered down (nothing was
+     * added, the submission can be retried later), and with false when
+     * anything else goes wrong.
+     *
+     * @param trackLink message containing a track link or URI
+     * @param userId    submitting user
+     * @param messageId submission message
+     * @return future completing with true once the track is added
+     */
+    public CompletableFuture<Boolean> addToPlaylistAsync(String trackLink, String userId, String messageId) {
+        String trackId = SpotifyLinks.trackId(trackLink);
+
+        if (trackId == null) {
+            // Handle the case where no match was found
+            logger.warn("Provided URL does not match expected format(s): {}", trackLink);
 
-                if (track == null) {
-                    throw new TrackNotFoundException("Valid Spotify track link, but invalid track ID: " + trackId);
-                }
+            return CompletableFuture.completedFuture(false);
+        }
 
-                String[] trackUri = new String[] { getTrack(trackId).getUri() };
+        return ensureAccessAsync()
+                .thenCompose(Tracing.propagate(ready -> getTrackAsync(trackId)))
+                .thenCompose(Tracing.propagate(track -> {
+                    if (track == null) {
+                        throw new TrackNotFoundException("Valid Spotify track link, but invalid track ID: " + trackId);
+                    }
 
-                // Check for duplicates in both submissions and approved playlists
-                Optional<Boolean> duplicateInSubmissions = isDuplicate(playlistId, trackId);
-                Optional<Boolean> duplicateInApproved = isDuplicate(approvedPlaylistId, trackId);
+                    // in-memory lookup, also catches other releases of the same recording
+                    Optional<IndexedTrack> duplicate = DuplicateIndex.getInstance().findDuplicate(track);
 
-                if (duplicateInSubmissions.isPresent() && duplicateInApproved.isPresent()) {
-                    if (duplicateInApproved.get()) {
-                        // Track is already approved
+                    if (approvedHistory().contains(trackId)
+                            || (duplicate.isPresent() && duplicate.get().getSource() == Source.APPROVED)) {
+                        // Track is (or was) approved
                         throw new DuplicateTrackException(
                                 "This track has already been approved and is in the approved playlist!");
-                    } else if (duplicateInSubmissions.get()) {
+                    } else if (duplicate.isPresent()) {
                         // Track is already in submissions queue
                         throw new DuplicateTrackException(
                                 "Duplicate entry found. This track is already in queue for review!");
-                    } else {
-                        // Track is not in either playlist - safe to add
-                        AddItemsToPlaylistRequest addItemsToPlaylistRequest = spotifyApi
-                                .addItemsToPlaylist(playlistId, trackUri)
-                                .position(0)
-                                .build();
+                    }
 
-                        addItemsToPlaylistRequest.execute();
-                        logger.info("Track added to playlist.");
+                    // Track is not in either playlist - safe to add
+                    return request("spotify.addItemsToPlaylist",
+                            () -> spotifyApi.addItemsToPlaylist(playlistId, new String[] { track.getUri() })
+                                    .position(0)
+                                    .build()
+                                    .executeAsync())
+                            .thenApply(Tracing.propagate(snapshot -> {
+                                logger.info("Track added to playlist.");
 
-                        // Add to submissions table in database
-                        Utility.saveTrackSubmission(trackId, userId, messageId);
+                                DuplicateIndex.getInstance().add(track, Source.SUBMISSIONS);
 
-                        return true;
-                    }
+                                // Add to submissions table in database
+                                Utility.saveTrackSubmission(trackId, userId, messageId);
 
-                } else { // error thrown when checking for duplicate
-                    return false;
-                }
+                                return true;
+                            }))
+                            .exceptionally(e -> {
+                                if (unwrap(e) instanceof CircuitOpenException) {
+                                    throw (CircuitOpenException) unwrap(e);
+                                }
 
-            } catch (IOException | SpotifyWebApiException | ParseException e) {
-                logger.error("Error: " + e.getMessage());
+                                logger.error("Error: {}", unwrap(e).getMessage());
 
-                return false;
-            }
+                                return false;
+                            });
+                }));
+    }
 
-        } else {
-            // Handle the case where no match was found
-            logger.warn("Provided URL does not match expected format(s): " + trackLink);
+    /**
+     * Adds a batch of submissions in one pass: both playlists are read once,
+     * tracks are looked up 50 IDs per call, accepted tracks are added 100 URIs
+     * per call and their rows are saved with a single insert.
+     *
+     * Links follow the submission channel's rules (SpotifyLinks). A track that
+     * appears twice in the batch is only added for its first occurrence.
+     *
+     * @param requests submissions, in order
+     * @return future completing with one result per request, in request order
+     */
+    public CompletableFuture<List<SubmissionResult>> submitBatchAsync(List<SubmissionRequest> requests) {
+        SubmissionResult[] results = new SubmissionResult[requests.size()];
+        Map<String, Integer> firstIndex = new LinkedHashMap<>(); // track ID -> first request asking for it
+
+        for (int i = 0; i < requests.size(); i++) {
+            SubmissionRequest request = requests.get(i);
+            String trackId = SpotifyLinks.trackId(request.getLink());
+
+            if (trackId == null || request.getUserId() == null || request.getUserId().isEmpty()) {
+                results[i] = new SubmissionResult(i, trackId, Status.INVALID,
+                        "Expected a Spotify track link and a submitter ID.");
+            } else if (trackId.length() != TRACK_ID_LENGTH) {
+                // would fail the whole lookup call it lands in
+                results[i] = new SubmissionResult(i, trackId, Status.NOT_FOUND, "Invalid track ID.");
+            } else if (firstIndex.containsKey(trackId)) {
+                results[i] = new SubmissionResult(i, trackId, Status.DUPLICATE,
+                        "Same track as item " + firstIndex.get(trackId) + ".", firstIndex.get(trackId));
+            } else {
+                firstIndex.put(trackId, i);
+            }
+        }
 
-            return false;
+        if (firstIndex.isEmpty()) {
+            return CompletableFuture.completedFuture(Arrays.asList(results));
         }
 
+        return ensureAccessAsync()
+                .thenCompose(Tracing.propagate(ready -> {
+                    // rescans of whichever playlists changed bring the duplicate index up to date; older
+                    // approved volumes are covered by the index and the approved history
+                    CompletableFuture<Set<String>> approvedFuture = scanIfChanged(approved.active());
+                    CompletableFuture<Set<String>> queuedFuture = scanIfChanged(playlistId);
+                    CompletableFuture<Map<String, Track>> tracksFuture = getTracksAsync(
+                            new ArrayList<>(firstIndex.keySet()));
+
+                    return CompletableFuture.allOf(approvedFuture, queuedFuture, tracksFuture)
+                            .thenCompose(Tracing.propagate(ignored -> {
+                                DuplicateIndex index = DuplicateIndex.getInstance();
+                                Map<String, Track> tracks = tracksFuture.join();
+                                Map<String, Integer> batchKeys = new HashMap<>(); // ISRC/name key -> item
+                                List<String> accepted = new ArrayList<>();
+
+                                for (Map.Entry<String, Integer> entry : firstIndex.entrySet()) {
+                                    String trackId = entry.getKey();
+                                    int i = entry.getValue();
+                                    Track track = tracks.get(trackId);
+
+                                    if (track == null) {
+                                        results[i] = new SubmissionResult(i, trackId, Status.NOT_FOUND,
+                                                "Track does not exist.");
+                                        continue;
+                                    }
+
+                                    Optional<IndexedTrack> duplicate = index.findDuplicate(track);
+                                    Integer sameRecording = null;
+
+                                    for (String key : IndexedTrack.of(track, Source.SUBMISSIONS).keys()) {
+                                        if (sameRecording == null) {
+                                            sameRecording = batchKeys.putIfAbsent(key, i);
+                                        } else {
+                                            batchKeys.putIfAbsent(key, i);
+                                        }
+                                    }
+
+                                    if (approvedHistory().contains(trackId) || (duplicate.isPresent()
+                                            && duplicate.get().getSource() == Source.APPROVED)) {
+                                        results[i] = new SubmissionResult(i, trackId, Status.DUPLICATE,
+                                                "Already in the approved playlist.");
+                                    } else if (duplicate.isPresent()) {
+                                        results[i] = new SubmissionResult(i, trackId, Status.DUPLICATE,
+                                                "Already in queue for review.");
+                                    } else if (sameRecording != null) {
+                                        results[i] = new SubmissionResult(i, trackId, Status.DUPLICATE,
+                                                "Same recording as item " + sameRecording + ".", sameRecording);
+                                    } else {
+                                        accepted.add(trackId);
+                                    }
+                                }
+
+                                return addAccepted(requests, firstIndex, tracks, accepted, results);
+                            }));
+                }))
+                .handle((ignored, e) -> {
+                    if (e != null) {
+                        // playlists or tracks unreadable, nothing left was added
+                        logger.error("Error processing submission batch: {}", unwrap(e).getMessage());
+                    }
+
+                    for (int i = 0; i < results.length; i++) {
+                        if (results[i] == null) {
+                            results[i] = new SubmissionResult(i, SpotifyLinks.trackId(requests.get(i).getLink()),
+                                    Status.FAILED, "Could not process this item, try again later.");
+                        }
+                    }
+
+                    return Arrays.asList(results);
+                });
     }
 
     public String initiateAuthorization() throws Exception {
@@ -177,14 +370,65 @@ public class SpotifyAPI {
             spotifyApi.setAccessToken(accessToken);
             spotifyApi.setRefreshToken(refreshToken);
 
-            logger.info("Token lifespan: " + expiresIn + " seconds = " + expiresIn / 60 + " minutes");
+            logger.info("Token lifespan: {} seconds = {} minutes", expiresIn, expiresIn / 60);
 
         } catch (ParseException | SpotifyWebApiException | IOException e) {
-            logger.error("Error: " + e.getMessage());
+            logger.error("Error: {}", e.getMessage());
         }
     }
 
     public boolean isAccessExpired() {
+        return isAccessExpiring(0);
+    }
+
+    /**
+     * Refresh the access token. Only the replica holding the token-refresh
+     * lease talks to Spotify (under a cluster-wide lock); the others pick up
+     * the tokens it stored.
+     */
+    public boolean refreshTokens() {
+        Coordinator coordinator = Coordination.get();
+
+        if (!coordinator.holds(Coordinator.TOKEN_REFRESH)) {
+            return reloadTokens();
+        }
+
+        return coordinator.withLock(Coordinator.TOKEN_REFRESH, () -> {
+            // a previous lease holder may have refreshed while we waited for the lock
+            if (reloadTokens() && !isAccessExpiring(REFRESH_MARGIN_SECONDS)) {
+                return true;
+            }
+
+            return refreshTokensNow();
+        });
+    }
+
+    /**
+     * Periodically refresh the access token ahead of expiry while this
+     * replica holds the token-refresh lease, so other replicas always find a
+     * valid token in the database.
+     */
+    public void startTokenRefresher() {
+        ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-refresher");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                if (Coordination.get().holds(Coordinator.TOKEN_REFRESH)
+                        && isAccessExpiring(REFRESH_MARGIN_SECONDS)) {
+                    refreshTokens();
+                }
+            } catch (RuntimeException e) {
+                logger.error("Error: {}", e.getMessage());
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+    }
+
+    private boolean isAccessExpiring(int marginSeconds) {
         try {
             if (accessToken == null || refreshToken == null) {
                 throw new MissingTokenException("Access/Refresh token(s) missing.");
@@ -197,19 +441,36 @@ public class SpotifyAPI {
             long timeElapsed = (currentTimeInSeconds - authTime);
 
             if (timeElapsed <= expiresIn) {
-                logger.info("Time since last authentication: " + timeElapsed);
+                logger.debug("Time since last authentication: {}", timeElapsed);
             }
 
-            return timeElapsed > expiresIn;
+            return timeElapsed > expiresIn - marginSeconds;
         } catch (MissingTokenException e) { // refresh token will handle both expired and does not exist cases
-            logger.error("Error: " + e.getMessage());
+            logger.error("Error: {}", e.getMessage());
 
             return true;
         }
+    }
+
+    // pick up tokens stored by whichever replica refreshed last
+    private boolean reloadTokens() {
+        String storedAccessToken = Utility.readFromDatabase("AUTH_ACCESS_TOKEN");
+        String storedRefreshToken = Utility.readFromDatabase("AUTH_REFRESH_TOKEN");
+
+        if (storedAccessToken == null || storedRefreshToken == null) {
+            return false;
+        }
+
+        accessToken = storedAccessToken;
+        refreshToken = storedRefreshToken;
+
+        spotifyApi.setAccessToken(accessToken);
+        spotifyApi.setRefreshToken(refreshToken);
 
+        return true;
     }
 
-    public boolean refreshTokens() {
+    private boolean refreshTokensNow() {
         String clientId = Utility.readFromDatabase("APP_CLIENT_ID");
         String secret = Utility.readFromDatabase("CLIENT_SECRET");
 
@@ -234,7 +495,9 @@ public class SpotifyAPI {
 
             logger.info("Access token refreshed.");
 
-            if (newRefreshToken != refreshToken) {
+            if (!newRefreshToken.equals(refreshToken)) {
+                refreshToken = newRefreshToken;
+
                 Utility.saveToDatabase("AUTH_REFRESH_TOKEN", newRefreshToken);
                 spotifyApi.setRefreshToken(newRefreshToken);
 
@@ -243,135 +506,897 @@ public class SpotifyAPI {
 
             return true;
         } catch (IOException | SpotifyWebApiException | ParseException e) {
-            logger.error("Error: " + e.getMessage());
+            logger.error("Error: {}", e.getMessage());
 
             return false;
         }
     }
 
+    /**
+     * Blocking variant of {@link #processSubmissionsAsync()}.
+     */
     public List<ReactionInfo> processSubmissions() throws Exception {
+        try {
+            return processSubmissionsAsync().join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+
+            throw (cause instanceof Exception) ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Reconciles the submissions table against both playlists. The table is
+     * read first and the two playlist scans run concurrently after it: a
+     * submission is added to Spotify before its row is inserted, so a row
+     * read before the scans can't be missing from them unless it was removed.
+     *
+     * @return future completing with the reactions to add
+     */
+    public CompletableFuture<List<ReactionInfo>> processSubmissionsAsync() {
         logger.info("=== Starting processSubmissions() ===");
-        
-        Set<String> approvedTrackIds = fetchPlaylistTracks(approvedPlaylistId);
-        Set<String> submissionTrackIds = fetchPlaylistTracks(playlistId);
 
-        logger.info("Approved playlist ({}) contains {} tracks", approvedPlaylistId, approvedTrackIds.size());
-        logger.info("Submissions playlist ({}) contains {} tracks", playlistId, submissionTrackIds.size());
-        
-        if (!approvedTrackIds.isEmpty()) {
-            logger.info("Approved track IDs: {}", approvedTrackIds);
+        // Fetch all submissions from the database
+        return Repositories.get().fetchAllSubmissions()
+                .thenCompose(Tracing.propagate(submissions -> {
+                    if (submissions.isEmpty()) {
+                        throw new IllegalStateException("Database does not contain any submissions.");
+                    }
+
+                    // an unreadable playlist must fail the run, reading it as empty would archive every submission
+                    CompletableFuture<Void> approvedFuture = scanVolumes();
+                    CompletableFuture<Set<String>> submissionFuture = fetchPlaylistPages(playlistId);
+
+                    // the scan feeds approvedHistory, which is what reconciliation checks against
+                    CompletableFuture<List<ResolvedSubmission>> archived = CompletableFuture
+                            .allOf(approvedFuture, submissionFuture)
+                            .thenCompose(ignored -> reconcile(approvedHistory(), submissionFuture.join(),
+                                    SubmissionBatch.of(submissions)));
+
+                    return archived.thenApply(SpotifyAPI::reactionsFor);
+                }));
+    }
+
+    /**
+     * Rescan whichever playlists changed since they were last scanned here
+     * (by snapshot ID), so an unchanged playlist costs one small call.
+     *
+     * @return future completing with the track IDs in the submissions playlist
+     */
+    public CompletableFuture<Set<String>> refreshPlaylistsAsync() {
+        return ensureAccessAsync()
+                .thenCompose(Tracing.propagate(ready -> {
+                    approved.reload();
+
+                    CompletableFuture<Set<String>> approvedFuture = scanIfChanged(approved.active());
+                    CompletableFuture<Set<String>> submissionFuture = scanIfChanged(playlistId);
+
+                    return CompletableFuture.allOf(approvedFuture, submissionFuture)
+                            .thenApply(ignored -> submissionFuture.join());
+                }));
+    }
+
+    /**
+     * Reconcile some submissions against the approved history and the given
+     * view of the submissions playlist (see {@link #refreshPlaylistsAsync()}),
+     * which must have been taken after the submissions were read.
+     * Resolved submissions are archived and counted in the stats.
+     *
+     * @param submissionTrackIds track IDs in the submissions playlist
+     * @param submissions        submissions to check
+     * @return future completing with the submissions this call archived
+     */
+    public CompletableFuture<List<ResolvedSubmission>> reconcileBatch(Set<String> submissionTrackIds, SubmissionBatch submissions) {
+        return reconcile(approvedHistory(), submissionTrackIds, submissions);
+    }
+
+    /**
+     * @param resolved resolved submissions
+     * @return a checkmark for each Discord message among them (intake
+     *         submissions have no message to react to)
+     */
+    public static List<ReactionInfo> reactionsFor(List<ResolvedSubmission> resolved) {
+        List<ReactionInfo> reactions = new ArrayList<>();
+        Set<String> messages = new HashSet<>(); // a message with several tracks gets one checkmark
+
+        for (ResolvedSubmission entry : resolved) {
+            Submission submission = entry.getSubmission();
+
+            if (submission.getMessageId() != null && messages.add(submission.getMessageId())) {
+                reactions.add(new ReactionInfo(submission.getUserId(), submission.getMessageId(), "✅"));
+            }
         }
-        if (!submissionTrackIds.isEmpty()) {
-            logger.info("Submission track IDs: {}", submissionTrackIds);
+
+        return reactions;
+    }
+
+    /**
+     * Rescan the playlists so the duplicate index picks up changes made
+     * directly in Spotify (curators moving or removing tracks). Approved
+     * volumes are only read again if their snapshot changed.
+     */
+    public CompletableFuture<Void> refreshDuplicateIndexAsync() {
+        return ensureAccessAsync()
+                .thenCompose(ready -> {
+                    approved.reload();
+
+                    return CompletableFuture.allOf(scanVolumes(), fetchPlaylistPages(playlistId));
+                });
+    }
+
+    /**
+     * @param id track ID
+     * @return future completing with the track, or null if Spotify says it
+     *         doesn't exist (404) or the ID is malformed (400); any other
+     *         failure fails the future, with CircuitOpenException while Spotify
+     *         is considered down
+     */
+    public CompletableFuture<Track> getTrackAsync(String id) {
+        return request("spotify.getTrack", () -> spotifyApi.getTrack(id)
+                .build()
+                .executeAsync())
+                .exceptionally(e -> {
+                    Throwable cause = unwrap(e);
+
+                    if (!(cause instanceof NotFoundException || cause instanceof BadRequestException)) {
+                        // transient, the submitter is asked to try again
+                        throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                    }
+
+                    logger.warn("Track {} not found: {}", id, cause.getMessage());
+
+                    return null;
+                });
+    }
+
+    /**
+     * Look up tracks 50 IDs per call, a few calls at a time. IDs must be
+     * well-formed, a malformed one fails the call it is part of.
+     *
+     * @param trackIds track IDs, without duplicates
+     * @return future completing with the tracks that exist, by requested ID
+     */
+    public CompletableFuture<Map<String, Track>> getTracksAsync(List<String> trackIds) {
+        Map<String, Track> found = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+
+        for (int lane = 0; lane < LOOKUP_LANES; lane++) {
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+
+            for (int from = lane * TRACKS_PER_LOOKUP; from < trackIds.size(); from += LOOKUP_LANES
+                    * TRACKS_PER_LOOKUP) {
+                String[] chunk = trackIds.subList(from, Math.min(from + TRACKS_PER_LOOKUP, trackIds.size()))
+                        .toArray(new String[0]);
+
+                chain = chain.thenCompose(Tracing.propagate(ignored -> request("spotify.getSeveralTracks",
+                        () -> spotifyApi.getSeveralTracks(chunk)
+                                .build()
+                                .executeAsync())))
+                        .thenAccept(tracks -> {
+                            // results are positional, unknown IDs come back as null
+                            for (int j = 0; j < tracks.length && j < chunk.length; j++) {
+                                if (tracks[j] != null) {
+                                    found.put(chunk[j], tracks[j]);
+                                }
+                            }
+                        });
+            }
+
+            lanes.add(chain);
         }
 
-        // Fetch all submissions from the database
-        List<Submission> submissions = Utility.fetchAllSubmissions();
+        return CompletableFuture.allOf(lanes.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> found);
+    }
+
+    /**
+     * Reads every track ID in a playlist. The first page tells us the total,
+     * the remaining pages are then requested concurrently.
+     *
+     * @param playlistId playlist to read
+     * @return future completing with the set of track IDs (empty on error)
+     */
+    public CompletableFuture<Set<String>> fetchPlaylistTracksAsync(String playlistId) {
+        logger.info("Fetching tracks from playlist: {}", playlistId);
+
+        return fetchPlaylistPages(playlistId)
+                .thenApply(trackIds -> {
+                    logger.info("Successfully fetched {} unique tracks from playlist {}", trackIds.size(), playlistId);
+
+                    return trackIds;
+                })
+                .exceptionally(e -> {
+                    logger.error("Error fetching tracks from playlist {}: {}", playlistId, unwrap(e).getMessage());
+
+                    return new HashSet<>(); // empty set if error
+                });
+    }
+
+    /**
+     * Put the active approved volume in the order PlaylistOrder picks, with
+     * as few reorder calls as MovePlan can manage. The playlist is read
+     * between two snapshot ID checks, and every move carries the snapshot ID
+     * returned by the previous one, so a playlist edited in the meantime fails
+     * the run instead of being shuffled from a stale view.
+     *
+     * @return future completing with the number of reorder calls made (0 if
+     *         the playlist was already in order); fails with
+     *         ConcurrentModificationException if the playlist changed while it
+     *         was being read
+     */
+    public CompletableFuture<Integer> reorderApprovedAsync() {
+        String id = approved.active();
+
+        return ensureAccessAsync()
+                .thenCompose(Tracing.propagate(ready -> snapshotOf(id)))
+                .thenCompose(Tracing.propagate(snapshot -> fetchPlaylistItems(id)
+                        .thenCompose(Tracing.propagate(items -> snapshotOf(id)
+                                .thenCompose(Tracing.propagate(after -> reorder(id, snapshot, after, items)))))));
+    }
+
+    /**
+     * Approve or reject tracks waiting in the submissions playlist, up to 100
+     * per call. Approved tracks are added to the approved playlist before they
+     * are removed from the submissions playlist, and every remove carries the
+     * snapshot ID the previous one returned, so nothing is removed from a
+     * playlist that changed under us. The submissions behind the moved tracks
+     * are archived and counted right away instead of on the reconciler's next
+     * pass.
+     *
+     * @param trackIds tracks to review, without duplicates
+     * @param approve  true to approve, false to reject
+     * @return future completing with what was moved; a batch that fails part
+     *         way still reports (and archives) the chunks that went through
+     */
+    public CompletableFuture<ReviewResult> reviewAsync(List<String> trackIds, boolean approve) {
+        long start = System.nanoTime();
+
+        return ensureAccessAsync()
+                .thenCompose(Tracing.propagate(ready -> scan(playlistId)))
+                .thenCompose(Tracing.propagate(scan -> {
+                    List<String> queued = new ArrayList<>();
+                    List<String> missing = new ArrayList<>();
+
+                    for (String trackId : trackIds) {
+                        (scan.trackIds.contains(trackId) ? queued : missing).add(trackId);
+                    }
+
+                    List<String> moved = new ArrayList<>(); // chunks run one after another
+                    AtomicInteger calls = new AtomicInteger();
+                    CompletableFuture<String> chain = CompletableFuture.completedFuture(scan.snapshotId);
+
+                    for (int from = 0; from < queued.size(); from += PAGE_LIMIT) {
+                        List<String> chunk = queued.subList(from, Math.min(from + PAGE_LIMIT, queued.size()));
 
-        logger.info("Database contains {} submissions", submissions.size());
+                        chain = chain.thenCompose(Tracing.propagate(snapshot -> moveChunk(chunk, snapshot, approve, calls)))
+                                .thenApply(snapshot -> {
+                                    moved.addAll(chunk);
 
-        if (submissions.isEmpty()) {
-            throw new Exception("Database does not contain any submissions.");
+                                    return snapshot;
+                                });
+                    }
+
+                    return chain.handle((snapshot, e) -> {
+                        long apiMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                        if (e != null) {
+                            logger.error("Error moving reviewed tracks: {}", unwrap(e).getMessage());
+                        } else if (!moved.isEmpty()) {
+                            // our own removals are the only change, no need to rescan next time
+                            Set<String> remaining = new HashSet<>(scan.trackIds);
+                            remaining.removeAll(moved);
+                            scans.put(playlistId, new ScannedPlaylist(snapshot, remaining));
+                        }
+
+                        return resolveReviewed(moved, missing, approve, calls.get(), apiMillis,
+                                (e != null) ? unwrap(e).getMessage() : null);
+                    }).thenCompose(result -> result);
+                }));
+    }
+
+    // token check reads the database, keep it off the caller's thread
+    private CompletableFuture<Void> ensureAccessAsync() {
+        return Tracing.traceAsync("spotify.ensureAccess", () -> CompletableFuture.runAsync(Tracing.propagate(() -> {
+            if (isAccessExpired()) {
+                refreshTokens();
+            }
+        }), SpotifyApiThreading.THREADPOOL));
+    }
+
+    // add in 100-URI calls, back to front at position 0 so the batch reads top-down in request order
+    private CompletableFuture<Void> addAccepted(List<SubmissionRequest> requests, Map<String, Integer> firstIndex,
+            Map<String, Track> tracks, List<String> accepted, SubmissionResult[] results) {
+        List<Submission> added = new ArrayList<>();
+        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+
+        for (int end = accepted.size(); end > 0; end -= PAGE_LIMIT) {
+            List<String> chunk = accepted.subList(Math.max(0, end - PAGE_LIMIT), end);
+            String[] uris = new String[chunk.size()];
+
+            for (int j = 0; j < chunk.size(); j++) {
+                uris[j] = tracks.get(chunk.get(j)).getUri();
+            }
+
+            chain = chain.thenCompose(Tracing.propagate(ignored -> request("spotify.addItemsToPlaylist",
+                    () -> spotifyApi.addItemsToPlaylist(playlistId, uris)
+                            .position(0)
+                            .build()
+                            .executeAsync())
+                    .handle((snapshot, e) -> {
+                        for (String trackId : chunk) {
+                            int i = firstIndex.get(trackId);
+                            SubmissionRequest request = requests.get(i);
+
+                            if (e != null) {
+                                results[i] = new SubmissionResult(i, trackId, Status.FAILED,
+                                        "Could not add the track, try again later.");
+                            } else {
+                                results[i] = new SubmissionResult(i, trackId, Status.ACCEPTED, null);
+                                DuplicateIndex.getInstance().add(tracks.get(trackId), Source.SUBMISSIONS);
+                                added.add(new Submission(trackId, request.getUserId(), request.getMessageId(), 0));
+                            }
+                        }
+
+                        if (e != null) {
+                            logger.error("Error: {}", unwrap(e).getMessage());
+                        }
+
+                        return null;
+                    })));
         }
 
-        // Reactions list
-        List<ReactionInfo> reactions = new ArrayList<>();
+        return chain.thenCompose(Tracing.propagate(ignored -> {
+            logger.info("Batch added {} of {} tracks to playlist.", added.size(), accepted.size());
 
-        for (Submission submission : submissions) {
-            String trackId = submission.getTrackId();
-            String userId = submission.getUserId();
-            String messageId = submission.getMessageId();
-            int submissionId = submission.getSubmissionId();
-
-            logger.info("Processing submission {}: trackId={}, userId={}, messageId={}", 
-                       submissionId, trackId, userId, messageId);
-
-            if (approvedTrackIds.contains(trackId)) {
-                // Track was approved
-                logger.info("✅ Track {} found in APPROVED playlist - adding checkmark and removing from DB", trackId);
-                reactions.add(new ReactionInfo(userId, messageId, "✅"));
-                Utility.deleteSubmission(submissionId);
-            } else if (!submissionTrackIds.contains(trackId)) {
-                // Track was not found in the submissions playlist, implying rejection or removal
-                logger.info("❌ Track {} NOT found in submissions playlist - adding checkmark and removing from DB", trackId);
-                reactions.add(new ReactionInfo(userId, messageId, "✅"));
-                Utility.deleteSubmission(submissionId);
-            } else {
-                logger.info("⏳ Track {} still in submissions playlist - no action taken", trackId);
+            long now = System.currentTimeMillis();
+
+            for (Submission submission : added) {
+                SubmissionStats.getInstance().recordSubmission(submission.getUserId(), now);
+            }
+
+            // the tracks are in the playlist either way, a failed insert only loses the rows
+            return Repositories.get().saveSubmissions(added)
+                    .exceptionally(e -> {
+                        logger.error("Error saving batch submissions: {}", unwrap(e).getMessage());
+
+                        return null;
+                    });
+        }));
+    }
+
+    // same as fetchPlaylistTracksAsync(), but lets errors through so callers
+    // can tell "not in playlist" apart from "could not read playlist"
+    private CompletableFuture<Set<String>> fetchPlaylistPages(String playlistId) {
+        return fetchPlaylistItems(playlistId)
+                .thenApply(items -> {
+                    Set<String> trackIds = new HashSet<>();
+                    List<Track> tracks = new ArrayList<>();
+
+                    for (PlaylistTrack playlistTrack : items) {
+                        if (playlistTrack.getTrack() != null) {
+                            trackIds.add(playlistTrack.getTrack().getId());
+                        }
+
+                        if (playlistTrack.getTrack() instanceof Track) {
+                            tracks.add((Track) playlistTrack.getTrack());
+                        }
+                    }
+
+                    // a full scan is the freshest view of the playlist, keep the index in step
+                    if (approved.contains(playlistId)) {
+                        DuplicateIndex.getInstance().syncVolume(playlistId, tracks, approved.all());
+                        recordApproved(trackIds);
+                        approved.scanned(playlistId, items.size());
+                    } else if (playlistId.equals(this.playlistId)) {
+                        DuplicateIndex.getInstance().sync(Source.SUBMISSIONS, tracks);
+                    }
+
+                    return trackIds;
+                });
+    }
+
+    // every item in playlist order; the first page tells us the total, the rest are read a few at a time
+    private CompletableFuture<List<PlaylistTrack>> fetchPlaylistItems(String playlistId) {
+        return fetchPlaylistPage(playlistId, 0)
+                .thenCompose(Tracing.propagate(first -> {
+                    int pageCount = (first.getTotal() + PAGE_LIMIT - 1) / PAGE_LIMIT;
+                    List<Paging<PlaylistTrack>> pages = new ArrayList<>(Collections.nCopies(Math.max(pageCount, 1),
+                            (Paging<PlaylistTrack>) null));
+                    pages.set(0, first);
+
+                    // each lane reads every PAGE_LANES-th page in turn, so a large playlist can't flood the pool
+                    List<CompletableFuture<Void>> lanes = new ArrayList<>();
+
+                    for (int lane = 0; lane < PAGE_LANES; lane++) {
+                        CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+
+                        for (int page = 1 + lane; page < pageCount; page += PAGE_LANES) {
+                            int index = page;
+
+                            chain = chain.thenCompose(Tracing.propagate(ignored -> fetchPlaylistPage(playlistId,
+                                    index * PAGE_LIMIT)))
+                                    .thenAccept(paging -> pages.set(index, paging));
+                        }
+
+                        lanes.add(chain);
+                    }
+
+                    return CompletableFuture.allOf(lanes.toArray(new CompletableFuture<?>[0]))
+                            .thenApply(ignored -> {
+                                List<PlaylistTrack> items = new ArrayList<>(first.getTotal());
+
+                                for (Paging<PlaylistTrack> page : pages) {
+                                    items.addAll(Arrays.asList(page.getItems()));
+                                }
+
+                                return items;
+                            });
+                }));
+    }
+
+    // approved IDs outlive the playlist scan that found them
+    private void recordApproved(Set<String> trackIds) {
+        TrackIdSet history = approvedHistory();
+        int grown = 0;
+
+        // counted per add, several volumes can be recorded at once
+        for (String trackId : trackIds) {
+            if (TrackIdSet.isValid(trackId) && history.add(trackId)) {
+                grown++;
             }
+        }
 
-            // If a track is still in the submissions playlist, no action is taken as it's pending review
+        history.force();
 
+        if (grown > 0) {
+            logger.info("Approved history grew by {} tracks to {}", grown, history.size());
         }
+    }
 
-        logger.info("=== processSubmissions() complete: {} reactions to add ===", reactions.size());
-        // clean up
+    // a review approves before the next volume scan sees the tracks, keep them through the first prune
+    private synchronized void recordReviewed(List<String> moved) {
+        if (!historyPruned) {
+            approvedBeforePrune.addAll(moved);
+        }
 
-        return reactions;
+        recordApproved(new HashSet<>(moved));
     }
 
-    private Track getTrack(String id) {
-        // sync call for metadata using spotify API
-        GetTrackRequest getTrackRequest = spotifyApi.getTrack(id)
-                .build();
+    // once per run, after every volume has had a full scan: drop tracks taken out while the bot was down
+    private synchronized void pruneHistory() {
+        if (historyPruned) {
+            return;
+        }
 
-        try {
-            Track track = getTrackRequest.execute();
+        Set<String> inVolumes = new HashSet<>(approvedBeforePrune);
 
-            return track;
-        } catch (IOException | SpotifyWebApiException | ParseException e) {
-            logger.error("Error: " + e.getMessage());
+        for (String volume : approved.all()) {
+            ScannedPlaylist scan = scans.get(volume);
+
+            if (scan == null) {
+                return;
+            }
+
+            inVolumes.addAll(scan.trackIds);
         }
 
-        return null;
+        TrackIdSet history = approvedHistory();
+        int dropped = history.retainAll(inVolumes);
+
+        history.force();
+        historyPruned = true;
+        approvedBeforePrune.clear();
+
+        logger.info("Approved history checked against {} volumes: {} tracks dropped, {} kept", approved.all().size(),
+                dropped, history.size());
     }
 
-    private Optional<Boolean> isDuplicate(String playlistId, String trackId) {
-        try {
-            Set<String> playlistTrackIds = fetchPlaylistTracks(playlistId);
+    // tracks taken out of a volume since its last scan are no longer approved, unless another volume has them
+    private void forgetRemoved(String volume, Set<String> before, Set<String> after) {
+        TrackIdSet history = approvedHistory();
+        int shrunk = 0;
 
-            return Optional.of(playlistTrackIds.contains(trackId));
-        } catch (Exception e) {
-            logger.error("Error checking for duplicate: " + e.getMessage());
+        for (String trackId : before) {
+            if (!after.contains(trackId) && !inOtherVolume(volume, trackId) && history.remove(trackId)) {
+                shrunk++;
+            }
+        }
+
+        if (shrunk > 0) {
+            history.force();
 
-            // Return Optional.empty() to indicate an error condition
-            return Optional.empty();
+            logger.info("Approved history shrank by {} tracks to {}", shrunk, history.size());
         }
     }
 
-    private Set<String> fetchPlaylistTracks(String playlistId) {
-        logger.info("Fetching tracks from playlist: {}", playlistId);
-        Set<String> trackIds = new HashSet<>();
-        int offset = 0;
-        final int limit = 100; // Spotify's max limit per request
-        Paging<PlaylistTrack> paging;
+    // a volume not scanned yet might hold the track, so it counts as holding it
+    private boolean inOtherVolume(String volume, String trackId) {
+        for (String other : approved.all()) {
+            if (other.equals(volume)) {
+                continue;
+            }
 
-        try {
-            do {
-                paging = spotifyApi.getPlaylistsItems(playlistId)
-                        .limit(limit)
-                        .offset(offset)
-                        .build()
-                        .execute();
+            ScannedPlaylist scan = scans.get(other);
 
-                logger.info("Fetched {} items from playlist {} (offset: {}, total: {})", 
-                           paging.getItems().length, playlistId, offset, paging.getTotal());
+            if (scan == null || scan.trackIds.contains(trackId)) {
+                return true;
+            }
+        }
 
-                for (PlaylistTrack playlistTrack : paging.getItems()) {
-                    String trackId = playlistTrack.getTrack().getId();
-                    trackIds.add(trackId);
-                    logger.debug("Found track in playlist {}: {}", playlistId, trackId);
+        return false;
+    }
+
+    private synchronized TrackIdSet approvedHistory() {
+        if (approvedHistory == null) {
+            Path file = Paths.get(DATA_DIR, "approved-tracks.idx");
+
+            try {
+                approvedHistory = TrackIdSet.open(file);
+            } catch (IOException e) {
+                // no usable data directory (read-only or ephemeral filesystem): keep it for this run only
+                logger.error("Error: {}", e.getMessage());
+
+                try {
+                    Path tmp = Files.createTempFile("approved-tracks", ".idx");
+                    Files.delete(tmp);
+
+                    approvedHistory = TrackIdSet.open(tmp);
+                } catch (IOException inner) {
+                    throw new IllegalStateException("Could not open approved track history", inner);
                 }
+            }
 
-                offset += limit;
-            } while (offset < paging.getTotal());
+            logger.info("Opened approved track history with {} tracks", approvedHistory.size());
+        }
 
-            logger.info("Successfully fetched {} unique tracks from playlist {}", trackIds.size(), playlistId);
-            return trackIds; // return set of track ids
-        } catch (IOException | SpotifyWebApiException | ParseException e) {
-            logger.error("Error fetching tracks from playlist {}: {}", playlistId, e.getMessage());
+        return approvedHistory;
+    }
 
-            return trackIds; // empty set if error
+    private CompletableFuture<Set<String>> scanIfChanged(String id) {
+        return scan(id).thenApply(scan -> scan.trackIds);
+    }
+
+    // the last scan if the snapshot is unchanged, a fresh one otherwise
+    private CompletableFuture<ScannedPlaylist> scan(String id) {
+        return snapshotOf(id)
+                .thenCompose(Tracing.propagate(snapshot -> {
+                    ScannedPlaylist last = scans.get(id);
+
+                    if (last != null && snapshot != null && last.snapshotId.equals(snapshot)) {
+                        return CompletableFuture.completedFuture(last);
+                    }
+
+                    return fetchPlaylistPages(id).thenApply(trackIds -> {
+                        ScannedPlaylist scan = new ScannedPlaylist(snapshot, trackIds);
+                        ScannedPlaylist previous = scans.put(id, scan);
+
+                        if (previous != null && approved.contains(id)) {
+                            forgetRemoved(id, previous.trackIds, trackIds);
+                        }
+
+                        return scan;
+                    });
+                }));
+    }
+
+    // add (when approving) then remove one chunk, the remove guarded by the submissions playlist snapshot
+    private CompletableFuture<String> moveChunk(List<String> chunk, String snapshot, boolean approve,
+            AtomicInteger calls) {
+        String[] uris = new String[chunk.size()];
+        JsonArray removals = new JsonArray();
+
+        for (int i = 0; i < chunk.size(); i++) {
+            uris[i] = "spotify:track:" + chunk.get(i);
+
+            JsonObject removal = new JsonObject();
+            removal.addProperty("uri", uris[i]);
+            removals.add(removal);
+        }
+
+        calls.addAndGet(approve ? 2 : 1);
+
+        CompletableFuture<?> added = approve
+                ? volumeFor(uris.length)
+                        .thenCompose(Tracing.propagate(volume -> request("spotify.addItemsToPlaylist",
+                                () -> spotifyApi.addItemsToPlaylist(volume, uris)
+                                        .build()
+                                        .executeAsync())))
+                        .thenRun(() -> approved.added(uris.length))
+                : CompletableFuture.completedFuture(null);
+
+        return added.thenCompose(Tracing.propagate(ignored -> request("spotify.removeItemsFromPlaylist",
+                () -> spotifyApi.removeItemsFromPlaylist(playlistId, removals)
+                        .snapshotId(snapshot)
+                        .build()
+                        .executeAsync())))
+                .thenApply(SnapshotResult::getSnapshotId);
+    }
+
+    // archive the submissions behind the moved tracks and bring the caches in step
+    private CompletableFuture<ReviewResult> resolveReviewed(List<String> moved, List<String> missing,
+            boolean approve, int calls, long apiMillis, String error) {
+        if (moved.isEmpty()) {
+            return CompletableFuture.completedFuture(
+                    new ReviewResult(moved, missing, new ArrayList<>(), calls, apiMillis, error));
         }
+
+        DuplicateIndex.getInstance().resolve(moved, approve);
+
+        if (approve) {
+            recordReviewed(moved);
+        }
+
+        return Repositories.get().fetchSubmissionsFor(moved, List.of())
+                .thenCompose(submissions -> {
+                    SubmissionOutcome outcome = approve ? SubmissionOutcome.APPROVED : SubmissionOutcome.REMOVED;
+                    List<ResolvedSubmission> resolved = new ArrayList<>();
+
+                    for (Submission submission : submissions) {
+                        resolved.add(ResolvedSubmission.of(submission, outcome));
+                    }
+
+                    // the reconciler may have resolved some of these already; only what this call archived counts
+                    return archive(resolved);
+                })
+                .thenApply(archived -> {
+                    logger.info("{} {} tracks ({} submissions) in {} calls, {} ms", approve ? "Approved" : "Rejected",
+                            moved.size(), archived.size(), calls, apiMillis);
+
+                    return new ReviewResult(moved, missing, archived, calls, apiMillis, error);
+                });
+    }
+
+    private CompletableFuture<Integer> reorder(String id, String snapshot, String after, List<PlaylistTrack> items) {
+        if (!after.equals(snapshot)) {
+            throw new ConcurrentModificationException("Playlist " + id + " changed while reading it");
+        }
+
+        List<PlaylistItem> metadata = new ArrayList<>(items.size());
+
+        for (PlaylistTrack item : items) {
+            metadata.add(PlaylistItem.of(item));
+        }
+
+        List<Move> moves = MovePlan.plan(PlaylistOrder.target(metadata, System.currentTimeMillis()));
+
+        logger.info("Reordering playlist {}: {} items, {} moves", id, items.size(), moves.size());
+
+        return applyMoves(id, snapshot, moves).thenApply(last -> moves.size());
+    }
+
+    private CompletableFuture<String> snapshotOf(String id) {
+        return request("spotify.getPlaylist", () -> spotifyApi.getPlaylist(id)
+                .fields("snapshot_id")
+                .build()
+                .executeAsync())
+                .thenApply(Playlist::getSnapshotId);
+    }
+
+    // one call at a time, each against the snapshot the previous one produced
+    private CompletableFuture<String> applyMoves(String id, String snapshot, List<Move> moves) {
+        CompletableFuture<String> chain = CompletableFuture.completedFuture(snapshot);
+
+        for (Move move : moves) {
+            chain = chain.thenCompose(Tracing.propagate(current -> request("spotify.reorderPlaylistsItems",
+                    () -> spotifyApi.reorderPlaylistsItems(id, move.getRangeStart(), move.getInsertBefore())
+                            .range_length(move.getRangeLength())
+                            .snapshot_id(current)
+                            .build()
+                            .executeAsync())
+                    .thenApply(SnapshotResult::getSnapshotId)));
+        }
+
+        return chain;
+    }
+
+    // each approved volume, rescanned only if its snapshot changed
+    private CompletableFuture<Void> scanVolumes() {
+        List<CompletableFuture<Set<String>>> scansDone = new ArrayList<>();
+
+        for (String volume : approved.all()) {
+            scansDone.add(scanIfChanged(volume));
+        }
+
+        return CompletableFuture.allOf(scansDone.toArray(new CompletableFuture<?>[0]))
+                .thenRun(this::pruneHistory);
+    }
+
+    // the active volume, or a new one when this many tracks would not fit
+    private CompletableFuture<String> volumeFor(int adding) {
+        if (!approved.isSizeKnown()) {
+            String active = approved.active();
+
+            return request("spotify.getPlaylist", () -> spotifyApi.getPlaylist(active)
+                    .fields("tracks.total")
+                    .build()
+                    .executeAsync())
+                    .thenCompose(Tracing.propagate(playlist -> {
+                        approved.scanned(active, playlist.getTracks().getTotal());
+
+                        return volumeFor(adding);
+                    }));
+        }
+
+        if (!approved.isFull(adding)) {
+            return CompletableFuture.completedFuture(approved.active());
+        }
+
+        String first = approved.all().get(0);
+        int number = approved.nextNumber();
+
+        // named after the first volume and just as public
+        return request("spotify.getPlaylist", () -> spotifyApi.getPlaylist(first)
+                .fields("name,public")
+                .build()
+                .executeAsync())
+                .thenCompose(Tracing.propagate(template -> request("spotify.getCurrentUsersProfile",
+                        () -> spotifyApi.getCurrentUsersProfile()
+                                .build()
+                                .executeAsync())
+                        .thenCompose(Tracing.propagate(user -> request("spotify.createPlaylist",
+                                () -> spotifyApi.createPlaylist(user.getId(), volumeName(template.getName(), number))
+                                        .public_(template.getIsPublicAccess())
+                                        .build()
+                                        .executeAsync())))))
+                .thenApply(created -> {
+                    approved.addVolume(created.getId());
+
+                    return created.getId();
+                });
+    }
+
+    private static String volumeName(String firstName, int number) {
+        String base = (firstName != null) ? VOLUME_SUFFIX.matcher(firstName).replaceAll("") : "Approved";
+
+        return base + " Vol. " + number;
+    }
+
+    private CompletableFuture<Paging<PlaylistTrack>> fetchPlaylistPage(String playlistId, int offset) {
+        return request("spotify.getPlaylistItems", () -> spotifyApi.getPlaylistsItems(playlistId)
+                .limit(PAGE_LIMIT)
+                .offset(offset)
+                .build()
+                .executeAsync())
+                .thenApply(paging -> {
+                    logger.debug("Fetched {} items from playlist {} (offset: {}, total: {})",
+                            paging.getItems().length, playlistId, offset, paging.getTotal());
+
+                    return paging;
+                });
+    }
+
+    private CompletableFuture<List<ResolvedSubmission>> reconcile(TrackIdSet approvedTrackIds, Set<String> submissionTrackIds,
+            SubmissionBatch submissions) {
+        logger.debug("Reconciling {} submissions ({} tracks) against approved history ({} tracks) and submissions playlist ({} tracks)",
+                submissions.size(), submissions.distinctTracks(), approvedTrackIds.size(), submissionTrackIds.size());
+
+        // one lookup per distinct track, one byte per row
+        byte[] outcomes = submissions.reconcile(approvedTrackIds, submissionTrackIds);
+        List<ResolvedSubmission> resolved = new ArrayList<>();
+        int pending = 0;
+
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i] == SubmissionBatch.PENDING) {
+                // still in the submissions playlist, pending review
+                pending++;
+                continue;
+            }
+
+            // only resolved rows become objects
+            Submission submission = submissions.toSubmission(i);
+            boolean approved = outcomes[i] == SubmissionBatch.APPROVED;
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Submission {} {}: track={} user={}", submission.getSubmissionId(),
+                        approved ? "approved" : "removed", submission.getTrackId(), submission.getUserId());
+            }
+
+            // approved, or no longer in the submissions playlist (rejected/removed)
+            resolved.add(ResolvedSubmission.of(submission,
+                    approved ? SubmissionOutcome.APPROVED : SubmissionOutcome.REMOVED));
+        }
+
+        logger.info("Reconciled {} submissions: {} resolved, {} pending", submissions.size(), resolved.size(),
+                pending);
+
+        return archive(resolved);
+    }
+
+    // move resolved rows to the history table in one transaction, counting only the rows this call archived:
+    // the same submission can be resolved by a review and by the reconciler, or on two replicas
+    private CompletableFuture<List<ResolvedSubmission>> archive(List<ResolvedSubmission> resolved) {
+        if (resolved.isEmpty()) {
+            return CompletableFuture.completedFuture(resolved);
+        }
+
+        return Repositories.get().archiveSubmissions(resolved)
+                .thenApply(archived -> {
+                    for (ResolvedSubmission entry : archived) {
+                        SubmissionStats.getInstance().recordOutcome(entry.getSubmission().getUserId(),
+                                entry.getOutcome() == SubmissionOutcome.APPROVED);
+                    }
+
+                    return archived;
+                })
+                .exceptionally(e -> {
+                    logger.error("Error archiving resolved submissions: {}", unwrap(e).getMessage());
+
+                    return new ArrayList<>();
+                });
+    }
+
+    /**
+     * Pick the HTTP transport and, for local runs and benchmarks, the API
+     * host. Config keys:
+     * SPOTIFY_TRANSPORT "jdk" (default, HTTP/2 via java.net.http) or "apache"
+     * (the library's own client); SPOTIFY_CONNECT_TIMEOUT_MS (default 5000);
+     * SPOTIFY_GZIP (default true); SPOTIFY_API_URL, e.g. http://localhost:8089
+     * to talk to tools.SpotifyStub instead of api.spotify.com.
+     */
+    private static void configureTransport(SpotifyApi.Builder builder) {
+        String transport = Utility.readFromDatabase("SPOTIFY_TRANSPORT");
+
+        if (!"apache".equalsIgnoreCase(transport)) {
+            String connectTimeout = Utility.readFromDatabase("SPOTIFY_CONNECT_TIMEOUT_MS");
+            String gzip = Utility.readFromDatabase("SPOTIFY_GZIP");
+
+            builder.setHttpManager(new JdkHttpManager(
+                    Duration.ofMillis((connectTimeout != null) ? Long.parseLong(connectTimeout.trim()) : 5000),
+                    Duration.ofSeconds(CALL_TIMEOUT_SECONDS), !"false".equalsIgnoreCase(gzip)));
+        }
+
+        String apiUrl = Utility.readFromDatabase("SPOTIFY_API_URL");
+
+        if (apiUrl != null && !apiUrl.isEmpty()) {
+            URI uri = URI.create(apiUrl.trim());
+
+            builder.setScheme(uri.getScheme())
+                    .setHost(uri.getHost())
+                    .setPort((uri.getPort() != -1) ? uri.getPort() : ("https".equals(uri.getScheme()) ? 443 : 80));
+
+            logger.info("Using Spotify API at {}", uri);
+        }
+    }
+
+    // every Web API request goes through the Spotify breaker, with the per-call timeout
+    private static <T> CompletableFuture<T> request(String spanName, Supplier<CompletableFuture<T>> call) {
+        return Tracing.traceAsync(spanName,
+                () -> Breakers.SPOTIFY.call(() -> call.get().orTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)));
+    }
+
+    private static final class ScannedPlaylist {
+        private final String snapshotId;
+        private final Set<String> trackIds;
+
+        private ScannedPlaylist(String snapshotId, Set<String> trackIds) {
+            this.snapshotId = snapshotId;
+            this.trackIds = trackIds;
+        }
+    }
+
+    /**
+     * Waits for a future and rethrows its failure as-is (rather than wrapped in
+     * a CompletionException) so blocking callers keep their old catch blocks.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            throw e;
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+
+        return e;
     }
 }
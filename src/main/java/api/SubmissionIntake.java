@@ -0,0 +1,151 @@
+package api;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import spark.Request;
+import spark.Response;
+import spark.Route;
+import tracing.Scope;
+import tracing.Span;
+import tracing.Tracing;
+import utils.Json;
+import utils.SubmissionRequest;
+import utils.SubmissionResult;
+import utils.Utility;
+
+/**
+ * POST /submissions: submit tracks collected outside Discord (web forms,
+ * events) in bulk.
+ *
+ * The body is a JSON array of {"link": ..., "userId": ..., "messageId": ...}
+ * objects (messageId optional) and the reply is one result per item, in the
+ * same order. Requests must carry "Authorization: Bearer <INTAKE_API_KEY>";
+ * the endpoint is disabled while that config key is unset.
+ */
+public class SubmissionIntake implements Route {
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionIntake.class);
+
+    private static final int MAX_ITEMS = 5000; // per request
+    private static final long TIMEOUT_SECONDS = 120; // whole batch, including playlist scans
+
+    @Override
+    @SuppressWarnings("try")
+    public Object handle(Request req, Response res) throws Exception {
+        res.type("application/json");
+
+        String apiKey = Utility.readFromDatabase("INTAKE_API_KEY");
+
+        if (apiKey == null || apiKey.isEmpty()) {
+            res.status(404);
+
+            return error("Submission intake is disabled.");
+        }
+
+        if (!authorized(req.headers("Authorization"), apiKey)) {
+            res.status(401);
+
+            return error("Missing or invalid API key.");
+        }
+
+        List<SubmissionRequest> requests;
+
+        try {
+            requests = parse(req.body());
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            res.status(400);
+
+            return error(e.getMessage());
+        }
+
+        if (requests.size() > MAX_ITEMS) {
+            res.status(413);
+
+            return error("At most " + MAX_ITEMS + " items per request.");
+        }
+
+        Span trace = Tracing.startTrace("intake.batch").setAttribute("intake.items", requests.size());
+
+        try {
+            CompletableFuture<List<SubmissionResult>> batch;
+
+            try (Scope ignored = trace.activate()) {
+                batch = SpotifyAPI.getInstance().submitBatchAsync(requests);
+            }
+
+            List<SubmissionResult> results = batch.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            logger.info("Intake batch of {} items processed.", requests.size());
+
+            return Json.mapper().writeValueAsString(results);
+        } catch (TimeoutException e) {
+            // the batch keeps running, its results are just not reported
+            logger.error("Error: intake batch of {} items timed out.", requests.size());
+
+            res.status(504);
+
+            return error("Timed out, check the playlist before retrying.");
+        } catch (ExecutionException e) {
+            logger.error("Error: {}", e.getCause().getMessage());
+
+            trace.recordError(e);
+            res.status(500);
+
+            return error("Could not process submissions.");
+        } finally {
+            trace.end();
+        }
+    }
+
+    // private functions -------
+
+    private static boolean authorized(String header, String apiKey) {
+        if (header == null || !header.startsWith("Bearer ")) {
+            return false;
+        }
+
+        byte[] given = header.substring("Bearer ".length()).trim().getBytes(StandardCharsets.UTF_8);
+        byte[] expected = apiKey.getBytes(StandardCharsets.UTF_8);
+
+        // constant time, the key must not leak through response timing
+        return MessageDigest.isEqual(given, expected);
+    }
+
+    private static List<SubmissionRequest> parse(String body) throws JsonProcessingException {
+        JsonNode root = Json.mapper().readTree(body);
+
+        if (root == null || !root.isArray()) {
+            throw new IllegalArgumentException("Expected a JSON array of submissions.");
+        }
+
+        List<SubmissionRequest> requests = new ArrayList<>(root.size());
+
+        for (JsonNode item : root) {
+            requests.add(new SubmissionRequest(text(item, "link"), text(item, "userId"), text(item, "messageId")));
+        }
+
+        return requests;
+    }
+
+    private static String text(JsonNode item, String field) {
+        JsonNode value = item.get(field);
+
+        return (value != null && !value.isNull()) ? value.asText() : null;
+    }
+
+    private static String error(String message) throws JsonProcessingException {
+        return Json.mapper().writeValueAsString(Json.mapper().createObjectNode().put("error", message));
+    }
+}
@@ -0,0 +1,66 @@
+package breaker;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeoutException;
+
+import se.michaelthelin.spotify.exceptions.detailed.BadGatewayException;
+import se.michaelthelin.spotify.exceptions.detailed.InternalServerErrorException;
+import se.michaelthelin.spotify.exceptions.detailed.ServiceUnavailableException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+
+/**
+ * The process-wide breakers, one per remote dependency.
+ *
+ * Thresholds are fixed rather than read from the config table: the database
+ * breaker guards that very table.
+ */
+public final class Breakers {
+    /**
+     * Spotify Web API: trips when half of the last 20 calls failed (timeouts,
+     * I/O errors, 429 and 5xx responses) or took 5 s or more; probes after 30 s.
+     */
+    public static final CircuitBreaker SPOTIFY = new CircuitBreaker("spotify", 20, 10, 0.5, 5000, 0.5, 30_000, 3,
+            Breakers::isSpotifyOutage);
+
+    /**
+     * Postgres: trips when half of the last 20 reads and flushes failed to
+     * reach the server or took 2 s or more; probes after 10 s.
+     */
+    public static final CircuitBreaker DATABASE = new CircuitBreaker("database", 20, 10, 0.5, 2000, 0.5, 10_000, 1,
+            Breakers::isDatabaseOutage);
+
+    private Breakers() {
+    }
+
+    /**
+     * @return true if the error means Spotify is unreachable or overloaded,
+     *         rather than that the request itself was wrong
+     */
+    public static boolean isSpotifyOutage(Throwable e) {
+        return e instanceof TimeoutException || e instanceof IOException || e instanceof TooManyRequestsException
+                || e instanceof InternalServerErrorException || e instanceof BadGatewayException
+                || e instanceof ServiceUnavailableException;
+    }
+
+    /**
+     * @return true if the error means the database is unreachable or
+     *         overloaded: connection errors (SQLState class 08), insufficient
+     *         resources (53), operator intervention (57) and timeouts
+     */
+    public static boolean isDatabaseOutage(Throwable e) {
+        while (e != null && !(e instanceof SQLException) && e.getCause() != e) {
+            e = e.getCause(); // RepositoryException and friends wrap the SQLException
+        }
+
+        if (!(e instanceof SQLException)) {
+            return false;
+        }
+
+        String state = ((SQLException) e).getSQLState();
+
+        return e instanceof SQLTimeoutException || state == null || state.startsWith("08") || state.startsWith("53")
+                || state.startsWith("57");
+    }
+}
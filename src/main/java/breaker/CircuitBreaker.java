@@ -0,0 +1,261 @@
+package breaker;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import exceptions.CircuitOpenException;
+import metrics.Metrics;
+
+/**
+ * Circuit breaker for calls to a remote dependency.
+ *
+ * The outcome of the last windowSize calls is kept in a ring. Once at least
+ * minCalls are in it, the breaker opens when the share of failed calls or the
+ * share of calls slower than slowCallMillis reaches its threshold. While open,
+ * calls fail right away with CircuitOpenException. After openMillis the
+ * breaker goes half-open and lets up to `probes` calls through: if they all
+ * succeed in time it closes again, the first failed or slow probe reopens it.
+ *
+ * Only errors matching countsAsFailure count against the dependency, so e.g.
+ * a 404 or a constraint violation doesn't trip it. State changes are logged
+ * and exported as the gauge circuit_state_&lt;name&gt; (0 closed, 1 half-open,
+ * 2 open); rejected calls are counted in circuit_rejected_&lt;name&gt;_total.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final String name;
+    private final int minCalls;
+    private final double failureRate;
+    private final long slowCallNanos;
+    private final double slowCallRate;
+    private final long openNanos;
+    private final int probes;
+    private final Predicate<Throwable> countsAsFailure;
+
+    // guarded by this
+    private final byte[] outcomes; // ring of FAILED | SLOW flags
+    private int next;
+    private int recorded;
+    private int failed;
+    private int slow;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    /**
+     * @param name            dependency name, used in logs and metric names
+     * @param windowSize      calls remembered
+     * @param minCalls        calls needed in the window before it can trip
+     * @param failureRate     share of failed calls that trips it (0-1)
+     * @param slowCallMillis  calls taking at least this long count as slow
+     * @param slowCallRate    share of slow calls that trips it (0-1)
+     * @param openMillis      how long it stays open before probing
+     * @param probes          trial calls let through while half-open
+     * @param countsAsFailure which errors count against the dependency
+     */
+    public CircuitBreaker(String name, int windowSize, int minCalls, double failureRate, long slowCallMillis,
+            double slowCallRate, long openMillis, int probes, Predicate<Throwable> countsAsFailure) {
+        this.name = name;
+        this.outcomes = new byte[windowSize];
+        this.minCalls = Math.min(minCalls, windowSize);
+        this.failureRate = failureRate;
+        this.slowCallNanos = slowCallMillis * 1_000_000;
+        this.slowCallRate = slowCallRate;
+        this.openNanos = openMillis * 1_000_000;
+        this.probes = probes;
+        this.countsAsFailure = countsAsFailure;
+
+        Metrics.gauge("circuit_state_" + name, () -> getState().ordinal());
+    }
+
+    // public functions -------
+
+    /**
+     * Run an asynchronous call through the breaker.
+     *
+     * @return the call's future, or one failed with CircuitOpenException if
+     *         the breaker is open
+     */
+    public <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> call) {
+        if (!tryAcquire()) {
+            return CompletableFuture.failedFuture(rejection());
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            onError(System.nanoTime() - start, e);
+
+            throw e;
+        }
+
+        return future.whenComplete((result, e) -> {
+            if (e != null) {
+                onError(System.nanoTime() - start, e);
+            } else {
+                onSuccess(System.nanoTime() - start);
+            }
+        });
+    }
+
+    /**
+     * Ask to make a call; every permitted call must be followed by onSuccess()
+     * or onError(). Rejections are counted.
+     *
+     * @return false if the breaker is open (or half-open with all probes out)
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            transition(State.HALF_OPEN);
+        }
+
+        if (state == State.CLOSED) {
+            return true;
+        }
+
+        if (state == State.HALF_OPEN && probesStarted < probes) {
+            probesStarted++;
+
+            return true;
+        }
+
+        Metrics.increment("circuit_rejected_" + name + "_total");
+
+        return false;
+    }
+
+    /**
+     * @return true if a call made now would be let through (without taking a
+     *         half-open probe)
+     */
+    public synchronized boolean isCallPermitted() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                return System.nanoTime() - openedAt >= openNanos;
+            default:
+                return probesStarted < probes;
+        }
+    }
+
+    public synchronized void onSuccess(long elapsedNanos) {
+        record(false, elapsedNanos);
+    }
+
+    /**
+     * Record a failed call. Errors that don't count against the dependency
+     * are recorded as successes.
+     */
+    public synchronized void onError(long elapsedNanos, Throwable error) {
+        record(countsAsFailure.test(unwrap(error)), elapsedNanos);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the exception calls fail with while the breaker is open
+     */
+    public CircuitOpenException rejection() {
+        return new CircuitOpenException(name + " is unavailable (circuit open)");
+    }
+
+    // private functions -------
+
+    private void record(boolean failure, long elapsedNanos) {
+        boolean slowCall = elapsedNanos >= slowCallNanos;
+
+        if (state == State.HALF_OPEN) {
+            if (failure || slowCall) {
+                logger.warn("Circuit {} probe failed, staying open", name);
+
+                transition(State.OPEN);
+            } else if (++probesSucceeded >= probes) {
+                transition(State.CLOSED);
+            }
+
+            return;
+        }
+
+        if (state == State.OPEN) {
+            return; // a call started before the breaker opened
+        }
+
+        // replace the oldest outcome
+        if (recorded == outcomes.length) {
+            failed -= outcomes[next] & FAILED;
+            slow -= (outcomes[next] & SLOW) >> 1;
+        } else {
+            recorded++;
+        }
+
+        outcomes[next] = (byte) ((failure ? FAILED : 0) | (slowCall ? SLOW : 0));
+        failed += failure ? 1 : 0;
+        slow += slowCall ? 1 : 0;
+        next = (next + 1) % outcomes.length;
+
+        if (recorded >= minCalls) {
+            if (failed >= failureRate * recorded) {
+                logger.warn("Circuit {} opened: {} of the last {} calls failed", name, failed, recorded);
+
+                transition(State.OPEN);
+            } else if (slow >= slowCallRate * recorded) {
+                logger.warn("Circuit {} opened: {} of the last {} calls took over {} ms", name, slow, recorded,
+                        slowCallNanos / 1_000_000);
+
+                transition(State.OPEN);
+            }
+        }
+    }
+
+    private void transition(State to) {
+        state = to;
+        probesStarted = 0;
+        probesSucceeded = 0;
+
+        if (to == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (to == State.HALF_OPEN) {
+            logger.info("Circuit {} half-open, probing", name);
+        } else {
+            next = 0;
+            recorded = 0;
+            failed = 0;
+            slow = 0;
+
+            logger.info("Circuit {} closed after successful probes", name);
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+
+        return e;
+    }
+}
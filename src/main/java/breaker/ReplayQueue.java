@@ -0,0 +1,126 @@
+package breaker;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import exceptions.CircuitOpenException;
+import metrics.Metrics;
+
+/**
+ * Work parked while a breaker is open, replayed in order once the breaker
+ * lets calls through again.
+ *
+ * Every retryMillis a daemon thread replays parked work one item at a time,
+ * so a half-open breaker only ever sees one probe from here. An item whose
+ * replay fails with CircuitOpenException goes back to the front and waits for
+ * the next round; any other failure drops it. Nothing survives a restart.
+ * The number of parked items is exported as the gauge parked_&lt;name&gt;.
+ */
+public class ReplayQueue {
+    private static final Logger logger = LoggerFactory.getLogger(ReplayQueue.class);
+
+    private final String name;
+    private final CircuitBreaker breaker;
+    private final int capacity;
+    private final Deque<Supplier<CompletableFuture<?>>> parked = new ArrayDeque<>(); // guarded by itself
+
+    /**
+     * @param name        what is parked, used in logs and the metric name
+     * @param breaker     breaker the work waits for
+     * @param capacity    items kept before park() turns work away
+     * @param retryMillis how often the breaker is checked
+     */
+    public ReplayQueue(String name, CircuitBreaker breaker, int capacity, long retryMillis) {
+        this.name = name;
+        this.breaker = breaker;
+        this.capacity = capacity;
+
+        ScheduledExecutorService replayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replay-" + name);
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        replayer.scheduleWithFixedDelay(this::replay, retryMillis, retryMillis, TimeUnit.MILLISECONDS);
+
+        Metrics.gauge("parked_" + name, this::size);
+    }
+
+    // public functions -------
+
+    /**
+     * Park work until the breaker lets calls through.
+     *
+     * @param work starts the call again; its future must fail with
+     *             CircuitOpenException if the breaker is still open
+     * @return false if the queue is full and the work was not parked
+     */
+    public boolean park(Supplier<CompletableFuture<?>> work) {
+        synchronized (parked) {
+            if (parked.size() >= capacity) {
+                return false;
+            }
+
+            parked.addLast(work);
+        }
+
+        return true;
+    }
+
+    public int size() {
+        synchronized (parked) {
+            return parked.size();
+        }
+    }
+
+    // private functions -------
+
+    private void replay() {
+        int replayed = 0;
+
+        while (breaker.isCallPermitted()) {
+            Supplier<CompletableFuture<?>> work;
+
+            synchronized (parked) {
+                work = parked.pollFirst();
+            }
+
+            if (work == null) {
+                break;
+            }
+
+            try {
+                work.get().join();
+                replayed++;
+            } catch (CompletionException | CircuitOpenException e) {
+                Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+
+                if (cause instanceof CircuitOpenException) {
+                    synchronized (parked) {
+                        parked.addFirst(work);
+                    }
+
+                    break;
+                }
+
+                logger.error("Error replaying parked {}: {}", name, cause.getMessage());
+            } catch (RuntimeException e) {
+                logger.error("Error replaying parked {}: {}", name, e.getMessage());
+            }
+        }
+
+        if (replayed > 0) {
+            logger.info("Replayed {} parked {}, {} left", replayed, name, size());
+        }
+    }
+}
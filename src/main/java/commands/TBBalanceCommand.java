@@ -3,6 +3,7 @@ package commands;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import utils.Utility;
 
 import java.util.Objects;
 
@@ -44,24 +45,26 @@ public class TBBalanceCommand extends ListenerAdapter {
 
         // if it's the command
         if (message.equals("]balance") && event.getChannel().getId().equals(commandsChId)) {
-            // count number of tokens
-            int nTokens = 0;
+            // answer once across replicas
+            Utility.runIfClaimed(event, () -> {
+                // count number of tokens
+                int nTokens = 0;
 
-            Member member = event.getMember();
+                Member member = event.getMember();
 
-            if (member != null) {
-                for (int i = 0; i < Objects.requireNonNull(member).getRoles().size(); i++) {
-                    if (member.getRoles().get(i).getName().equals(tokenName)) {
-                        // increase count
-                        nTokens++;
+                if (member != null) {
+                    for (int i = 0; i < Objects.requireNonNull(member).getRoles().size(); i++) {
+                        if (member.getRoles().get(i).getName().equals(tokenName)) {
+                            // increase count
+                            nTokens++;
+                        }
                     }
-                }
-
-                // reply
-                event.getChannel().sendMessage("<@" + event.getAuthor().getId() + ">,"
-                        + " your token balance is: " + nTokens).queue();
-            }
 
+                    // reply
+                    event.getChannel().sendMessage("<@" + event.getAuthor().getId() + ">,"
+                            + " your token balance is: " + nTokens).queue();
+                }
+            });
         }
 
     }
@@ -3,6 +3,7 @@ package commands;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import utils.Utility;
 
 import java.awt.*;
 
@@ -19,7 +20,9 @@ public class TBCommandsCommand extends ListenerAdapter {
     private final String[][] commands = new String[][] {
             { "]balance", "Token balance" },
             { "]commands", "List of commands" },
-            { "]help", "Help info" } };
+            { "]help", "Help info" },
+            { "]stats", "Submission stats" },
+            { "]leaderboard", "Top submitters" } };
 
     private final String commandsChId;
 
@@ -39,26 +42,29 @@ public class TBCommandsCommand extends ListenerAdapter {
 
         // if it's the command, return a list of commands and their functions
         if (message.equals("]commands") && event.getChannel().getId().equals(commandsChId)) {
-            // embed builder
-            EmbedBuilder eb = new EmbedBuilder();
+            // answer once across replicas
+            Utility.runIfClaimed(event, () -> {
+                // embed builder
+                EmbedBuilder eb = new EmbedBuilder();
 
-            eb.setTitle("TokenBot Commands");
-            eb.setColor(new Color(255, 178, 113));
-            eb.setThumbnail("https://static.wikia.nocookie.net/great-characters/images/2/22/" +
-                    "Fujiwara.Chika.full.2474576.png/revision/latest/top-crop/width/360/height/450?cb=20191102191124");
+                eb.setTitle("TokenBot Commands");
+                eb.setColor(new Color(255, 178, 113));
+                eb.setThumbnail("https://static.wikia.nocookie.net/great-characters/images/2/22/" +
+                        "Fujiwara.Chika.full.2474576.png/revision/latest/top-crop/width/360/height/450?cb=20191102191124");
 
-            // add fields
-            for (String[] command : commands) {
-                eb.addField(command[0], "`" + command[1] + "`", true);
-            }
+                // add fields
+                for (String[] command : commands) {
+                    eb.addField(command[0], "`" + command[1] + "`", true);
+                }
 
-            // format clean-up
-            for (int i = commands.length; i < (int) (3 * Math.floor((commands.length + 3) / 3)); i++) {
-                eb.addBlankField(true);
-            }
+                // format clean-up
+                for (int i = commands.length; i < (int) (3 * Math.floor((commands.length + 3) / 3)); i++) {
+                    eb.addBlankField(true);
+                }
 
-            // reply
-            event.getChannel().sendMessageEmbeds(eb.build()).queue();
+                // reply
+                event.getChannel().sendMessageEmbeds(eb.build()).queue();
+            });
         }
 
     }
@@ -3,6 +3,7 @@ package commands;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import utils.Utility;
 
 import java.awt.*;
 
@@ -43,21 +44,24 @@ public class TBHelpCommand extends ListenerAdapter {
         String message = event.getMessage().getContentRaw();
 
         if (message.equals("]help") && event.getChannel().getId().equals(commandsChId)) {
-            // embed builder
-            EmbedBuilder eb = new EmbedBuilder();
+            // answer once across replicas
+            Utility.runIfClaimed(event, () -> {
+                // embed builder
+                EmbedBuilder eb = new EmbedBuilder();
 
-            eb.setTitle("TokenBot");
-            eb.setColor(new Color(255, 178, 113));
+                eb.setTitle("TokenBot");
+                eb.setColor(new Color(255, 178, 113));
 
-            String msg = "\nHi, i'm TokenBot and I was built to help manage submissions on this server " +
-                    "^_^\n\n" +
-                    "To learn how to submit, check out the <#" + helpChId + "> channel for full instructions.\n\n" +
-                    "I also provide some commands `]commands` that you may use, check them out!";
+                String msg = "\nHi, i'm TokenBot and I was built to help manage submissions on this server " +
+                        "^_^\n\n" +
+                        "To learn how to submit, check out the <#" + helpChId + "> channel for full instructions.\n\n" +
+                        "I also provide some commands `]commands` that you may use, check them out!";
 
-            eb.addField("`Version 1.0`", msg, true);
+                eb.addField("`Version 1.0`", msg, true);
 
-            // reply
-            event.getChannel().sendMessageEmbeds(eb.build()).queue();
+                // reply
+                event.getChannel().sendMessageEmbeds(eb.build()).queue();
+            });
         }
 
     }
@@ -0,0 +1,96 @@
+package commands;
+
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import utils.Curator;
+import utils.Utility;
+
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import api.SpotifyAPI;
+import coordination.Coordination;
+import coordination.Coordinator;
+import exceptions.CircuitOpenException;
+
+/**
+ * This is the reorder command. "]reorder" puts the approved playlist in the
+ * order ordering.PlaylistOrder picks (popularity, release date, time since
+ * approval, artists spread out), moving as few tracks as it can.
+ *
+ * Curators only, run by the replica holding the review lease.
+ */
+public class TBReorderCommand extends ListenerAdapter {
+    // variables & constants
+    private final List<Curator> curators;
+    private final String commandsChId;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private static final Logger logger = LoggerFactory.getLogger(TBReorderCommand.class);
+
+    public TBReorderCommand(List<Curator> cu, String cmd_ch) {
+        curators = cu;
+        commandsChId = cmd_ch;
+    }
+
+    @Override
+    public void onMessageReceived(@Nonnull MessageReceivedEvent event) {
+        String message = event.getMessage().getContentRaw();
+
+        if (!message.equals("]reorder") || !event.getChannel().getId().equals(commandsChId)) {
+            return;
+        }
+
+        // reorders go through the same replica as review passes
+        if (!Coordination.get().holds(Coordinator.REVIEW)) {
+            return;
+        }
+
+        User user = event.getAuthor();
+
+        if (!Utility.isCurator(curators, user)) {
+            Utility.sendSecretMessage(user, "You do not have the required permissions to run that command!", 60);
+            return;
+        }
+
+        if (!running.compareAndSet(false, true)) {
+            Utility.sendSecretMessage(user, "Already reordering the playlist, hang on.", 60);
+            return;
+        }
+
+        Utility.sendSecretMessage(user, "Reordering the playlist...", 60);
+
+        SpotifyAPI.getInstance().reorderApprovedAsync()
+                .whenComplete((moves, e) -> {
+                    running.set(false);
+
+                    if (e == null) {
+                        Utility.sendSecretMessage(user, (moves == 0) ? "The playlist is already in order."
+                                : "Playlist reordered with " + moves + " moves.", 60);
+
+                        return;
+                    }
+
+                    Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+
+                    if (cause instanceof ConcurrentModificationException) {
+                        Utility.sendSecretMessage(user, "The playlist changed while I was reading it, try again.", 60);
+                    } else if (cause instanceof CircuitOpenException) {
+                        Utility.sendSecretMessage(user, "Spotify isn't responding right now, try again later.", 60);
+                    } else {
+                        logger.error("Error reordering playlist: {}", cause.getMessage());
+
+                        Utility.sendSecretMessage(user, "Could not finish reordering the playlist, try again.", 60);
+                    }
+                });
+    }
+
+}
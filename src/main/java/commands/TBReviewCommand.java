@@ -0,0 +1,169 @@
+package commands;
+
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import review.Reconciler;
+import review.ReviewResult;
+import utils.Curator;
+import utils.SpotifyLinks;
+import utils.Submission;
+import utils.Utility;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import api.SpotifyAPI;
+import coordination.Coordination;
+import coordination.Coordinator;
+import index.TrackIdSet;
+import repository.Repositories;
+
+/**
+ * These are the review commands. "]approve" and "]reject" take any number of
+ * Spotify track links, track IDs or links to submission messages, separated
+ * by spaces or new lines, and move the tracks out of the submissions
+ * playlist (into the approved one when approving) in 100-track calls. The
+ * submissions are archived and get their reaction in the same pass.
+ *
+ * Curators only, run by the replica holding the review lease.
+ */
+public class TBReviewCommand extends ListenerAdapter {
+    // variables & constants
+    private final List<Curator> curators;
+    private final String commandsChId;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private static final Pattern MESSAGE_LINK = Pattern
+            .compile("https?://(?:ptb\\.|canary\\.)?discord(?:app)?\\.com/channels/\\d+/\\d+/(\\d+)");
+
+    private static final Logger logger = LoggerFactory.getLogger(TBReviewCommand.class);
+
+    public TBReviewCommand(List<Curator> cu, String cmd_ch) {
+        curators = cu;
+        commandsChId = cmd_ch;
+    }
+
+    @Override
+    public void onMessageReceived(@Nonnull MessageReceivedEvent event) {
+        String message = event.getMessage().getContentRaw();
+        String[] parts = message.split("\\s+", 2);
+        boolean approve = parts[0].equals("]approve");
+
+        if (!(approve || parts[0].equals("]reject")) || !event.getChannel().getId().equals(commandsChId)) {
+            return;
+        }
+
+        // only the replica holding the review lease moves tracks
+        if (!Coordination.get().holds(Coordinator.REVIEW)) {
+            return;
+        }
+
+        User user = event.getAuthor();
+
+        if (!Utility.isCurator(curators, user)) {
+            Utility.sendSecretMessage(user, "You do not have the required permissions to run that command!", 60);
+            return;
+        }
+
+        Set<String> trackIds = new LinkedHashSet<>();
+        List<String> messageIds = new ArrayList<>();
+
+        for (String token : (parts.length > 1) ? parts[1].split("\\s+") : new String[0]) {
+            String trackId = SpotifyLinks.trackId(token);
+            Matcher link = MESSAGE_LINK.matcher(token);
+
+            if (trackId != null) {
+                trackIds.add(trackId);
+            } else if (link.find()) {
+                messageIds.add(link.group(1));
+            } else if (TrackIdSet.isValid(token)) {
+                trackIds.add(token);
+            }
+        }
+
+        if (trackIds.isEmpty() && messageIds.isEmpty()) {
+            Utility.sendSecretMessage(user, "Usage: `" + (approve ? "]approve" : "]reject")
+                    + " <track links, track IDs or submission message links>`", 60);
+            return;
+        }
+
+        if (!running.compareAndSet(false, true)) {
+            Utility.sendSecretMessage(user, "Still working through the last batch, hang on.", 60);
+            return;
+        }
+
+        tracksFor(messageIds)
+                .thenCompose(linked -> {
+                    trackIds.addAll(linked);
+
+                    return SpotifyAPI.getInstance().reviewAsync(new ArrayList<>(trackIds), approve);
+                })
+                .whenComplete((result, e) -> {
+                    running.set(false);
+
+                    if (e != null) {
+                        Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+
+                        logger.error("Error reviewing tracks: {}", cause.getMessage());
+                        Utility.sendSecretMessage(user, "Could not review those tracks, try again later.", 60);
+
+                        return;
+                    }
+
+                    Reconciler.getInstance().recordReviewed(result.getResolved());
+                    Utility.sendSecretMessage(user, summary(result, approve), 60);
+                });
+    }
+
+    // private functions -------
+
+    // tracks of the submissions posted in the linked messages
+    private static CompletableFuture<List<String>> tracksFor(List<String> messageIds) {
+        if (messageIds.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        return Repositories.get().fetchSubmissionsFor(List.of(), messageIds)
+                .thenApply(submissions -> {
+                    List<String> trackIds = new ArrayList<>();
+
+                    for (Submission submission : submissions) {
+                        trackIds.add(submission.getTrackId());
+                    }
+
+                    return trackIds;
+                });
+    }
+
+    private static String summary(ReviewResult result, boolean approve) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(approve ? "Approved " : "Rejected ").append(result.getMoved().size()).append(" tracks (")
+                .append(result.getResolved().size()).append(" submissions) in ").append(result.getCalls())
+                .append(" calls, ").append(result.getApiMillis()).append(" ms.");
+
+        if (!result.getMissing().isEmpty()) {
+            sb.append("\nNot in the submissions playlist: ").append(result.getMissing().size());
+        }
+
+        if (result.getError() != null) {
+            sb.append("\nStopped early: ").append(result.getError());
+        }
+
+        return sb.toString();
+    }
+
+}
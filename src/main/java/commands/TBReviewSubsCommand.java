@@ -4,8 +4,8 @@ import net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import review.Reconciler;
 import utils.Curator;
-import utils.ReactionInfo;
 import utils.Utility;
 
 import java.util.List;
@@ -15,15 +15,14 @@ import javax.annotation.Nonnull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import api.SpotifyAPI;
-import net.dv8tion.jda.api.entities.emoji.Emoji;
+import coordination.Coordination;
+import coordination.Coordinator;
 
 public class TBReviewSubsCommand extends ListenerAdapter {
     // variables & constants
     private final List<Curator> curators;
     private final String chId;
     private final String commandsChId;
-    private SpotifyAPI spotifyApi;
 
     private static final Logger logger = LoggerFactory.getLogger(TBReviewSubsCommand.class);
 
@@ -32,8 +31,6 @@ public class TBReviewSubsCommand extends ListenerAdapter {
         curators = cu;
         chId = ch;
         commandsChId = cmd_ch;
-
-        spotifyApi = SpotifyAPI.getInstance();
     }
 
     @Override
@@ -42,6 +39,11 @@ public class TBReviewSubsCommand extends ListenerAdapter {
 
         // Check if the message is the command and if it's in the correct channel
         if (message.equals("]reviewSubs") && event.getChannel().getId().equals(commandsChId)) {
+            // only the replica holding the review lease runs review passes
+            if (!Coordination.get().holds(Coordinator.REVIEW)) {
+                return;
+            }
+
             // Check if the user has the required permissions to execute this command
             User user = event.getAuthor();
 
@@ -50,42 +52,43 @@ public class TBReviewSubsCommand extends ListenerAdapter {
                 return;
             }
 
-            // Execute
-            try {
-                List<ReactionInfo> reactions = spotifyApi.processSubmissions();
-
-                if (reactions.size() > 0) {
-                    GuildMessageChannel channel = event.getJDA().getChannelById(GuildMessageChannel.class, chId); // submissions channel
-
-                    for (ReactionInfo reaction : reactions) {
-                        channel.retrieveMessageById(reaction.messageId)
-                                .queue(msg -> msg.addReaction(Emoji.fromUnicode(reaction.emoji)).queue(),
-                                        throwable -> logger
-                                                .error("Could not react to message: " + throwable.getMessage()));
-                    }
-
-                    // announcement in submissions channel
-                    String submittedRoleId = Utility.readFromDatabase("SUBMITTED_ROLE_ID");
-
-                    String announcementMessage = "<@&" + submittedRoleId + ">\n\n" +
-                            "Just finished listening to all of the latest submissions and added a few to the playlist!\n\n"
-                            +
-                            "There should be a ✅ reaction if I listened to it, so let me know if I missed your submission. "
-                            +
-                            "Going to play with the playlist order now <:KannaHello:771929794317254686>\n\n"
-                            +
-                            "I'll be reposting any stories on IG that mention the playlist, just make sure to tag me so I see it!\n\n"
-                            +
-                            "If you wish to not be pinged until you submit another track, just type !dpm in <#" + commandsChId + "> and it should remove your \"Submitted\" role.";
-
-                    // Send the announcement message
-                    channel.sendMessage(announcementMessage).queue();
-                } else {
-                    logger.error("No actionable submissions found.");
-                }
-            } catch (Exception e) {
-                logger.error("Error processing submissions: " + e.getMessage());
-            }
+            Reconciler reconciler = Reconciler.getInstance();
+
+            Utility.sendSecretMessage(user, "Reviewing what's left. " + reconciler.getProgress(), 60);
+
+            // the reconciler has been working through submissions in the background, finish its pass
+            reconciler.flush()
+                    .thenAccept(resolved -> {
+                        if (resolved > 0) {
+                            GuildMessageChannel channel = event.getJDA().getChannelById(GuildMessageChannel.class, chId); // submissions channel
+
+                            // announcement in submissions channel
+                            String submittedRoleId = Utility.readFromDatabase("SUBMITTED_ROLE_ID");
+
+                            String announcementMessage = "<@&" + submittedRoleId + ">\n\n" +
+                                    "Just finished listening to all of the latest submissions and added a few to the playlist!\n\n"
+                                    +
+                                    "There should be a ✅ reaction if I listened to it, so let me know if I missed your submission. "
+                                    +
+                                    "Going to play with the playlist order now <:KannaHello:771929794317254686>\n\n"
+                                    +
+                                    "I'll be reposting any stories on IG that mention the playlist, just make sure to tag me so I see it!\n\n"
+                                    +
+                                    "If you wish to not be pinged until you submit another track, just type !dpm in <#" + commandsChId + "> and it should remove your \"Submitted\" role.";
+
+                            // Send the announcement message
+                            channel.sendMessage(announcementMessage).queue();
+                        } else {
+                            logger.error("No actionable submissions found.");
+                        }
+                    })
+                    .exceptionally(e -> {
+                        Throwable cause = (e.getCause() != null) ? e.getCause() : e;
+
+                        logger.error("Error processing submissions: {}", cause.getMessage());
+
+                        return null;
+                    });
         }
     }
 
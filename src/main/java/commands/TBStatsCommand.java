@@ -0,0 +1,108 @@
+package commands;
+
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import stats.SubmissionStats;
+import stats.UserStats;
+import utils.Utility;
+
+import java.awt.*;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+/**
+ * This is the stats command. Replies with the caller's submission stats and
+ * the server totals, or with the top submitters for "]leaderboard".
+ *
+ * Everything is served from SubmissionStats, no database queries.
+ */
+public class TBStatsCommand extends ListenerAdapter {
+    // variables & constants
+    private final String commandsChId;
+
+    public TBStatsCommand(String cmd_ch) {
+        commandsChId = cmd_ch;
+    }
+
+    /**
+     * Watch guild messages for "]stats" and "]leaderboard".
+     *
+     * @param event guild message event
+     */
+    @Override
+    public void onMessageReceived(@Nonnull MessageReceivedEvent event) {
+        // grab message
+        String message = event.getMessage().getContentRaw();
+
+        if (!event.getChannel().getId().equals(commandsChId)
+                || !(message.equals("]stats") || message.equals("]leaderboard"))) {
+            return;
+        }
+
+        // answer once across replicas
+        Utility.runIfClaimed(event, () -> reply(event, message));
+    }
+
+    private void reply(MessageReceivedEvent event, String message) {
+        if (message.equals("]stats")) {
+            SubmissionStats stats = SubmissionStats.getInstance();
+            UserStats user = stats.getUser(event.getAuthor().getId());
+
+            // embed builder
+            EmbedBuilder eb = new EmbedBuilder();
+
+            eb.setTitle("Submission Stats");
+            eb.setColor(new Color(255, 178, 113));
+
+            eb.addField("Your submissions", "`" + user.getSubmitted() + "`", true);
+            eb.addField("Approved", "`" + user.getApproved() + "`", true);
+            eb.addField("Approval rate", "`" + percent(user.getApprovalRate()) + "`", true);
+            eb.addField("Current streak", "`" + user.getCurrentStreak() + "`", true);
+            eb.addField("Best streak", "`" + user.getBestStreak() + "`", true);
+            eb.addBlankField(true);
+
+            long reviewed = stats.getTotalApproved() + stats.getTotalRejected();
+            double serverRate = (reviewed == 0) ? 0 : (double) stats.getTotalApproved() / reviewed;
+
+            eb.addField("Server submissions", "`" + stats.getTotalSubmitted() + "`", true);
+            eb.addField("Server approved", "`" + stats.getTotalApproved() + "`", true);
+            eb.addField("Server approval rate", "`" + percent(serverRate) + "`", true);
+
+            // reply
+            event.getChannel().sendMessageEmbeds(eb.build()).queue();
+        } else if (message.equals("]leaderboard")) {
+            List<UserStats> top = SubmissionStats.getInstance().getLeaderboard();
+
+            EmbedBuilder eb = new EmbedBuilder();
+
+            eb.setTitle("Top Submitters");
+            eb.setColor(new Color(255, 178, 113));
+
+            if (top.isEmpty()) {
+                eb.setDescription("No submissions yet!");
+            } else {
+                StringBuilder sb = new StringBuilder();
+
+                for (int i = 0; i < top.size(); i++) {
+                    UserStats user = top.get(i);
+
+                    sb.append(i + 1).append(". <@").append(user.getUserId()).append("> - ")
+                            .append(user.getApproved()).append(" approved / ")
+                            .append(user.getSubmitted()).append(" submitted\n");
+                }
+
+                eb.setDescription(sb.toString());
+            }
+
+            event.getChannel().sendMessageEmbeds(eb.build()).queue();
+        }
+
+    }
+
+    private static String percent(double rate) {
+        return Math.round(rate * 100) + "%";
+    }
+
+}
@@ -0,0 +1,43 @@
+package coordination;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+/**
+ * Holds the process-wide coordinator: Postgres leases/claims, or a local
+ * single-replica coordinator when TOKENBOT_STORE=memory.
+ */
+public final class Coordination {
+    private static Coordinator instance;
+
+    private Coordination() {
+    }
+
+    public static synchronized Coordinator get() {
+        if (instance == null) {
+            if ("memory".equalsIgnoreCase(System.getenv("TOKENBOT_STORE"))) {
+                instance = new LocalCoordinator(replicaId());
+            } else {
+                instance = new PostgresCoordinator(System.getenv("DATABASE_URL"), replicaId());
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Replace the process-wide coordinator (tools and stand-in environments).
+     */
+    public static synchronized void set(Coordinator coordinator) {
+        instance = coordinator;
+    }
+
+    // dyno name when on Heroku, plus a random suffix so a restarted dyno never
+    // inherits the leases of its previous incarnation
+    private static String replicaId() {
+        String dyno = System.getenv("DYNO");
+        String base = (dyno != null) ? dyno : ManagementFactory.getRuntimeMXBean().getName();
+
+        return base + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,53 @@
+package coordination;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Coordinates work between bot replicas.
+ *
+ * Singleton duties (token refresh, review passes) are held as leases that a
+ * replica has to keep renewing; a crashed holder's lease simply runs out and
+ * another replica picks it up. Every incoming Discord message is claimed by
+ * exactly one replica, which then does all the work for it.
+ */
+public interface Coordinator {
+    String TOKEN_REFRESH = "token-refresh";
+    String REVIEW = "review";
+
+    /**
+     * @return ID of this replica
+     */
+    String getReplicaId();
+
+    /**
+     * @param lease lease name (TOKEN_REFRESH, REVIEW)
+     * @return true if this replica currently holds the lease
+     */
+    boolean holds(String lease);
+
+    /**
+     * Claim a Discord message for this replica. Every listener on the claiming
+     * replica gets true for the same message, every other replica gets false.
+     *
+     * @param messageId Discord message ID
+     * @return future completing with true if this replica should handle it
+     */
+    CompletableFuture<Boolean> claimMessage(String messageId);
+
+    /**
+     * Run a task while holding a cluster-wide lock. Blocks until the lock is
+     * available, don't call from JDA event threads.
+     */
+    <T> T withLock(String name, Supplier<T> task);
+
+    /**
+     * Start acquiring/renewing leases.
+     */
+    void start();
+
+    /**
+     * Give up all leases so another replica can take over right away.
+     */
+    void stop();
+}
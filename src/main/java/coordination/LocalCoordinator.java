@@ -0,0 +1,45 @@
+package coordination;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Coordinator for a single replica: holds every lease and owns every message.
+ */
+public class LocalCoordinator implements Coordinator {
+    private final String replicaId;
+
+    public LocalCoordinator(String replicaId) {
+        this.replicaId = replicaId;
+    }
+
+    @Override
+    public String getReplicaId() {
+        return replicaId;
+    }
+
+    @Override
+    public boolean holds(String lease) {
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> claimMessage(String messageId) {
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public synchronized <T> T withLock(String name, Supplier<T> task) {
+        return task.get();
+    }
+
+    @Override
+    public void start() {
+        // nothing to acquire
+    }
+
+    @Override
+    public void stop() {
+        // nothing to release
+    }
+}
@@ -0,0 +1,127 @@
+package coordination;
+
+import java.util.Arrays;
+
+/**
+ * Remembers recently seen Discord message IDs for a bounded time, to drop
+ * repeated deliveries (gateway resumes, reconnects) before any work is done.
+ *
+ * IDs are kept as raw longs in two open-addressing tables: new IDs go into
+ * the current one, and every windowMillis the current table becomes the
+ * previous one and the old previous one is cleared for reuse. An ID is
+ * therefore remembered for at least windowMillis and at most twice that.
+ * A table that fills up before its time rotates early, which keeps memory
+ * fixed at 2 * capacity longs however busy the channel gets.
+ */
+public class MessageIdWindow {
+    private final long windowMillis;
+    private final int maxEntries; // per generation, half the table
+
+    private LongSet current;
+    private LongSet previous;
+    private long rotatedAt;
+
+    /**
+     * @param windowMillis how long an ID is remembered, at least
+     * @param maxEntries   IDs per generation before it rotates early
+     */
+    public MessageIdWindow(long windowMillis, int maxEntries) {
+        this.windowMillis = windowMillis;
+        this.maxEntries = maxEntries;
+
+        int capacity = Integer.highestOneBit(Math.max(8, maxEntries) * 2 - 1) << 1; // power of two, at most half full
+
+        current = new LongSet(capacity);
+        previous = new LongSet(capacity);
+        rotatedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Record a message ID.
+     *
+     * @return true the first time the ID is seen within the window, false for
+     *         a repeat
+     */
+    public synchronized boolean add(long messageId) {
+        long now = System.currentTimeMillis();
+
+        long elapsed = now - rotatedAt;
+
+        if (elapsed >= windowMillis || current.size >= maxEntries) {
+            rotate(now);
+
+            if (elapsed >= 2 * windowMillis) {
+                rotate(now); // quiet for two windows, forget everything
+            }
+        }
+
+        if (previous.contains(messageId) || current.contains(messageId)) {
+            return false;
+        }
+
+        current.add(messageId);
+
+        return true;
+    }
+
+    // private functions -------
+
+    private void rotate(long now) {
+        LongSet cleared = previous;
+        cleared.clear();
+
+        previous = current;
+        current = cleared;
+        rotatedAt = now;
+    }
+
+    // linear probing over raw longs; 0 marks an empty slot (no snowflake is 0)
+    private static final class LongSet {
+        private final long[] slots;
+        private int size;
+
+        private LongSet(int capacity) {
+            slots = new long[capacity];
+        }
+
+        private boolean contains(long value) {
+            int mask = slots.length - 1;
+
+            for (int i = mix(value) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (slots[i] == value) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private void add(long value) {
+            int mask = slots.length - 1;
+            int i = mix(value) & mask;
+
+            while (slots[i] != 0) {
+                if (slots[i] == value) {
+                    return;
+                }
+
+                i = (i + 1) & mask;
+            }
+
+            slots[i] = value;
+            size++;
+        }
+
+        private void clear() {
+            Arrays.fill(slots, 0);
+            size = 0;
+        }
+
+        // snowflakes share their high (timestamp) bits, spread the low ones
+        private static int mix(long value) {
+            long h = value * 0x9E3779B97F4A7C15L;
+
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package coordination;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import breaker.Breakers;
+import repository.Migrations;
+import repository.PostgresRepository;
+
+/**
+ * Coordinator backed by Postgres.
+ *
+ * Leases live in the leases table and are renewed every few seconds against
+ * the database clock; a replica that stops renewing loses them after
+ * LEASE_TTL_SECONDS. Message claims are a first-writer-wins insert into
+ * message_claims. Cluster-wide locks are Postgres advisory locks.
+ *
+ * Lease renewals and claims share one connection and one thread, so they are
+ * naturally serialized.
+ */
+public class PostgresCoordinator implements Coordinator {
+    private static final Logger logger = LoggerFactory.getLogger(PostgresCoordinator.class);
+
+    private static final String[] LEASES = { TOKEN_REFRESH, REVIEW };
+    private static final int LEASE_TTL_SECONDS = 10;
+    private static final int RENEW_SECONDS = 3;
+    private static final int CLAIM_CACHE_SIZE = 1000;
+
+    private final String jdbcUrl;
+    private final String replicaId;
+    private final ScheduledExecutorService worker;
+    private final Map<String, Long> heldUntil = new ConcurrentHashMap<>(); // lease -> System.nanoTime() deadline
+    private final Map<String, CompletableFuture<Boolean>> recentClaims;
+    private Connection conn; // only touched by the worker thread
+
+    public PostgresCoordinator(String databaseUrl, String replicaId) {
+        this.jdbcUrl = PostgresRepository.toJdbcUrl(databaseUrl);
+        this.replicaId = replicaId;
+
+        this.worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "coordinator");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        // every listener on this replica asks about the same message, one round trip is enough
+        this.recentClaims = new LinkedHashMap<>(64, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Boolean>> eldest) {
+                return size() > CLAIM_CACHE_SIZE;
+            }
+        };
+    }
+
+    @Override
+    public String getReplicaId() {
+        return replicaId;
+    }
+
+    @Override
+    public boolean holds(String lease) {
+        Long deadline = heldUntil.get(lease);
+
+        return deadline != null && System.nanoTime() - deadline < 0;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> claimMessage(String messageId) {
+        CompletableFuture<Boolean> claim;
+
+        synchronized (recentClaims) {
+            claim = recentClaims.get(messageId);
+
+            if (claim != null) {
+                return claim;
+            }
+
+            claim = new CompletableFuture<>();
+            recentClaims.put(messageId, claim);
+        }
+
+        CompletableFuture<Boolean> result = claim;
+
+        // fail open right away while the database is down instead of queueing behind timeouts
+        if (!Breakers.DATABASE.tryAcquire()) {
+            result.complete(true);
+
+            return result;
+        }
+
+        long start = System.nanoTime();
+
+        worker.execute(() -> {
+            String sql = "INSERT INTO message_claims (messageid, owner) VALUES (?, ?) "
+                    + "ON CONFLICT (messageid) DO UPDATE SET owner = message_claims.owner RETURNING owner";
+
+            try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+                stmt.setString(1, messageId);
+                stmt.setString(2, replicaId);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    boolean claimed = rs.next() && replicaId.equals(rs.getString(1));
+
+                    Breakers.DATABASE.onSuccess(System.nanoTime() - start);
+                    result.complete(claimed);
+                }
+            } catch (SQLException e) {
+                Breakers.DATABASE.onError(System.nanoTime() - start, e);
+
+                // fail open: with a single replica nothing is lost, with several the
+                // playlist duplicate check still stops a second add
+                logger.warn("Could not claim message {}, handling it anyway: {}", messageId, e.getMessage());
+
+                discardConnection();
+                result.complete(true);
+            }
+        });
+
+        return result;
+    }
+
+    @Override
+    public <T> T withLock(String name, Supplier<T> task) {
+        Connection lockConn;
+
+        try {
+            lockConn = DriverManager.getConnection(jdbcUrl);
+        } catch (SQLException e) {
+            logger.warn("Could not take lock {}, running without it: {}", name, e.getMessage());
+
+            return task.get();
+        }
+
+        try (Connection c = lockConn) {
+            try (PreparedStatement stmt = c.prepareStatement("SELECT pg_advisory_lock(hashtext(?))")) {
+                stmt.setString(1, name);
+                stmt.execute();
+            }
+
+            try {
+                return task.get();
+            } finally {
+                try (PreparedStatement stmt = c.prepareStatement("SELECT pg_advisory_unlock(hashtext(?))")) {
+                    stmt.setString(1, name);
+                    stmt.execute();
+                }
+            }
+        } catch (SQLException e) {
+            // closing the session releases the lock anyway
+            logger.error("Error: {}", e.getMessage());
+
+            throw new IllegalStateException("Lock " + name + " failed", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        worker.scheduleWithFixedDelay(this::renewLeases, 0, RENEW_SECONDS, TimeUnit.SECONDS);
+        worker.scheduleWithFixedDelay(this::pruneClaims, 1, 60, TimeUnit.MINUTES);
+
+        logger.info("Coordinator started as replica {}", replicaId);
+    }
+
+    @Override
+    public void stop() {
+        heldUntil.clear();
+
+        try {
+            worker.submit(() -> {
+                try (PreparedStatement stmt = connection().prepareStatement("DELETE FROM leases WHERE owner = ?")) {
+                    stmt.setString(1, replicaId);
+                    stmt.executeUpdate();
+                } catch (SQLException e) {
+                    logger.warn("Could not release leases: {}", e.getMessage());
+                }
+
+                discardConnection();
+            }).get(5, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.warn("Could not release leases: {}", e.getMessage());
+        }
+
+        worker.shutdownNow();
+    }
+
+    // private functions -------
+    private void renewLeases() {
+        String sql = "INSERT INTO leases (name, owner, expires_at) VALUES (?, ?, now() + make_interval(secs => ?)) "
+                + "ON CONFLICT (name) DO UPDATE SET owner = EXCLUDED.owner, expires_at = EXCLUDED.expires_at "
+                + "WHERE leases.owner = EXCLUDED.owner OR leases.expires_at < now() RETURNING owner";
+
+        for (String lease : LEASES) {
+            // measured before the round trip, so our view expires no later than the database's
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(LEASE_TTL_SECONDS - 1);
+
+            try (PreparedStatement stmt = connection().prepareStatement(sql)) {
+                stmt.setString(1, lease);
+                stmt.setString(2, replicaId);
+                stmt.setInt(3, LEASE_TTL_SECONDS);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    boolean held = rs.next();
+                    boolean heldBefore = heldUntil.containsKey(lease);
+
+                    if (held) {
+                        heldUntil.put(lease, deadline);
+                    } else {
+                        heldUntil.remove(lease);
+                    }
+
+                    if (held != heldBefore) {
+                        logger.info("Replica {} {} lease {}", replicaId, held ? "acquired" : "lost", lease);
+                    }
+                }
+            } catch (SQLException e) {
+                // keep the local deadline, holds() stops answering true once it passes
+                logger.warn("Could not renew lease {}: {}", lease, e.getMessage());
+
+                discardConnection();
+
+                return;
+            }
+        }
+    }
+
+    private void pruneClaims() {
+        try (Statement stmt = connection().createStatement()) {
+            int pruned = stmt.executeUpdate("DELETE FROM message_claims WHERE claimed_at < now() - interval '1 day'");
+
+            logger.debug("Pruned {} message claims", pruned);
+        } catch (SQLException e) {
+            logger.warn("Could not prune message claims: {}", e.getMessage());
+
+            discardConnection();
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (conn == null || !conn.isValid(2)) {
+            discardConnection();
+
+            conn = DriverManager.getConnection(jdbcUrl);
+
+            // leases and message_claims come with the schema migrations
+            Migrations.migrate(conn);
+        }
+
+        return conn;
+    }
+
+    private void discardConnection() {
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                logger.debug("Error closing connection: {}", e.getMessage());
+            }
+
+            conn = null;
+        }
+    }
+}
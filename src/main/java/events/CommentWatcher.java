@@ -1,8 +1,13 @@
 package events;
 
 import api.SpotifyAPI;
+import breaker.Breakers;
+import breaker.ReplayQueue;
+import coordination.MessageIdWindow;
+import exceptions.CircuitOpenException;
 import exceptions.DuplicateTrackException;
 import exceptions.TrackNotFoundException;
+import metrics.Metrics;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
@@ -10,7 +15,18 @@ import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.User;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.requests.RestAction;
+import repository.Repositories;
+import throttle.SubmissionThrottle;
+import throttle.TokenReservations;
+import tracing.Scope;
+import tracing.Span;
+import tracing.Tracing;
 import utils.Curator;
+import utils.SpotifyLinks;
+import utils.SubmissionRequest;
+import utils.SubmissionResult;
+import utils.SubmissionResult.Status;
 import utils.Utility;
 
 import javax.annotation.Nonnull;
@@ -19,11 +35,20 @@ import org.apache.commons.validator.routines.UrlValidator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * 
@@ -41,12 +66,17 @@ public class CommentWatcher extends ListenerAdapter {
     private final String adminId; // admin
     private final List<Curator> curators; // curators
     private SpotifyAPI spotifyApi; // api
+    private final SubmissionThrottle throttle; // per-user and per-guild submission limits
+    private final TokenReservations reservations = new TokenReservations(); // tokens backing submissions in flight
+    private final Set<String> removing = ConcurrentHashMap.newKeySet(); // "userId:roleId" of token removals in flight
+    private final ReplayQueue parked = new ReplayQueue("submissions", Breakers.SPOTIFY, 1000, 5000);
+    private final MessageIdWindow deliveries = new MessageIdWindow(TimeUnit.MINUTES.toMillis(10), 65_536);
     private boolean botIsReady; // bot status
     private final boolean tokenRequirementEnabled; // Enables/disables the requirement for a token
 
+    private static final int MAX_REPLY_LENGTH = 1900; // Discord allows 2000 characters per message
+
     private static final Logger logger = LoggerFactory.getLogger(CommentWatcher.class);
-    private static final Pattern SPOTIFY_PATTERN = Pattern.compile(
-            "(?:spotify:(album|track|playlist):([^\\s?]+)|(https?://(?:open|play)\\.spotify\\.com/(album|track|playlist)/([^\\s?]+)))");
     private static final UrlValidator urlValidator = new UrlValidator(UrlValidator.ALLOW_ALL_SCHEMES);
 
     /**
@@ -72,6 +102,7 @@ public class CommentWatcher extends ListenerAdapter {
         godMode = gm;
         tokenRequirementEnabled = tknReq;
         spotifyApi = SpotifyAPI.getInstance();
+        throttle = SubmissionThrottle.getInstance();
         botIsReady = false;
     }
 
@@ -80,10 +111,13 @@ public class CommentWatcher extends ListenerAdapter {
     }
 
     /**
+     * Each message in the submission channel is handled in its own trace; the
+     * claim, Spotify, database and Discord calls made for it are child spans.
      *
      * @param event event triggering function call
      */
     @Override
+    @SuppressWarnings("try")
     public void onMessageReceived(@Nonnull MessageReceivedEvent event) {
         User user = event.getAuthor();
 
@@ -91,105 +125,116 @@ public class CommentWatcher extends ListenerAdapter {
             return;
         }
 
+        // a resumed gateway session can replay events; drop repeats before any REST work
+        if (!deliveries.add(event.getMessageIdLong())) {
+            Metrics.increment("messages_duplicate_total");
+            logger.debug("Dropped repeated delivery of message {}", event.getMessageId());
+
+            return;
+        }
+
+        Span trace = Tracing.startTrace("discord.message")
+                .setAttribute("discord.message_id", event.getMessageId())
+                .setAttribute("discord.user_id", user.getId())
+                .setAttribute("discord.delivery_ms",
+                        Duration.between(event.getMessage().getTimeCreated(), OffsetDateTime.now()).toMillis());
+
+        try (Scope ignored = trace.activate()) {
+            // with several replicas running, only the one that claims the message handles it
+            Utility.runIfClaimedAsync(event, () -> handleMessage(event, user))
+                    .whenComplete((result, e) -> trace.end());
+        }
+    }
+
+    /**
+     * Handle a message in the submission channel claimed by this replica.
+     *
+     * @param event event triggering function call
+     * @param user  message author
+     * @return future completing once the submission has been handled
+     */
+    private CompletableFuture<Void> handleMessage(MessageReceivedEvent event, User user) {
         Message messageSent = event.getMessage();
 
         // If the bot is not ready, delete any message and log an error.
         if (!botIsReady) {
-            messageSent.delete().queue();
+            queue("discord.deleteMessage", messageSent.delete());
 
             logger.error("Bot is not ready.");
 
-            return;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<String> links = SpotifyLinks.links(messageSent.getContentRaw());
+
+        if (links.size() > 1 && links.stream().anyMatch(link -> SpotifyLinks.trackId(link) != null)) {
+            // several links: one batch and one reply for all of them
+            return submitBatch(event, user, links);
         }
 
-        Matcher spotifyMatcher = SPOTIFY_PATTERN.matcher(messageSent.getContentRaw());
+        Matcher spotifyMatcher = SpotifyLinks.PATTERN.matcher(messageSent.getContentRaw());
 
         if (spotifyMatcher.find()) { // If it's a valid Spotify link
             if (isValidSubmission(event, spotifyMatcher, user)) { // If it's a valid submission
-                boolean submissionAdded = false;
+                String trackLink = spotifyMatcher.group(0);
 
                 if (Utility.isCurator(curators, user) && godMode) {
                     // Admin/Curator is acting with God Mode ON
-                    try {
-                        submissionAdded = spotifyApi.addToPlaylist(messageSent.getContentRaw(), user.getId(),
-                                messageSent.getId());
-
-                        if (submissionAdded) {
-                            event.getChannel()
-                                    .sendMessage(
-                                            "Submission added by admin without using a token. <@" + user.getId() + ">")
-                                    .queue();
-                        }
-                    } catch (DuplicateTrackException e) {
-                        String msg = e.getMessage();
-
-                        if (msg != null) {
-                            event.getChannel().sendMessage(msg).queue();
-                        }
-
-                        logger.error(e.getMessage());
-                    } catch (TrackNotFoundException e) {
-                        event.getChannel()
-                                .sendMessage(
-                                        "Unable to add submission without using a token because track does not exist: "
-                                                + spotifyMatcher.group(0))
-                                .queue();
-
-                        logger.error(e.getMessage());
-                    }
+                    return submitFree(event, user, trackLink)
+                            .exceptionally(e -> {
+                                if (unwrap(e) instanceof CircuitOpenException) {
+                                    // Spotify is down: acknowledge now, add it once it's back
+                                    park(event, user, () -> submitFree(event, user, trackLink));
+                                } else {
+                                    logger.error("Error: {}", unwrap(e).getMessage());
+                                }
+
+                                return null;
+                            });
                 } else if (hasToken(event, playlistTokenName)) {
-                    // User has the token (or token requirement is off)
-                    try {
-                        submissionAdded = spotifyApi.addToPlaylist(messageSent.getContentRaw(), user.getId(),
-                                messageSent.getId());
-
-                        if (submissionAdded) {
-                            event.getChannel()
-                                    .sendMessage(
-                                            "<@" + user.getId() + "> " +
-                                                    "I got your submission and it should be visible here: <https://bonjr.me/submissions>\n\n"
-                                                    + "Good luck!")
-                                    .queue();
-
-                            flagSubmitted(event); // give user submitted token
-
-                            // Only remove the token if token requirements are enabled
-                            if (tokenRequirementEnabled) {
-                                removeToken(event, playlistTokenName);
-                            }
-                        }
-                    } catch (DuplicateTrackException e) {
-                        String msg = e.getMessage();
+                    // the token must not be backing another submission still in flight
+                    if (reserveTokens(event, user, 1) == 0) {
+                        rejectTokensInUse(messageSent, user);
 
-                        if (msg != null) {
-                            event.getChannel().sendMessage(msg).queue();
-                        }
+                        return CompletableFuture.completedFuture(null);
+                    }
 
-                        logger.error(e.getMessage());
-                    } catch (TrackNotFoundException e) {
-                        event.getChannel()
-                                .sendMessage("Hey, I was unable to find the track you submitted: "
-                                        + spotifyMatcher.group(0) + "\n\n" +
-                                        "Please double check the link is correct!")
-                                .queue();
+                    // User has the token (or token requirement is off), but may be submitting too fast
+                    if (!throttle.tryAcquire(user.getId(), event.isFromGuild() ? event.getGuild().getId() : null)) {
+                        releaseTokens(user, 1);
+                        rejectThrottled(messageSent, user);
 
-                        logger.error(e.getMessage());
+                        return CompletableFuture.completedFuture(null);
                     }
+
+                    return submitWithToken(event, user, trackLink)
+                            .exceptionally(e -> {
+                                if (unwrap(e) instanceof CircuitOpenException) {
+                                    // Spotify is down: acknowledge now, add it once it's back; the token stays reserved
+                                    if (!park(event, user, () -> submitWithToken(event, user, trackLink))) {
+                                        releaseTokens(user, 1);
+                                    }
+                                } else {
+                                    logger.error("Error: {}", unwrap(e).getMessage());
+                                }
+
+                                return null;
+                            });
                 } else {
                     // Regular user without the required token
-                    messageSent.delete().queue();
+                    queue("discord.deleteMessage", messageSent.delete());
 
-                    logger.warn("Suspicious activity detected: " + user.getName());
+                    logger.warn("Suspicious activity detected: {}", user.getName());
                 }
             } else {
                 // Invalid Spotify submission
-                messageSent.delete().queue();
+                queue("discord.deleteMessage", messageSent.delete());
 
                 logger.warn("Invalid Spotify submission deleted.");
             }
         } else if (urlValidator.isValid(messageSent.getContentRaw())) {
             // Handle non-Spotify URLs
-            messageSent.delete().queue();
+            queue("discord.deleteMessage", messageSent.delete());
 
             Utility.sendSecretMessage(user,
                     "Hello o/, I saw your submission, but I only accept Spotify links!\n\n" +
@@ -200,6 +245,381 @@ public class CommentWatcher extends ListenerAdapter {
             logger.warn("Invalid link deleted.");
         }
 
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Add a submission from a curator in god mode, then reply. No token is
+     * needed or taken.
+     *
+     * @param event     event containing the submission
+     * @param user      curator
+     * @param trackLink track link found in the message
+     * @return future failing with CircuitOpenException if Spotify is
+     *         considered down and nothing was added
+     */
+    private CompletableFuture<Void> submitFree(MessageReceivedEvent event, User user, String trackLink) {
+        Message messageSent = event.getMessage();
+
+        return spotifyApi.addToPlaylistAsync(messageSent.getContentRaw(), user.getId(), messageSent.getId())
+                .handle(Tracing.propagate((Boolean submissionAdded, Throwable error) -> {
+                    if (error != null && unwrap(error) instanceof CircuitOpenException) {
+                        throw (CircuitOpenException) unwrap(error);
+                    } else if (error != null) {
+                        handleRejection(event, error,
+                                "Unable to add submission without using a token because track does not exist: "
+                                        + trackLink);
+                    } else if (submissionAdded) {
+                        queue("discord.sendMessage", event.getChannel()
+                                .sendMessage(
+                                        "Submission added by admin without using a token. <@" + user.getId() + ">"));
+                    }
+
+                    return null;
+                }));
+    }
+
+    /**
+     * Add a submission from a user holding the token, then reply, flag the
+     * user and take the token. The caller has reserved the token; it is
+     * released once charged or not needed, and kept while Spotify is down.
+     *
+     * @param event     event containing the submission
+     * @param user      submitter
+     * @param trackLink track link found in the message
+     * @return future failing with CircuitOpenException if Spotify is
+     *         considered down and nothing was added
+     */
+    private CompletableFuture<Void> submitWithToken(MessageReceivedEvent event, User user, String trackLink) {
+        Message messageSent = event.getMessage();
+
+        return spotifyApi.addToPlaylistAsync(messageSent.getContentRaw(), user.getId(), messageSent.getId())
+                .handle(Tracing.propagate((Boolean submissionAdded, Throwable error) -> {
+                    CompletableFuture<Void> charged = CompletableFuture.completedFuture(null);
+
+                    if (error != null && unwrap(error) instanceof CircuitOpenException) {
+                        throw (CircuitOpenException) unwrap(error);
+                    } else if (error != null) {
+                        handleRejection(event, error,
+                                "Hey, I was unable to find the track you submitted: " + trackLink + "\n\n" +
+                                        "Please double check the link is correct!");
+                    } else if (submissionAdded) {
+                        queue("discord.sendMessage", event.getChannel()
+                                .sendMessage(
+                                        "<@" + user.getId() + "> " +
+                                                "I got your submission and it should be visible here: <https://bonjr.me/submissions>\n\n"
+                                                + "Good luck!"));
+
+                        flagSubmitted(event); // give user submitted token
+
+                        // Only remove the token if token requirements are enabled
+                        if (tokenRequirementEnabled) {
+                            charged = removeTokens(event, playlistTokenName, 1);
+                        }
+                    }
+
+                    return charged;
+                }))
+                .thenCompose(charged -> charged)
+                .whenComplete((result, e) -> {
+                    if (e == null || !(unwrap(e) instanceof CircuitOpenException)) {
+                        releaseTokens(user, 1);
+                    }
+                });
+    }
+
+    /**
+     * Submit every link of a message as one batch (one duplicate check, one
+     * playlist add and one insert) and reply once with the outcome of each
+     * link. Holders pay a token per accepted track, so only as many distinct
+     * tracks as they hold tokens (and throttle slots) are submitted; the rest
+     * are reported as skipped.
+     *
+     * Unlike a single submission, a batch isn't parked while Spotify is down:
+     * its tracks are reported as failed, each with a note to resubmit it, and
+     * no token is taken.
+     *
+     * @param event event containing the submission
+     * @param user  submitter
+     * @param links Spotify links in the message, in order
+     * @return future completing once the reply is queued
+     */
+    private CompletableFuture<Void> submitBatch(MessageReceivedEvent event, User user, List<String> links) {
+        Message messageSent = event.getMessage();
+        boolean free = Utility.isCurator(curators, user) && godMode;
+        int allowed = links.size(); // distinct tracks that may be submitted
+        String skipReason = null;
+
+        if (!free) {
+            if (!hasToken(event, playlistTokenName)) {
+                // Regular user without the required token
+                queue("discord.deleteMessage", messageSent.delete());
+
+                logger.warn("Suspicious activity detected: {}", user.getName());
+
+                return CompletableFuture.completedFuture(null);
+            }
+
+            // tokens backing submissions still in flight don't count
+            int wanted = reserveTokens(event, user, distinctTracks(links));
+
+            if (wanted == 0) {
+                rejectTokensInUse(messageSent, user);
+
+                return CompletableFuture.completedFuture(null);
+            }
+
+            allowed = throttle.tryAcquire(user.getId(), event.isFromGuild() ? event.getGuild().getId() : null, wanted);
+            releaseTokens(user, wanted - allowed);
+
+            if (allowed == 0) {
+                rejectThrottled(messageSent, user);
+
+                return CompletableFuture.completedFuture(null);
+            }
+
+            skipReason = (allowed < wanted) ? "skipped, you're submitting too fast" : "skipped, no tokens left";
+        }
+
+        List<SubmissionRequest> requests = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>(); // request -> link
+        Set<String> tracks = new HashSet<>();
+
+        for (int i = 0; i < links.size(); i++) {
+            String trackId = SpotifyLinks.trackId(links.get(i));
+
+            // repeats of a track already in the batch go in, the batch reports them
+            if (trackId != null && !tracks.contains(trackId) && tracks.size() == allowed) {
+                continue;
+            }
+
+            if (trackId != null) {
+                tracks.add(trackId);
+            }
+
+            requests.add(new SubmissionRequest(links.get(i), user.getId(), messageSent.getId()));
+            positions.add(i);
+        }
+
+        String skipped = skipReason;
+        int reserved = free ? 0 : allowed;
+
+        return spotifyApi.submitBatchAsync(requests)
+                .thenCompose(Tracing.propagate((List<SubmissionResult> results) -> {
+                    String[] outcomes = new String[links.size()];
+                    int accepted = 0;
+
+                    for (SubmissionResult result : results) {
+                        outcomes[positions.get(result.getIndex())] = describe(result, positions);
+
+                        if (result.getStatus() == Status.ACCEPTED) {
+                            accepted++;
+                        }
+                    }
+
+                    StringBuilder reply = new StringBuilder("<@" + user.getId() + "> ");
+
+                    if (accepted == 0) {
+                        reply.append("I couldn't add any of the tracks you submitted:\n");
+                    } else if (free) {
+                        reply.append("Submissions added by admin without using a token:\n");
+                    } else {
+                        reply.append("I got your submissions and they should be visible here: "
+                                + "<https://bonjr.me/submissions>\n");
+                    }
+
+                    for (int i = 0; i < links.size(); i++) {
+                        String line = "`" + (i + 1) + ".` <" + links.get(i) + "> "
+                                + ((outcomes[i] != null) ? outcomes[i] : skipped) + "\n";
+
+                        if (reply.length() + line.length() > MAX_REPLY_LENGTH) {
+                            reply.append("...and ").append(links.size() - i).append(" more");
+                            break;
+                        }
+
+                        reply.append(line);
+                    }
+
+                    queue("discord.sendMessage", event.getChannel().sendMessage(reply.toString()));
+
+                    CompletableFuture<Void> charged = CompletableFuture.completedFuture(null);
+
+                    if (accepted > 0 && !free) {
+                        flagSubmitted(event); // give user submitted token
+
+                        // one token per accepted track, only if token requirements are enabled
+                        if (tokenRequirementEnabled) {
+                            charged = removeTokens(event, playlistTokenName, accepted);
+                        }
+                    }
+
+                    logger.info("Batch of {} links from {}: {} added", links.size(), user.getName(), accepted);
+
+                    return charged;
+                }))
+                .whenComplete((result, e) -> releaseTokens(user, reserved));
+    }
+
+    // reply line for one batch item; positions map batch items back to links
+    private static String describe(SubmissionResult result, List<Integer> positions) {
+        switch (result.getStatus()) {
+            case ACCEPTED:
+                return "added";
+            case INVALID:
+                return "not a track link, pick a single track";
+            case DUPLICATE:
+                if (result.getSameAs() != null) {
+                    return "same track as " + (positions.get(result.getSameAs()) + 1);
+                }
+
+                return result.getMessage();
+            case FAILED:
+                // unlike a single link, batch items are never parked
+                return result.getMessage() + " It wasn't saved for later and no token was used.";
+            default:
+                return result.getMessage();
+        }
+    }
+
+    private static int distinctTracks(List<String> links) {
+        Set<String> tracks = new HashSet<>();
+
+        for (String link : links) {
+            String trackId = SpotifyLinks.trackId(link);
+
+            if (trackId != null) {
+                tracks.add(trackId);
+            }
+        }
+
+        return tracks.size();
+    }
+
+    /**
+     * Keep a submission for later while Spotify is down, and tell the user.
+     *
+     * @param event      event containing the submission
+     * @param user       submitter
+     * @param submission starts the submission again, failing with
+     *                   CircuitOpenException while Spotify is still down
+     * @return false if there was no room and the submission was dropped
+     */
+    private boolean park(MessageReceivedEvent event, User user, Supplier<CompletableFuture<?>> submission) {
+        if (parked.park(submission)) {
+            Metrics.increment("submissions_parked_total");
+            queue("discord.sendMessage", event.getChannel()
+                    .sendMessage("<@" + user.getId() + "> Spotify isn't responding right now, so I saved your "
+                            + "submission and will add it as soon as it's back. No need to resubmit!"));
+
+            logger.warn("Spotify unavailable, parked submission from {}", user.getName());
+
+            return true;
+        } else {
+            queue("discord.deleteMessage", event.getMessage().delete());
+
+            Utility.sendSecretMessage(user,
+                    "Spotify isn't responding right now and I couldn't keep your submission, please try again "
+                            + "later. Your token was not used.\n\n" +
+                            "Note: This message will disappear after 60 seconds.",
+                    60);
+
+            logger.warn("Spotify unavailable and parking full, dropped submission from {}", user.getName());
+
+            return false;
+        }
+    }
+
+    /**
+     * Turn down a submission whose tokens all back submissions still being
+     * added, without touching Spotify.
+     *
+     * @param messageSent submission message
+     * @param user        submitter
+     */
+    private void rejectTokensInUse(Message messageSent, User user) {
+        queue("discord.deleteMessage", messageSent.delete());
+
+        Utility.sendSecretMessage(user,
+                "Your token is already being used by a submission that's still going through, wait for it to "
+                        + "finish before submitting again.\n\n" +
+                        "Note: This message will disappear after 60 seconds.",
+                60);
+
+        logger.warn("Token already in use, rejected submission from {}", user.getName());
+    }
+
+    /**
+     * Turn down a submission over the rate limit without touching Spotify.
+     *
+     * @param messageSent submission message
+     * @param user        submitter
+     */
+    private void rejectThrottled(Message messageSent, User user) {
+        Metrics.increment("submissions_throttled_total");
+        queue("discord.deleteMessage", messageSent.delete());
+
+        if (throttle.shouldNotify(user.getId())) {
+            Utility.sendSecretMessage(user,
+                    "Whoa, slow down! You can submit up to " + throttle.getUserPerMinute() + " tracks per minute, "
+                            + "try again in a bit.\n\n" +
+                            "Note: This message will disappear after 60 seconds.",
+                    60);
+        }
+
+        logger.warn("Throttled submission from {}", user.getName());
+    }
+
+    /**
+     * Queue a Discord REST call as a child span of the current trace.
+     *
+     * @param spanName span name
+     * @param action   REST action to queue
+     */
+    private static CompletableFuture<Void> queue(String spanName, RestAction<?> action) {
+        return Tracing.traceAsync(spanName, action::submit)
+                .handle((result, e) -> {
+                    if (e != null) {
+                        logger.error("Error: {}", e.getMessage());
+                    }
+
+                    return null;
+                });
+    }
+
+    /**
+     * Reply to a submission that addToPlaylistAsync() turned down.
+     *
+     * @param event           event containing the submission
+     * @param error           failure the future completed with
+     * @param notFoundMessage reply used when the track does not exist
+     */
+    private void handleRejection(MessageReceivedEvent event, Throwable error, String notFoundMessage) {
+        Throwable cause = unwrap(error);
+
+        if (cause instanceof DuplicateTrackException) {
+            String msg = cause.getMessage();
+
+            if (msg != null) {
+                queue("discord.sendMessage", event.getChannel().sendMessage(msg));
+            }
+        } else if (cause instanceof TrackNotFoundException) {
+            queue("discord.sendMessage", event.getChannel().sendMessage(notFoundMessage));
+        } else {
+            // Spotify down or a transient failure: nothing was added and no token was taken
+            queue("discord.sendMessage",
+                    event.getChannel().sendMessage("Spotify isn't responding right now, try again in a bit."));
+        }
+
+        logger.error("Submission in message {} from {} turned down: {}",
+                event.getMessageId(), event.getAuthor().getId(), cause.toString());
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+
+        return error;
     }
 
     /**
@@ -228,19 +648,19 @@ public class CommentWatcher extends ListenerAdapter {
 
             switch (contentType) {
                 case "album":
-                    logger.info("Spotify album " + uriOrLink + " provided.");
+                    logger.debug("Spotify album {} provided.", uriOrLink);
 
                     break;
                 case "track":
-                    logger.info("Spotify track " + uriOrLink + " provided.");
+                    logger.debug("Spotify track {} provided.", uriOrLink);
 
                     return true;
                 case "playlist":
-                    logger.info("Spotify playlist " + uriOrLink + " provided.");
+                    logger.debug("Spotify playlist {} provided.", uriOrLink);
 
                     break;
                 default:
-                    logger.warn("Unknown Spotify " + uriOrLink + " type.");
+                    logger.warn("Unknown Spotify {} type.", uriOrLink);
             }
 
             Utility.sendSecretMessage(user,
@@ -260,26 +680,32 @@ public class CommentWatcher extends ListenerAdapter {
     }
 
     private void flagSubmitted(MessageReceivedEvent event) {
-        String submittedRoleId = Utility.readFromDatabase("SUBMITTED_ROLE_ID");
         Member member = event.getMember();
 
-        try {
-            if (member != null && submittedRoleId != null) {
-                net.dv8tion.jda.api.entities.Role submitted;
+        // read without blocking, this runs on a Spotify or Discord thread
+        Repositories.get().readConfig("SUBMITTED_ROLE_ID")
+                .thenAccept(submittedRoleId -> {
+                    if (member == null || submittedRoleId == null) {
+                        logger.error("Error: User or Role missing.");
 
-                submitted = event.getGuild().getRoleById(submittedRoleId);
+                        return;
+                    }
 
-                if (submitted != null && !member.getRoles().contains(submitted)) {
-                    event.getGuild().addRoleToMember(member, submitted).queue();
-                }
-            } else {
-                throw new NullPointerException("User or Role missing.");
-            }
-        } catch (NullPointerException | UnsupportedOperationException | ClassCastException
-                | IllegalArgumentException err) {
-            logger.error("Error: " + err.getMessage());
-        }
+                    try {
+                        Role submitted = event.getGuild().getRoleById(submittedRoleId);
 
+                        if (submitted != null && !member.getRoles().contains(submitted)) {
+                            queue("discord.addRole", event.getGuild().addRoleToMember(member, submitted));
+                        }
+                    } catch (UnsupportedOperationException | ClassCastException | IllegalArgumentException err) {
+                        logger.error("Error: {}", err.getMessage());
+                    }
+                })
+                .exceptionally(e -> {
+                    logger.error("Error: {}", unwrap(e).getMessage());
+
+                    return null;
+                });
     }
 
     /**
@@ -335,35 +761,72 @@ public class CommentWatcher extends ListenerAdapter {
     }
 
     /**
-     * Remove one of the user's token.
+     * Count the user's tokens (roles whose name contains the token name).
      *
-     * Note: This removes the first token the method finds.
+     * @param event event caused by user
+     * @return number of tokens held
+     */
+    private int tokenCount(MessageReceivedEvent event, String tokenName) {
+        Member member = event.getMember();
+
+        if (member == null) {
+            return 0;
+        }
+
+        return (int) member.getRoles().stream()
+                .filter(role -> role.getName().contains(tokenName))
+                .count();
+    }
+
+    /**
+     * Remove some of the user's tokens.
+     *
+     * Note: This removes the first tokens the method finds, skipping ones
+     * another submission is already removing (the member cache still lists
+     * them until Discord confirms).
      *
      * @param event event containing user
+     * @param count number of tokens to remove
+     * @return future completing once every removal has been answered
      */
-    private void removeToken(MessageReceivedEvent event, String tokenName) {
-        // removed flag (although might be useless since i'm no longer looping)
-        boolean removed = false;
-
+    private CompletableFuture<Void> removeTokens(MessageReceivedEvent event, String tokenName, int count) {
         Member member = event.getMember();
+        List<CompletableFuture<Void>> removals = new ArrayList<>();
 
         if (member != null) {
-            Optional<Role> optionalRole = member.getRoles().stream()
+            List<Role> tokens = member.getRoles().stream()
                     .filter(role -> role.getName().contains(tokenName))
-                    .findFirst();
-
-            if (optionalRole.isPresent() && !removed) {
-                Role role = optionalRole.get();
+                    .filter(role -> removing.add(member.getId() + ":" + role.getId()))
+                    .limit(count)
+                    .collect(Collectors.toList());
 
-                if (role != null) { // redundant but silences warning
-                    event.getGuild().removeRoleFromMember(member, role).queue();
-
-                    removed = true;
-                }
+            for (Role role : tokens) {
+                removals.add(queue("discord.removeRole", event.getGuild().removeRoleFromMember(member, role))
+                        .whenComplete((result, e) -> removing.remove(member.getId() + ":" + role.getId())));
             }
+        }
 
+        return CompletableFuture.allOf(removals.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Reserve tokens for a submission about to start (see TokenReservations).
+     *
+     * @param wanted tokens the submission would spend
+     * @return tokens reserved; wanted when tokens aren't required
+     */
+    private int reserveTokens(MessageReceivedEvent event, User user, int wanted) {
+        if (!tokenRequirementEnabled) {
+            return wanted;
         }
 
+        return reservations.reserve(user.getId(), tokenCount(event, playlistTokenName), wanted);
+    }
+
+    private void releaseTokens(User user, int count) {
+        if (tokenRequirementEnabled) {
+            reservations.release(user.getId(), count);
+        }
     }
 
 }
\ No newline at end of file
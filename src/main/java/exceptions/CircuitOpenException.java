@@ -0,0 +1,11 @@
+package exceptions;
+
+/**
+ * Thrown instead of making a call while its circuit breaker is open.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
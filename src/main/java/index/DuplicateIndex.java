@@ -0,0 +1,322 @@
+package index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import index.IndexedTrack.Source;
+import repository.Repositories;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+/**
+ * In-memory duplicate index over both playlists, persisted in track_index.
+ *
+ * A submission is a duplicate if the same track ID, the same ISRC or the same
+ * normalized primary artist + title is already approved or queued, which
+ * catches remasters, single/album versions and regional relinks. Lookups are
+ * map reads; the index is loaded from the database at startup, replaced per
+ * playlist whenever a playlist is scanned, and updated as tracks are added.
+ */
+public class DuplicateIndex {
+    private static DuplicateIndex instance;
+
+    private static final Logger logger = LoggerFactory.getLogger(DuplicateIndex.class);
+
+    private final Map<Source, Shelf> shelves = new EnumMap<>(Source.class);
+    private final Map<String, Set<String>> volumeTracks = new HashMap<>(); // approved volume -> track IDs last scanned
+
+    // constructor
+    private DuplicateIndex() {
+        for (Source source : Source.values()) {
+            shelves.put(source, new Shelf());
+        }
+    }
+
+    public static synchronized DuplicateIndex getInstance() {
+        if (instance == null) {
+            instance = new DuplicateIndex();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Load the stored index. Call once at startup.
+     */
+    public void load() {
+        List<IndexedTrack> stored = Repositories.get().loadTrackIndex().join();
+
+        synchronized (this) {
+            for (IndexedTrack entry : stored) {
+                shelves.get(entry.getSource()).add(entry);
+            }
+        }
+
+        logger.info("Loaded duplicate index with {} tracks", stored.size());
+    }
+
+    /**
+     * @param track track being submitted
+     * @return the indexed track it duplicates, approved ones first
+     */
+    public synchronized Optional<IndexedTrack> findDuplicate(Track track) {
+        IndexedTrack candidate = IndexedTrack.of(track, Source.SUBMISSIONS);
+
+        for (Source source : Source.values()) {
+            IndexedTrack match = shelves.get(source).find(candidate);
+
+            if (match != null) {
+                if (!match.getTrackId().equals(track.getId())) {
+                    logger.info("Track {} matches {} in {} by ISRC or artist/title", track.getId(),
+                            match.getTrackId(), source);
+                }
+
+                return Optional.of(match);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Record a track the bot just added to a playlist.
+     */
+    public void add(Track track, Source source) {
+        IndexedTrack entry = IndexedTrack.of(track, source);
+
+        synchronized (this) {
+            shelves.get(source).add(entry);
+        }
+
+        persist(List.of(entry), List.of());
+    }
+
+    /**
+     * Replace a playlist's entries with a fresh scan of it. Only the
+     * difference is written back.
+     *
+     * @param source playlist that was scanned
+     * @param tracks every track in it
+     */
+    public void sync(Source source, List<Track> tracks) {
+        List<IndexedTrack> added = new ArrayList<>();
+        List<IndexedTrack> removed;
+
+        synchronized (this) {
+            Shelf shelf = shelves.get(source);
+            Set<String> scanned = new HashSet<>();
+
+            for (Track track : tracks) {
+                scanned.add(track.getId());
+
+                if (!shelf.byId.containsKey(track.getId())) {
+                    IndexedTrack entry = IndexedTrack.of(track, source);
+
+                    shelf.add(entry);
+                    added.add(entry);
+                }
+            }
+
+            removed = new ArrayList<>();
+
+            for (IndexedTrack entry : shelf.byId.values()) {
+                if (!scanned.contains(entry.getTrackId())) {
+                    removed.add(entry);
+                }
+            }
+
+            for (IndexedTrack entry : removed) {
+                shelf.remove(entry);
+            }
+        }
+
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            logger.info("Duplicate index {}: +{} -{} tracks", source, added.size(), removed.size());
+
+            persist(added, removed);
+        }
+    }
+
+    /**
+     * Bring the approved entries in line with a fresh scan of one volume of
+     * the approved playlist. A track only leaves the index once no volume
+     * holds it; entries no volume was seen holding are dropped once every
+     * volume has been scanned.
+     *
+     * @param volumeId scanned volume
+     * @param tracks   every track in it
+     * @param volumes  all volumes
+     */
+    public void syncVolume(String volumeId, List<Track> tracks, Collection<String> volumes) {
+        List<IndexedTrack> added = new ArrayList<>();
+        List<IndexedTrack> removed = new ArrayList<>();
+
+        synchronized (this) {
+            Shelf shelf = shelves.get(Source.APPROVED);
+            Set<String> scanned = new HashSet<>();
+
+            for (Track track : tracks) {
+                scanned.add(track.getId());
+
+                if (!shelf.byId.containsKey(track.getId())) {
+                    IndexedTrack entry = IndexedTrack.of(track, Source.APPROVED);
+
+                    shelf.add(entry);
+                    added.add(entry);
+                }
+            }
+
+            Set<String> previous = volumeTracks.put(volumeId, scanned);
+            volumeTracks.keySet().retainAll(volumes);
+
+            Set<String> held = new HashSet<>();
+
+            for (Set<String> trackIds : volumeTracks.values()) {
+                held.addAll(trackIds);
+            }
+
+            // until every volume was seen, only tracks that just left this one are known to be gone
+            Collection<String> candidates = volumeTracks.keySet().containsAll(volumes) ? shelf.byId.keySet()
+                    : (previous != null) ? previous : List.of();
+
+            for (String trackId : candidates) {
+                if (!held.contains(trackId) && shelf.byId.containsKey(trackId)) {
+                    removed.add(shelf.byId.get(trackId));
+                }
+            }
+
+            for (IndexedTrack entry : removed) {
+                shelf.remove(entry);
+            }
+        }
+
+        if (!added.isEmpty() || !removed.isEmpty()) {
+            logger.info("Duplicate index APPROVED ({}): +{} -{} tracks", volumeId, added.size(), removed.size());
+
+            persist(added, removed);
+        }
+    }
+
+    /**
+     * Take reviewed tracks off the submissions shelf; approved ones go on the
+     * approved shelf with the keys they were indexed under.
+     *
+     * @param trackIds reviewed track IDs
+     * @param approved true if they were moved to the approved playlist, false
+     *                 if they were only removed
+     */
+    public void resolve(Collection<String> trackIds, boolean approved) {
+        List<IndexedTrack> added = new ArrayList<>();
+        List<IndexedTrack> removed = new ArrayList<>();
+
+        synchronized (this) {
+            Shelf submissions = shelves.get(Source.SUBMISSIONS);
+
+            for (String trackId : trackIds) {
+                IndexedTrack entry = submissions.byId.get(trackId);
+
+                if (entry == null) {
+                    continue;
+                }
+
+                submissions.remove(entry);
+                removed.add(entry);
+
+                if (approved) {
+                    IndexedTrack moved = new IndexedTrack(trackId, Source.APPROVED, entry.getIsrc(),
+                            entry.getArtistKey(), entry.getTitleKey());
+
+                    shelves.get(Source.APPROVED).add(moved);
+                    added.add(moved);
+                }
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            persist(added, removed);
+        }
+    }
+
+    public synchronized int size(Source source) {
+        return shelves.get(source).byId.size();
+    }
+
+    // private functions -------
+
+    private static void persist(List<IndexedTrack> added, List<IndexedTrack> removed) {
+        Repositories.get().updateTrackIndex(added, removed)
+                .exceptionally(e -> {
+                    logger.error("Error saving duplicate index: {}", e.getMessage());
+
+                    return null;
+                });
+    }
+
+    /**
+     * Entries of one playlist, by track ID and by lookup key. Several track
+     * IDs can share a key (the playlist itself may hold duplicates).
+     */
+    private static final class Shelf {
+        private final Map<String, IndexedTrack> byId = new HashMap<>();
+        private final Map<String, Set<String>> byKey = new HashMap<>();
+
+        private void add(IndexedTrack entry) {
+            IndexedTrack previous = byId.put(entry.getTrackId(), entry);
+
+            if (previous != null) {
+                unlink(previous);
+            }
+
+            for (String key : entry.keys()) {
+                byKey.computeIfAbsent(key, k -> new HashSet<>()).add(entry.getTrackId());
+            }
+        }
+
+        private void remove(IndexedTrack entry) {
+            if (byId.remove(entry.getTrackId()) != null) {
+                unlink(entry);
+            }
+        }
+
+        private IndexedTrack find(IndexedTrack candidate) {
+            IndexedTrack byTrackId = byId.get(candidate.getTrackId());
+
+            if (byTrackId != null) {
+                return byTrackId;
+            }
+
+            for (String key : candidate.keys()) {
+                Set<String> trackIds = byKey.get(key);
+
+                if (trackIds != null && !trackIds.isEmpty()) {
+                    return byId.get(trackIds.iterator().next());
+                }
+            }
+
+            return null;
+        }
+
+        private void unlink(IndexedTrack entry) {
+            for (String key : entry.keys()) {
+                Set<String> trackIds = byKey.get(key);
+
+                if (trackIds != null) {
+                    trackIds.remove(entry.getTrackId());
+
+                    if (trackIds.isEmpty()) {
+                        byKey.remove(key);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package index;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+/**
+ * One track in the duplicate index: the playlist it is in plus the keys that
+ * identify the recording regardless of track ID (ISRC, normalized primary
+ * artist and title).
+ */
+public class IndexedTrack {
+    public enum Source {
+        APPROVED, // approved playlist
+        SUBMISSIONS // submissions playlist, waiting for review
+    }
+
+    // " - Remastered 2011", "(2015 Remaster)", "[Radio Edit]", "(feat. X)" ...
+    private static final Pattern VERSION_SUFFIX = Pattern.compile(
+            "\\s+-\\s+.*\\b(remaster(ed)?|version|edit|mono|stereo|single|deluxe)\\b.*$"
+                    + "|[(\\[][^)\\]]*\\b(remaster(ed)?|version|edit|mono|stereo|single|deluxe|feat\\.?|ft\\.?|with)\\b[^)\\]]*[)\\]]");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final String trackId;
+    private final Source source;
+    private final String isrc; // null if Spotify has none
+    private final String artistKey;
+    private final String titleKey;
+
+    public IndexedTrack(String trackId, Source source, String isrc, String artistKey, String titleKey) {
+        this.trackId = trackId;
+        this.source = source;
+        this.isrc = isrc;
+        this.artistKey = artistKey;
+        this.titleKey = titleKey;
+    }
+
+    public static IndexedTrack of(Track track, Source source) {
+        String isrc = (track.getExternalIds() != null && track.getExternalIds().getExternalIds() != null)
+                ? track.getExternalIds().getExternalIds().get("isrc")
+                : null;
+
+        ArtistSimplified[] artists = track.getArtists();
+        String artist = (artists != null && artists.length > 0) ? artists[0].getName() : "";
+
+        return new IndexedTrack(track.getId(), source, (isrc != null) ? isrc.toUpperCase(Locale.ROOT) : null,
+                normalize(artist), normalize(VERSION_SUFFIX.matcher(lower(track.getName())).replaceAll("")));
+    }
+
+    /**
+     * @return lookup keys: the ISRC and primary artist + title, when known
+     */
+    public List<String> keys() {
+        List<String> keys = new ArrayList<>(2);
+
+        if (isrc != null) {
+            keys.add("isrc:" + isrc);
+        }
+
+        if (!titleKey.isEmpty()) {
+            keys.add("name:" + artistKey + "|" + titleKey);
+        }
+
+        return keys;
+    }
+
+    public String getTrackId() {
+        return this.trackId;
+    }
+
+    public Source getSource() {
+        return this.source;
+    }
+
+    public String getIsrc() {
+        return this.isrc;
+    }
+
+    public String getArtistKey() {
+        return this.artistKey;
+    }
+
+    public String getTitleKey() {
+        return this.titleKey;
+    }
+
+    // lower case, accents stripped, punctuation collapsed to single spaces
+    private static String normalize(String text) {
+        String decomposed = Normalizer.normalize(lower(text), Normalizer.Form.NFD);
+
+        return NON_WORD.matcher(MARKS.matcher(decomposed).replaceAll("")).replaceAll(" ").trim();
+    }
+
+    private static String lower(String text) {
+        return (text != null) ? text.toLowerCase(Locale.ROOT) : "";
+    }
+
+}
@@ -0,0 +1,472 @@
+package index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Set of Spotify track IDs kept in a memory-mapped file.
+ *
+ * A track ID is 22 base62 characters encoding a 128-bit value, so each entry
+ * is stored as two longs in an open-addressing table (linear probing, at most
+ * half full) instead of as a String in a HashSet. That is 16 bytes per slot
+ * off-heap versus roughly 100 bytes per entry on-heap, opening an existing
+ * file is a single mmap, and contains() decodes the ID in place without
+ * allocating.
+ *
+ * File layout: a 64-byte header (magic, capacity, size, zero-entry flag)
+ * followed by capacity slots of (hi, lo). The all-zero value marks an empty
+ * slot, the ID that decodes to zero is tracked by the header flag instead.
+ *
+ * Instances are thread-safe; every operation holds the set's monitor.
+ */
+public final class TrackIdSet implements Closeable {
+    public static final int ID_LENGTH = 22;
+
+    private static final long MAGIC = 0x5442_5449_4453_0001L; // "TBTIDS", version 1
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 16;
+    private static final int MIN_CAPACITY = 1 << 10;
+    private static final int MAX_CAPACITY = 1 << 26; // keeps the mapping under 2 GB
+
+    private static final int OFFSET_MAGIC = 0;
+    private static final int OFFSET_CAPACITY = 8;
+    private static final int OFFSET_SIZE = 12;
+    private static final int OFFSET_ZERO = 16;
+
+    // Spotify's alphabet: digits, lower case, upper case
+    private static final byte[] DIGITS = new byte[128];
+    private static final long BASE62_POW10 = 839_299_365_868_340_224L; // 62^10
+
+    static {
+        String alphabet = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+        Arrays.fill(DIGITS, (byte) -1);
+
+        for (int i = 0; i < alphabet.length(); i++) {
+            DIGITS[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final Path file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity; // power of two
+    private int size;
+    private boolean containsZero;
+
+    private final long[] decoded = new long[2]; // scratch for decode(), only touched under the monitor
+
+    private TrackIdSet(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Open the set stored in the given file, creating it if it doesn't exist.
+     *
+     * @throws IOException if the file can't be mapped or isn't a TrackIdSet
+     */
+    public static TrackIdSet open(Path file) throws IOException {
+        TrackIdSet set = new TrackIdSet(file);
+
+        if (Files.exists(file) && Files.size(file) >= HEADER_BYTES) {
+            set.map(file);
+
+            if (set.buffer.getLong(OFFSET_MAGIC) != MAGIC) {
+                set.close();
+
+                throw new IOException("Not a track ID set: " + file);
+            }
+
+            set.capacity = set.buffer.getInt(OFFSET_CAPACITY);
+            set.size = set.buffer.getInt(OFFSET_SIZE);
+            set.containsZero = set.buffer.getInt(OFFSET_ZERO) != 0;
+        } else {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+
+            set.create(file, MIN_CAPACITY);
+            set.map(file);
+        }
+
+        return set;
+    }
+
+    /**
+     * @return true if the ID was not in the set yet
+     * @throws IllegalArgumentException if the ID is not a 22-character base62 ID
+     */
+    public synchronized boolean add(CharSequence id) {
+        requireValid(id);
+
+        long hi = decoded[0];
+        long lo = decoded[1];
+
+        if (hi == 0 && lo == 0) {
+            if (containsZero) {
+                return false;
+            }
+
+            containsZero = true;
+            buffer.putInt(OFFSET_ZERO, 1);
+
+            return true;
+        }
+
+        int slot = findSlot(hi, lo);
+
+        if (!isEmpty(slot)) {
+            return false;
+        }
+
+        if ((size + 1) * 2L > capacity) {
+            grow();
+
+            slot = findSlot(hi, lo);
+        }
+
+        putSlot(slot, hi, lo);
+        buffer.putInt(OFFSET_SIZE, ++size);
+
+        return true;
+    }
+
+    /**
+     * @return true if the ID is in the set; false for malformed IDs
+     */
+    public synchronized boolean contains(CharSequence id) {
+        if (!decode(id, decoded)) {
+            return false;
+        }
+
+        if (decoded[0] == 0 && decoded[1] == 0) {
+            return containsZero;
+        }
+
+        return !isEmpty(findSlot(decoded[0], decoded[1]));
+    }
+
+    /**
+     * @return true if the ID was in the set
+     */
+    public synchronized boolean remove(CharSequence id) {
+        if (!decode(id, decoded)) {
+            return false;
+        }
+
+        if (decoded[0] == 0 && decoded[1] == 0) {
+            boolean removed = containsZero;
+
+            containsZero = false;
+            buffer.putInt(OFFSET_ZERO, 0);
+
+            return removed;
+        }
+
+        int slot = findSlot(decoded[0], decoded[1]);
+
+        if (isEmpty(slot)) {
+            return false;
+        }
+
+        delete(slot);
+
+        return true;
+    }
+
+    /**
+     * Remove every ID that isn't in the given collection. Malformed IDs in it
+     * are ignored.
+     *
+     * @return number of IDs removed
+     */
+    public synchronized int retainAll(Collection<? extends CharSequence> keep) {
+        Set<UUID> kept = new HashSet<>(); // a UUID is just the 128-bit value here
+        long[] value = new long[2];
+
+        for (CharSequence id : keep) {
+            if (decode(id, value)) {
+                kept.add(new UUID(value[0], value[1]));
+            }
+        }
+
+        // collect first, deleting shifts entries between slots
+        List<UUID> removed = new ArrayList<>();
+
+        for (int slot = 0; slot < capacity; slot++) {
+            if (!isEmpty(slot)) {
+                UUID entry = new UUID(hi(slot), lo(slot));
+
+                if (!kept.contains(entry)) {
+                    removed.add(entry);
+                }
+            }
+        }
+
+        for (UUID entry : removed) {
+            delete(findSlot(entry.getMostSignificantBits(), entry.getLeastSignificantBits()));
+        }
+
+        int count = removed.size();
+
+        if (containsZero && !kept.contains(new UUID(0, 0))) {
+            containsZero = false;
+            buffer.putInt(OFFSET_ZERO, 0);
+            count++;
+        }
+
+        return count;
+    }
+
+    public synchronized int size() {
+        return size + (containsZero ? 1 : 0);
+    }
+
+    /**
+     * @return bytes used by the backing file
+     */
+    public synchronized long sizeInBytes() {
+        return HEADER_BYTES + (long) capacity * SLOT_BYTES;
+    }
+
+    /**
+     * Write changes through to disk.
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            buffer.force();
+            channel.close();
+
+            channel = null;
+        }
+    }
+
+    /**
+     * @return true if the text is a well-formed track ID
+     */
+    public static boolean isValid(CharSequence id) {
+        return decode(id, new long[2]);
+    }
+
+    // private functions -------
+
+    // empty an occupied slot
+    private void delete(int slot) {
+        // backward-shift deletion: pull later entries of the probe run into the gap
+        int mask = capacity - 1;
+        int gap = slot;
+        int next = slot;
+
+        while (true) {
+            next = (next + 1) & mask;
+
+            if (isEmpty(next)) {
+                break;
+            }
+
+            int home = home(hi(next), lo(next));
+
+            // move the entry unless its home lies cyclically in (gap, next]
+            boolean homeAfterGap = (next > gap) ? (home > gap && home <= next) : (home > gap || home <= next);
+
+            if (!homeAfterGap) {
+                putSlot(gap, hi(next), lo(next));
+                gap = next;
+            }
+        }
+
+        putSlot(gap, 0, 0);
+        buffer.putInt(OFFSET_SIZE, --size);
+    }
+
+    // base62 -> 128 bits into out[0] (high) and out[1] (low), false if malformed or out of range
+    private static boolean decode(CharSequence id, long[] out) {
+        if (id == null || id.length() != ID_LENGTH) {
+            return false;
+        }
+
+        // three chunks that fit a long (2 + 10 + 10 digits), then two 128-bit multiply-adds
+        long head = 0;
+        long middle = 0;
+        long tail = 0;
+
+        for (int i = 0; i < ID_LENGTH; i++) {
+            char c = id.charAt(i);
+            int digit = (c < 128) ? DIGITS[c] : -1;
+
+            if (digit < 0) {
+                return false;
+            }
+
+            if (i < 2) {
+                head = head * 62 + digit;
+            } else if (i < 12) {
+                middle = middle * 62 + digit;
+            } else {
+                tail = tail * 62 + digit;
+            }
+        }
+
+        // (hi, lo) = head * 62^10 + middle, at most 72 bits
+        long hi = Math.multiplyHigh(head, BASE62_POW10);
+        long lo = head * BASE62_POW10 + middle;
+
+        if (Long.compareUnsigned(lo, middle) < 0) {
+            hi++;
+        }
+
+        // (hi, lo) = (hi, lo) * 62^10 + tail, must stay within 128 bits
+        if (Math.multiplyHigh(hi, BASE62_POW10) != 0) {
+            return false;
+        }
+
+        long shiftedLo = lo * BASE62_POW10;
+        long carry = Math.multiplyHigh(lo, BASE62_POW10) + ((lo >> 63) & BASE62_POW10);
+        long newHi = hi * BASE62_POW10 + carry;
+
+        if (Long.compareUnsigned(newHi, carry) < 0) {
+            return false;
+        }
+
+        long newLo = shiftedLo + tail;
+
+        if (Long.compareUnsigned(newLo, tail) < 0) {
+            if (++newHi == 0) {
+                return false;
+            }
+        }
+
+        out[0] = newHi;
+        out[1] = newLo;
+
+        return true;
+    }
+
+    private void requireValid(CharSequence id) {
+        if (!decode(id, decoded)) {
+            throw new IllegalArgumentException("Not a Spotify track ID: " + id);
+        }
+    }
+
+    // slot holding the value, or the empty slot where it would go
+    private int findSlot(long hi, long lo) {
+        int mask = capacity - 1;
+        int slot = home(hi, lo);
+
+        while (!isEmpty(slot) && (hi(slot) != hi || lo(slot) != lo)) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private int home(long hi, long lo) {
+        // murmur3 finalizer over both halves
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return (int) h & (capacity - 1);
+    }
+
+    private boolean isEmpty(int slot) {
+        return hi(slot) == 0 && lo(slot) == 0;
+    }
+
+    private long hi(int slot) {
+        return buffer.getLong(HEADER_BYTES + slot * SLOT_BYTES);
+    }
+
+    private long lo(int slot) {
+        return buffer.getLong(HEADER_BYTES + slot * SLOT_BYTES + 8);
+    }
+
+    private void putSlot(int slot, long hi, long lo) {
+        int offset = HEADER_BYTES + slot * SLOT_BYTES;
+
+        buffer.putLong(offset, hi);
+        buffer.putLong(offset + 8, lo);
+    }
+
+    // rehash into a file twice the size, then swap it in
+    private void grow() {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Track ID set is full: " + file);
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try {
+            TrackIdSet bigger = new TrackIdSet(tmp);
+
+            bigger.create(tmp, capacity * 2);
+            bigger.map(tmp);
+
+            for (int slot = 0; slot < capacity; slot++) {
+                if (!isEmpty(slot)) {
+                    long hi = hi(slot);
+                    long lo = lo(slot);
+
+                    bigger.putSlot(bigger.findSlot(hi, lo), hi, lo);
+                }
+            }
+
+            bigger.size = size;
+            bigger.containsZero = containsZero;
+            bigger.buffer.putInt(OFFSET_SIZE, size);
+            bigger.buffer.putInt(OFFSET_ZERO, containsZero ? 1 : 0);
+            bigger.close();
+
+            close();
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            map(file);
+            capacity = buffer.getInt(OFFSET_CAPACITY);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not grow track ID set: " + e.getMessage(), e);
+        }
+    }
+
+    private void create(Path path, int slots) throws IOException {
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer header = fc.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) slots * SLOT_BYTES);
+
+            header.putLong(OFFSET_MAGIC, MAGIC);
+            header.putInt(OFFSET_CAPACITY, slots);
+            header.putInt(OFFSET_SIZE, 0);
+            header.putInt(OFFSET_ZERO, 0);
+            header.force();
+        }
+
+        capacity = slots;
+    }
+
+    private void map(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+    }
+}
@@ -0,0 +1,70 @@
+package metrics;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.dv8tion.jda.api.requests.RestRateLimiter;
+import net.dv8tion.jda.api.requests.SequentialRestRateLimiter;
+
+/**
+ * JDA's default rate limiter, counting the requests it holds. JDA doesn't
+ * expose its REST queue, so this sits in front of it (see
+ * RestConfig.setRateLimiterFactory) and serves the count as the
+ * discord_rest_queue gauge: requests queued behind a rate limit or in flight.
+ */
+public class DiscordRestQueue implements RestRateLimiter {
+    private final RestRateLimiter delegate;
+    private final Set<Work> queued = ConcurrentHashMap.newKeySet();
+
+    public DiscordRestQueue(RateLimitConfig config) {
+        delegate = new SequentialRestRateLimiter(config);
+
+        Metrics.gauge("discord_rest_queue", this::pending);
+    }
+
+    @Override
+    public void enqueue(Work task) {
+        // finished work is only dropped when counted, so count now and then
+        if (queued.size() >= 256 && queued.size() % 256 == 0) {
+            pending();
+        }
+
+        queued.add(task);
+        delegate.enqueue(task);
+    }
+
+    @Override
+    public void stop(boolean shutdown, Runnable callback) {
+        delegate.stop(shutdown, callback);
+    }
+
+    @Override
+    public boolean isStopped() {
+        return delegate.isStopped();
+    }
+
+    @Override
+    public int cancelRequests() {
+        return delegate.cancelRequests();
+    }
+
+    /**
+     * @return requests not yet done, skipped or cancelled
+     */
+    public int pending() {
+        int count = 0;
+
+        for (Iterator<Work> it = queued.iterator(); it.hasNext();) {
+            Work task = it.next();
+
+            if (task.isDone() || task.isSkipped() || task.isCancelled()) {
+                it.remove();
+            } else {
+                count++;
+            }
+        }
+
+        return count;
+    }
+}
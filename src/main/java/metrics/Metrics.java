@@ -0,0 +1,81 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide counters and gauges, served in Prometheus text format on
+ * GET /metrics. Names follow Prometheus conventions (snake_case, counters
+ * end in _total) and get a "tokenbot_" prefix when rendered.
+ */
+public final class Metrics {
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Supplier<Number>> gauges = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    public static void increment(String counter) {
+        add(counter, 1);
+    }
+
+    public static void add(String counter, long amount) {
+        counters.computeIfAbsent(counter, name -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * @return the counter's value, 0 if it was never incremented
+     */
+    public static long count(String counter) {
+        LongAdder adder = counters.get(counter);
+
+        return (adder != null) ? adder.sum() : 0;
+    }
+
+    /**
+     * Register a gauge, read whenever metrics are rendered. Registering the
+     * same name again replaces the previous gauge.
+     */
+    public static void gauge(String name, Supplier<Number> value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @return the gauge's current value, null if no such gauge is registered
+     */
+    public static Number value(String gauge) {
+        Supplier<Number> value = gauges.get(gauge);
+
+        return (value != null) ? value.get() : null;
+    }
+
+    /**
+     * @return all counters and gauges in Prometheus text exposition format
+     */
+    public static String render() {
+        StringBuilder sb = new StringBuilder();
+
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            sb.append("# TYPE tokenbot_").append(counter.getKey()).append(" counter\n");
+            sb.append("tokenbot_").append(counter.getKey()).append(' ').append(counter.getValue().sum()).append('\n');
+        }
+
+        for (Map.Entry<String, Supplier<Number>> gauge : new TreeMap<>(gauges).entrySet()) {
+            Number value;
+
+            try {
+                value = gauge.getValue().get();
+            } catch (RuntimeException e) {
+                continue; // a broken gauge must not take the others down
+            }
+
+            sb.append("# TYPE tokenbot_").append(gauge.getKey()).append(" gauge\n");
+            sb.append("tokenbot_").append(gauge.getKey()).append(' ').append(value).append('\n');
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Restart-to-ready timing. Main marks the end of each startup phase; once
+ * the bot is ready the phases are logged in one line, along with the time
+ * spent before main() (JVM boot, Main's static init, logging setup) and
+ * whether class data sharing was in use, and the total is exported as the
+ * gauge startup_ready_ms.
+ */
+public final class StartupReport {
+    private static final Logger logger = LoggerFactory.getLogger(StartupReport.class);
+
+    private static final Map<String, Long> phases = new LinkedHashMap<>(); // guarded by the class
+    private static long mainStartedAt = System.currentTimeMillis();
+    private static long lastMark = mainStartedAt;
+    private static long readyMillis = -1;
+
+    private StartupReport() {
+    }
+
+    /**
+     * Call first thing in main().
+     */
+    public static synchronized void mainStarted() {
+        mainStartedAt = System.currentTimeMillis();
+        lastMark = mainStartedAt;
+    }
+
+    /**
+     * Mark the end of a startup phase that began at the previous mark.
+     */
+    public static synchronized void phase(String name) {
+        long now = System.currentTimeMillis();
+
+        phases.put(name, now - lastMark);
+        lastMark = now;
+    }
+
+    /**
+     * Mark the bot as ready and log the report. Only the first call counts.
+     */
+    public static synchronized void ready() {
+        if (readyMillis >= 0) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long jvmStartedAt = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+        readyMillis = now - jvmStartedAt;
+        phases.put("until ready", now - lastMark);
+
+        StringBuilder sb = new StringBuilder();
+
+        for (Map.Entry<String, Long> phase : phases.entrySet()) {
+            sb.append(", ").append(phase.getKey()).append(' ').append(phase.getValue()).append(" ms");
+        }
+
+        String vmInfo = System.getProperty("java.vm.info", "");
+
+        logger.info("Ready {} ms after JVM start (before main {} ms{}; class data sharing {})", readyMillis,
+                mainStartedAt - jvmStartedAt, sb, vmInfo.contains("sharing") ? "on" : "off");
+
+        Metrics.gauge("startup_ready_ms", StartupReport::getReadyMillis);
+    }
+
+    /**
+     * @return milliseconds from JVM start to ready, -1 until then
+     */
+    public static synchronized long getReadyMillis() {
+        return readyMillis;
+    }
+}
@@ -0,0 +1,35 @@
+package ordering;
+
+/**
+ * One reorder call: take rangeLength items starting at rangeStart and put
+ * them before the item at insertBefore. Positions are those of the playlist
+ * just before this move, as the Web API expects.
+ */
+public class Move {
+    private final int rangeStart;
+    private final int rangeLength;
+    private final int insertBefore;
+
+    public Move(int rangeStart, int rangeLength, int insertBefore) {
+        this.rangeStart = rangeStart;
+        this.rangeLength = rangeLength;
+        this.insertBefore = insertBefore;
+    }
+
+    public int getRangeStart() {
+        return rangeStart;
+    }
+
+    public int getRangeLength() {
+        return rangeLength;
+    }
+
+    public int getInsertBefore() {
+        return insertBefore;
+    }
+
+    @Override
+    public String toString() {
+        return "move " + rangeLength + " @" + rangeStart + " before " + insertBefore;
+    }
+}
@@ -0,0 +1,137 @@
+package ordering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Turns a target order into reorder calls. The longest run of items that are
+ * already in target order relative to each other (the longest increasing
+ * subsequence of their target ranks) stays where it is; every other item is
+ * moved once, right behind the item that precedes it in the target order.
+ * Items that come next to each other in the target order and already sit
+ * together go in one call, so a playlist that is mostly in order (the usual
+ * case after a review pass) costs a handful of calls rather than one per
+ * item.
+ */
+public final class MovePlan {
+
+    private MovePlan() {
+    }
+
+    /**
+     * @param target current positions in target order, see
+     *               {@link PlaylistOrder#target}
+     * @return the moves to apply in order, empty if already in order
+     */
+    public static List<Move> plan(int[] target) {
+        int n = target.length;
+        int[] rank = new int[n]; // current position -> target position
+
+        for (int k = 0; k < n; k++) {
+            rank[target[k]] = k;
+        }
+
+        boolean[] anchored = anchors(rank);
+
+        // simulate the playlist as a list of target ranks
+        int[] playlist = rank.clone();
+        int[] position = new int[n]; // target rank -> position right now
+
+        for (int i = 0; i < n; i++) {
+            position[playlist[i]] = i;
+        }
+
+        List<Move> moves = new ArrayList<>();
+
+        for (int r = 0; r < n; r++) {
+            if (anchored[r]) {
+                continue;
+            }
+
+            int start = position[r];
+            int length = 1;
+
+            // take the following ranks along while they are unanchored and right behind
+            while (r + length < n && !anchored[r + length] && position[r + length] == start + length) {
+                length++;
+            }
+
+            int insertBefore = (r == 0) ? 0 : position[r - 1] + 1;
+
+            if (insertBefore != start) {
+                moves.add(new Move(start, length, insertBefore));
+                move(playlist, position, start, length, insertBefore);
+            }
+
+            r += length - 1;
+        }
+
+        return moves;
+    }
+
+    // private functions -------
+
+    // marks the ranks on one longest increasing subsequence (patience sorting, O(n log n))
+    private static boolean[] anchors(int[] rank) {
+        int n = rank.length;
+        int[] tails = new int[n]; // index into rank of the smallest tail of each length
+        int[] previous = new int[n];
+        int length = 0;
+
+        for (int i = 0; i < n; i++) {
+            int lo = 0;
+            int hi = length;
+
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+
+                if (rank[tails[mid]] < rank[i]) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+
+            previous[i] = (lo > 0) ? tails[lo - 1] : -1;
+            tails[lo] = i;
+
+            if (lo == length) {
+                length++;
+            }
+        }
+
+        boolean[] anchored = new boolean[n];
+
+        for (int i = (length > 0) ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            anchored[rank[i]] = true;
+        }
+
+        return anchored;
+    }
+
+    // same semantics as the Web API: insertBefore is a position before the range is taken out
+    private static void move(int[] playlist, int[] position, int start, int length, int insertBefore) {
+        int[] range = Arrays.copyOfRange(playlist, start, start + length);
+        int from;
+        int to;
+
+        if (insertBefore < start) {
+            System.arraycopy(playlist, insertBefore, playlist, insertBefore + length, start - insertBefore);
+            System.arraycopy(range, 0, playlist, insertBefore, length);
+
+            from = insertBefore;
+            to = start + length;
+        } else {
+            System.arraycopy(playlist, start + length, playlist, start, insertBefore - start - length);
+            System.arraycopy(range, 0, playlist, insertBefore - length, length);
+
+            from = start;
+            to = insertBefore;
+        }
+
+        for (int i = from; i < to; i++) {
+            position[playlist[i]] = i;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ordering;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.PlaylistTrack;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+/**
+ * What the ordering needs to know about one playlist item: its primary
+ * artist, popularity, release date and when it was added (approval time for
+ * the approved playlist). Items that aren't Spotify tracks (local files,
+ * episodes) are kept but not ranked.
+ */
+public class PlaylistItem {
+    private final String trackId; // null if not a track
+    private final String artistId;
+    private final int popularity;
+    private final long releaseEpochDay; // -1 if unknown
+    private final long addedAtMillis; // 0 if unknown
+
+    public PlaylistItem(String trackId, String artistId, int popularity, long releaseEpochDay, long addedAtMillis) {
+        this.trackId = trackId;
+        this.artistId = artistId;
+        this.popularity = popularity;
+        this.releaseEpochDay = releaseEpochDay;
+        this.addedAtMillis = addedAtMillis;
+    }
+
+    public static PlaylistItem of(PlaylistTrack item) {
+        Date addedAt = item.getAddedAt();
+        long added = (addedAt != null) ? addedAt.getTime() : 0;
+
+        if (!(item.getTrack() instanceof Track)) {
+            return new PlaylistItem(null, null, 0, -1, added);
+        }
+
+        Track track = (Track) item.getTrack();
+        ArtistSimplified[] artists = track.getArtists();
+        String artistId = (artists != null && artists.length > 0) ? artists[0].getId() : null;
+        String releaseDate = (track.getAlbum() != null) ? track.getAlbum().getReleaseDate() : null;
+
+        return new PlaylistItem(track.getId(), artistId, (track.getPopularity() != null) ? track.getPopularity() : 0,
+                releaseEpochDay(releaseDate), added);
+    }
+
+    public boolean isTrack() {
+        return trackId != null;
+    }
+
+    public String getTrackId() {
+        return trackId;
+    }
+
+    /**
+     * @return primary artist ID, null if unknown
+     */
+    public String getArtistId() {
+        return artistId;
+    }
+
+    /**
+     * @return Spotify popularity, 0 to 100
+     */
+    public int getPopularity() {
+        return popularity;
+    }
+
+    /**
+     * @return release date as days since the epoch, -1 if unknown
+     */
+    public long getReleaseEpochDay() {
+        return releaseEpochDay;
+    }
+
+    /**
+     * @return epoch millis the item was added to the playlist, 0 if unknown
+     */
+    public long getAddedAtMillis() {
+        return addedAtMillis;
+    }
+
+    // release dates come as "2021", "2021-03" or "2021-03-14" depending on precision
+    private static long releaseEpochDay(String releaseDate) {
+        if (releaseDate == null || releaseDate.length() < 4) {
+            return -1;
+        }
+
+        try {
+            String[] parts = releaseDate.split("-");
+            int year = Integer.parseInt(parts[0]);
+            int month = (parts.length > 1) ? Integer.parseInt(parts[1]) : 1;
+            int day = (parts.length > 2) ? Integer.parseInt(parts[2]) : 1;
+
+            return LocalDate.of(year, month, day).toEpochDay();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
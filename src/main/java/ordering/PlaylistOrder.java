@@ -0,0 +1,149 @@
+package ordering;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Target order for a playlist. Each track gets a score from its popularity,
+ * how recent its release is and how recently it was added, best first; then
+ * tracks are spread out so the same primary artist doesn't come up again
+ * within ARTIST_GAP positions when something else can go there. Items that
+ * aren't tracks keep their relative order at the end.
+ *
+ * The score only moves slowly between runs, so consecutive runs produce
+ * similar orders and MovePlan has little to do.
+ */
+public final class PlaylistOrder {
+    private static final double POPULARITY_WEIGHT = 0.4;
+    private static final double RELEASE_WEIGHT = 0.3;
+    private static final double ADDED_WEIGHT = 0.3;
+
+    private static final double RELEASE_HALF_LIFE_DAYS = 365;
+    private static final double ADDED_HALF_LIFE_DAYS = 60;
+
+    private static final int ARTIST_GAP = 5; // positions before the same artist may come up again
+
+    private PlaylistOrder() {
+    }
+
+    /**
+     * @param items     the playlist as it is now
+     * @param nowMillis reference time for release and added ages
+     * @return current positions in target order: target[k] is the current
+     *         position of the item that should end up at position k
+     */
+    public static int[] target(List<PlaylistItem> items, long nowMillis) {
+        List<Integer> tracks = new ArrayList<>();
+        List<Integer> others = new ArrayList<>();
+        double[] scores = new double[items.size()];
+
+        for (int i = 0; i < items.size(); i++) {
+            PlaylistItem item = items.get(i);
+
+            if (item.isTrack()) {
+                tracks.add(i);
+                scores[i] = score(item, nowMillis);
+            } else {
+                others.add(i);
+            }
+        }
+
+        // best first, ties keep the current order
+        tracks.sort(Comparator.comparingDouble((Integer i) -> -scores[i]).thenComparingInt(i -> i));
+
+        int[] target = new int[items.size()];
+        int k = 0;
+
+        for (int i : spaceArtists(items, tracks)) {
+            target[k++] = i;
+        }
+
+        for (int i : others) {
+            target[k++] = i;
+        }
+
+        return target;
+    }
+
+    // private functions -------
+
+    private static double score(PlaylistItem item, long nowMillis) {
+        double score = POPULARITY_WEIGHT * item.getPopularity() / 100.0;
+
+        if (item.getReleaseEpochDay() >= 0) {
+            long today = TimeUnit.MILLISECONDS.toDays(nowMillis);
+
+            score += RELEASE_WEIGHT * decay(today - item.getReleaseEpochDay(), RELEASE_HALF_LIFE_DAYS);
+        }
+
+        if (item.getAddedAtMillis() > 0) {
+            double addedDays = (nowMillis - item.getAddedAtMillis()) / (double) TimeUnit.DAYS.toMillis(1);
+
+            score += ADDED_WEIGHT * decay(addedDays, ADDED_HALF_LIFE_DAYS);
+        }
+
+        return score;
+    }
+
+    // 1 when new, 0.5 after one half-life
+    private static double decay(double ageDays, double halfLifeDays) {
+        return Math.pow(0.5, Math.max(0, ageDays) / halfLifeDays);
+    }
+
+    // greedy: take the best remaining track whose artist isn't among the last ARTIST_GAP placed
+    private static List<Integer> spaceArtists(List<PlaylistItem> items, List<Integer> ranked) {
+        LinkedList<Integer> remaining = new LinkedList<>(ranked);
+        List<Integer> spaced = new ArrayList<>(ranked.size());
+        Deque<String> recent = new ArrayDeque<>(ARTIST_GAP);
+        Set<String> recentSet = new HashSet<>();
+
+        while (!remaining.isEmpty()) {
+            Integer pick = null;
+
+            for (Iterator<Integer> it = remaining.iterator(); it.hasNext();) {
+                Integer candidate = it.next();
+                String artist = items.get(candidate).getArtistId();
+
+                if (artist == null || !recentSet.contains(artist)) {
+                    pick = candidate;
+                    it.remove();
+
+                    break;
+                }
+            }
+
+            if (pick == null) {
+                pick = remaining.removeFirst(); // only recent artists left
+            }
+
+            spaced.add(pick);
+
+            String artist = items.get(pick).getArtistId();
+
+            if (recent.size() == ARTIST_GAP) {
+                String oldest = recent.removeFirst();
+
+                // the same artist can be in the window twice when nothing else was left
+                if (!recent.contains(oldest)) {
+                    recentSet.remove(oldest);
+                }
+            }
+
+            recent.addLast((artist != null) ? artist : "");
+
+            if (artist != null) {
+                recentSet.add(artist);
+            }
+        }
+
+        return spaced;
+    }
+}
@@ -0,0 +1,269 @@
+package repository;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import exceptions.RepositoryException;
+import index.IndexedTrack;
+import stats.StatsDelta;
+import stats.UserStats;
+import utils.ResolvedSubmission;
+import utils.Submission;
+import utils.SubmissionBatch;
+
+/**
+ * Repository kept entirely in memory. Used for local runs and stand-in
+ * environments (TOKENBOT_STORE=memory); nothing survives a restart.
+ *
+ * Behaves like PostgresRepository as far as the Repository contract goes
+ * (RepositoryContract in the tests), including its constraints: rows
+ * missing a NOT NULL column fail their write.
+ */
+public class InMemoryRepository implements Repository {
+    private final Map<String, String> config = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, Submission> submissions = new ConcurrentSkipListMap<>();
+    private final AtomicInteger nextSubmissionId = new AtomicInteger(1);
+    private final Map<String, Integer> messageTracks = new ConcurrentHashMap<>(); // messageid:trackid -> submissionid
+    private final Map<String, UserStats> userStats = new ConcurrentHashMap<>();
+    private final Map<String, IndexedTrack> trackIndex = new ConcurrentHashMap<>(); // "source:trackid"
+    private final List<ResolvedSubmission> history = new ArrayList<>(); // guarded by itself
+
+    @Override
+    public CompletableFuture<String> readConfig(String key) {
+        return CompletableFuture.completedFuture(config.get(key));
+    }
+
+    @Override
+    public CompletableFuture<Void> saveConfig(String key, String value) {
+        config.put(key, value);
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveSubmission(String trackId, String userId, String messageId) {
+        if (trackId == null || userId == null) {
+            return CompletableFuture.failedFuture(new RepositoryException("trackid and userid are required"));
+        }
+
+        insert(trackId, userId, messageId);
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveSubmissions(List<Submission> batch) {
+        // one statement in Postgres: a bad row fails all of them
+        for (Submission submission : batch) {
+            if (submission.getTrackId() == null || submission.getUserId() == null) {
+                return CompletableFuture.failedFuture(new RepositoryException("trackid and userid are required"));
+            }
+        }
+
+        for (Submission submission : batch) {
+            insert(submission.getTrackId(), submission.getUserId(), submission.getMessageId());
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteSubmission(int submissionId) {
+        remove(submissionId);
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<List<Submission>> fetchAllSubmissions() {
+        return CompletableFuture.completedFuture(new ArrayList<>(submissions.values()));
+    }
+
+    @Override
+    public CompletableFuture<SubmissionBatch> fetchSubmissionsAfter(int afterId, int limit) {
+        SubmissionBatch.Builder page = SubmissionBatch.builder(limit);
+        int rows = 0;
+
+        for (Submission submission : submissions.tailMap(afterId, false).values()) {
+            if (rows++ == limit) {
+                break;
+            }
+
+            page.add(submission.getSubmissionId(), submission.getTrackId(), submission.getUserId(),
+                    submission.getMessageId());
+        }
+
+        return CompletableFuture.completedFuture(page.build());
+    }
+
+    @Override
+    public CompletableFuture<List<Submission>> fetchSubmissionsFor(Collection<String> trackIds,
+            Collection<String> messageIds) {
+        Set<String> tracks = new HashSet<>(trackIds);
+        List<Submission> found = new ArrayList<>();
+
+        for (Submission submission : submissions.values()) {
+            if (tracks.contains(submission.getTrackId())
+                    || (submission.getMessageId() != null && messageIds.contains(submission.getMessageId()))) {
+                found.add(submission);
+            }
+        }
+
+        return CompletableFuture.completedFuture(found);
+    }
+
+    @Override
+    public CompletableFuture<List<ResolvedSubmission>> archiveSubmissions(List<ResolvedSubmission> resolved) {
+        List<ResolvedSubmission> archived = new ArrayList<>();
+
+        synchronized (history) {
+            for (ResolvedSubmission entry : resolved) {
+                if (remove(entry.getSubmission().getSubmissionId())) {
+                    history.add(entry);
+                    archived.add(entry);
+                }
+            }
+        }
+
+        return CompletableFuture.completedFuture(archived);
+    }
+
+    @Override
+    public CompletableFuture<List<ResolvedSubmission>> fetchHistory(String userId, int limit) {
+        List<ResolvedSubmission> result = new ArrayList<>();
+
+        synchronized (history) {
+            for (ResolvedSubmission entry : history) {
+                if (entry.getSubmission().getUserId().equals(userId)) {
+                    result.add(entry);
+                }
+            }
+        }
+
+        result.sort(Comparator.comparingLong(ResolvedSubmission::getResolvedAt).reversed());
+
+        return CompletableFuture.completedFuture(
+                new ArrayList<>(result.subList(0, Math.min(limit, result.size()))));
+    }
+
+    @Override
+    public CompletableFuture<Integer> dropHistoryOlderThan(int retentionMonths) {
+        // whole months, like dropping Postgres partitions
+        YearMonth oldestKept = YearMonth.now(ZoneOffset.UTC).minusMonths(retentionMonths);
+        Set<YearMonth> dropped = new HashSet<>();
+
+        synchronized (history) {
+            history.removeIf(entry -> {
+                YearMonth month = monthOf(entry);
+
+                if (!month.isBefore(oldestKept)) {
+                    return false;
+                }
+
+                dropped.add(month);
+
+                return true;
+            });
+        }
+
+        return CompletableFuture.completedFuture(dropped.size());
+    }
+
+    /**
+     * Forget all history (soak runs, where resolved rows would otherwise pile
+     * up in memory).
+     */
+    public void clearHistory() {
+        synchronized (history) {
+            history.clear();
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<UserStats>> loadUserStats() {
+        List<UserStats> stats = new ArrayList<>();
+
+        for (UserStats user : userStats.values()) {
+            stats.add(user.copy());
+        }
+
+        return CompletableFuture.completedFuture(stats);
+    }
+
+    @Override
+    public CompletableFuture<Void> applyStatsDeltas(List<StatsDelta> deltas) {
+        for (StatsDelta delta : deltas) {
+            userStats.compute(delta.getUserId(), (userId, stored) -> {
+                UserStats base = (stored != null) ? stored : new UserStats(userId);
+
+                return new UserStats(userId, base.getSubmitted() + delta.getSubmitted(),
+                        base.getApproved() + delta.getApproved(), base.getRejected() + delta.getRejected(),
+                        delta.isStreakChanged() ? delta.getCurrentStreak() : base.getCurrentStreak(),
+                        Math.max(base.getBestStreak(), delta.getBestStreak()),
+                        Math.max(base.getLastSubmittedAt(), delta.getLastSubmittedAt()));
+            });
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<List<IndexedTrack>> loadTrackIndex() {
+        return CompletableFuture.completedFuture(new ArrayList<>(trackIndex.values()));
+    }
+
+    @Override
+    public CompletableFuture<Void> updateTrackIndex(List<IndexedTrack> added, List<IndexedTrack> removed) {
+        for (IndexedTrack entry : removed) {
+            trackIndex.remove(entry.getSource() + ":" + entry.getTrackId());
+        }
+
+        for (IndexedTrack entry : added) {
+            trackIndex.put(entry.getSource() + ":" + entry.getTrackId(), entry);
+        }
+
+        return CompletableFuture.completedFuture(null);
+    }
+
+    // same as the unique (messageid, trackid) index in Postgres: a second row for a track of a message is ignored
+    private void insert(String trackId, String userId, String messageId) {
+        int submissionId = nextSubmissionId.getAndIncrement();
+
+        if (messageId != null && messageTracks.putIfAbsent(messageId + ":" + trackId, submissionId) != null) {
+            return;
+        }
+
+        submissions.put(submissionId, new Submission(trackId, userId, messageId, submissionId));
+    }
+
+    private static YearMonth monthOf(ResolvedSubmission entry) {
+        return YearMonth.from(Instant.ofEpochMilli(entry.getResolvedAt()).atZone(ZoneOffset.UTC));
+    }
+
+    private boolean remove(int submissionId) {
+        Submission removed = submissions.remove(submissionId);
+
+        if (removed != null && removed.getMessageId() != null) {
+            messageTracks.remove(removed.getMessageId() + ":" + removed.getTrackId(), submissionId);
+        }
+
+        return removed != null;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+}
@@ -0,0 +1,179 @@
+package repository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Versioned schema migrations. Each one is a SQL file under db/migration on
+ * the classpath, named V&lt;version&gt;__&lt;description&gt;.sql and listed in
+ * MIGRATIONS. Applied versions are recorded in schema_migrations, and each
+ * migration runs in its own transaction together with that record.
+ *
+ * Replicas starting together serialize on an advisory lock, so exactly one of
+ * them applies a pending migration and the others find it recorded. Applied
+ * files must not be edited; add a new version instead (a changed file is
+ * logged, not re-run).
+ */
+public final class Migrations {
+    private static final Logger logger = LoggerFactory.getLogger(Migrations.class);
+
+    // in order; append only
+    private static final String[] MIGRATIONS = {
+            "V1__baseline.sql",
+            "V2__submission_keys.sql",
+            "V3__submission_message_tracks.sql",
+            "V4__submission_history_keys.sql"
+    };
+    private static final String LOCATION = "db/migration/";
+    private static final String LOCK = "schema_migrations";
+
+    private Migrations() {
+    }
+
+    // public functions -------
+
+    /**
+     * Apply the migrations this database hasn't seen yet.
+     *
+     * @return number of migrations applied
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+
+        conn.setAutoCommit(true);
+
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT pg_advisory_lock(hashtext(?))")) {
+            stmt.setString(1, LOCK);
+            stmt.execute();
+        }
+
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_migrations (version INT PRIMARY KEY, "
+                        + "description TEXT NOT NULL, checksum BIGINT NOT NULL, "
+                        + "applied_at TIMESTAMPTZ NOT NULL DEFAULT now())");
+            }
+
+            Map<Integer, Long> applied = applied(conn);
+            int count = 0;
+
+            for (String name : MIGRATIONS) {
+                int version = version(name);
+                String sql = read(name);
+                long checksum = checksum(sql);
+                Long recorded = applied.get(version);
+
+                if (recorded == null) {
+                    apply(conn, version, description(name), sql, checksum);
+                    count++;
+                } else if (recorded != checksum) {
+                    logger.warn("Migration {} changed after it was applied, ignoring the change", name);
+                }
+            }
+
+            if (count > 0) {
+                logger.info("Applied {} schema migrations, now at version {}", count,
+                        version(MIGRATIONS[MIGRATIONS.length - 1]));
+            }
+
+            return count;
+        } finally {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT pg_advisory_unlock(hashtext(?))")) {
+                stmt.setString(1, LOCK);
+                stmt.execute();
+            }
+
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // private functions -------
+
+    private static Map<Integer, Long> applied(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+            while (rs.next()) {
+                applied.put(rs.getInt(1), rs.getLong(2));
+            }
+        }
+
+        return applied;
+    }
+
+    private static void apply(Connection conn, int version, String description, String sql, long checksum)
+            throws SQLException {
+        long start = System.currentTimeMillis();
+
+        conn.setAutoCommit(false);
+
+        try {
+            // the driver splits the file into statements, dollar-quoted blocks included
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(sql);
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "INSERT INTO schema_migrations (version, description, checksum) VALUES (?, ?, ?)")) {
+                stmt.setInt(1, version);
+                stmt.setString(2, description);
+                stmt.setLong(3, checksum);
+                stmt.executeUpdate();
+            }
+
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+
+            throw new SQLException("Migration V" + version + " (" + description + ") failed: " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(true);
+        }
+
+        logger.info("Applied migration V{} ({}) in {} ms", version, description, System.currentTimeMillis() - start);
+    }
+
+    // V12__add_things.sql -> 12
+    private static int version(String name) {
+        return Integer.parseInt(name.substring(1, name.indexOf("__")));
+    }
+
+    // V12__add_things.sql -> "add things"
+    private static String description(String name) {
+        return name.substring(name.indexOf("__") + 2, name.lastIndexOf('.')).replace('_', ' ');
+    }
+
+    private static String read(String name) {
+        try (InputStream in = Migrations.class.getClassLoader().getResourceAsStream(LOCATION + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Migration " + name + " is missing from the classpath");
+            }
+
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read migration " + name, e);
+        }
+    }
+
+    // line endings don't count, so a checkout on another OS doesn't look edited
+    private static long checksum(String sql) {
+        CRC32 crc = new CRC32();
+
+        crc.update(sql.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+
+        return crc.getValue();
+    }
+}
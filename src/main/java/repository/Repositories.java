@@ -0,0 +1,41 @@
+package repository;
+
+/**
+ * Holds the process-wide repository.
+ *
+ * Postgres (DATABASE_URL) unless TOKENBOT_STORE=memory is set, which is meant
+ * for local runs against stand-ins.
+ */
+public final class Repositories {
+    private static Repository instance;
+
+    private Repositories() {
+    }
+
+    public static synchronized Repository get() {
+        if (instance == null) {
+            if ("memory".equalsIgnoreCase(System.getenv("TOKENBOT_STORE"))) {
+                instance = new InMemoryRepository();
+            } else {
+                instance = new PostgresRepository(System.getenv("DATABASE_URL"));
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * @return true on a thread running repository work, where waiting for a
+     *         repository future can deadlock
+     */
+    public static boolean isRepositoryThread() {
+        return Thread.currentThread() instanceof RepositoryThread;
+    }
+
+    /**
+     * Replace the process-wide repository (tools and stand-in environments).
+     */
+    public static synchronized void set(Repository repository) {
+        instance = repository;
+    }
+}
@@ -0,0 +1,118 @@
+package repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import index.IndexedTrack;
+import stats.StatsDelta;
+import stats.UserStats;
+import utils.ResolvedSubmission;
+import utils.Submission;
+import utils.SubmissionBatch;
+
+/**
+ * Persistence for bot configuration and submissions.
+ *
+ * Every call returns immediately; the work runs on the implementation's own
+ * executor so JDA event threads never wait on SQL. Writes complete in the
+ * order they were issued, and a read always observes writes issued before it.
+ */
+public interface Repository {
+
+    // config -------
+
+    /**
+     * @param key config key
+     * @return future completing with the value, or null if the key is not set
+     */
+    CompletableFuture<String> readConfig(String key);
+
+    /**
+     * Insert or overwrite a config value.
+     */
+    CompletableFuture<Void> saveConfig(String key, String value);
+
+    // submissions -------
+
+    CompletableFuture<Void> saveSubmission(String trackId, String userId, String messageId);
+
+    /**
+     * Insert many submissions with a single statement. Submission IDs in the
+     * given objects are ignored, the store assigns them.
+     */
+    CompletableFuture<Void> saveSubmissions(List<Submission> submissions);
+
+    CompletableFuture<Void> deleteSubmission(int submissionId);
+
+    /**
+     * @return every pending submission, in submission ID order
+     */
+    CompletableFuture<List<Submission>> fetchAllSubmissions();
+
+    /**
+     * One page of submissions in submission ID order, for incremental passes.
+     * Read by column, see SubmissionBatch.
+     *
+     * @param afterId only submissions with a larger ID
+     * @param limit   page size
+     */
+    CompletableFuture<SubmissionBatch> fetchSubmissionsAfter(int afterId, int limit);
+
+    /**
+     * Submissions for any of the given tracks or Discord messages, in
+     * submission ID order.
+     */
+    CompletableFuture<List<Submission>> fetchSubmissionsFor(Collection<String> trackIds,
+            Collection<String> messageIds);
+
+    // history -------
+
+    /**
+     * Move resolved submissions out of the live submissions table into the
+     * append-only submission_history table, in a single transaction. A
+     * submission that is no longer live (another call, or another replica,
+     * resolved it first) is skipped, so each one is archived once.
+     *
+     * @return future completing with the submissions this call archived
+     */
+    CompletableFuture<List<ResolvedSubmission>> archiveSubmissions(List<ResolvedSubmission> resolved);
+
+    /**
+     * @return the user's most recently resolved submissions, newest first
+     */
+    CompletableFuture<List<ResolvedSubmission>> fetchHistory(String userId, int limit);
+
+    /**
+     * Drop history older than the retention period, in whole calendar months
+     * (UTC): the current month and the retentionMonths before it are kept.
+     *
+     * @return future completing with the number of months dropped
+     */
+    CompletableFuture<Integer> dropHistoryOlderThan(int retentionMonths);
+
+    // stats -------
+
+    CompletableFuture<List<UserStats>> loadUserStats();
+
+    /**
+     * Add each delta to the stored counters of its user. Increments commute, so
+     * several replicas can checkpoint the same user.
+     */
+    CompletableFuture<Void> applyStatsDeltas(List<StatsDelta> deltas);
+
+    // duplicate index -------
+
+    CompletableFuture<List<IndexedTrack>> loadTrackIndex();
+
+    /**
+     * Insert/overwrite the added entries and delete the removed ones, in one
+     * transaction.
+     */
+    CompletableFuture<Void> updateTrackIndex(List<IndexedTrack> added, List<IndexedTrack> removed);
+
+    /**
+     * Flush pending writes and release resources.
+     */
+    void close();
+}
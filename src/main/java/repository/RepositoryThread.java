@@ -0,0 +1,15 @@
+package repository;
+
+/**
+ * Thread running repository work. Blocking on a repository future from one of
+ * these can wait on the thread's own pool, so the blocking helpers check for
+ * it (see Repositories.isRepositoryThread).
+ */
+class RepositoryThread extends Thread {
+
+    RepositoryThread(Runnable task, String name) {
+        super(task, name);
+
+        setDaemon(true);
+    }
+}
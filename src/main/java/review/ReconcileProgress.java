@@ -0,0 +1,71 @@
+package review;
+
+/**
+ * Snapshot of the background reconciler's state.
+ */
+public class ReconcileProgress {
+    private final int pass;
+    private final int checked;
+    private final int resolved;
+    private final int pendingReactions;
+    private final long lastStepMillis;
+    private final long lastPassMillis;
+
+    public ReconcileProgress(int pass, int checked, int resolved, int pendingReactions, long lastStepMillis,
+            long lastPassMillis) {
+        this.pass = pass;
+        this.checked = checked;
+        this.resolved = resolved;
+        this.pendingReactions = pendingReactions;
+        this.lastStepMillis = lastStepMillis;
+        this.lastPassMillis = lastPassMillis;
+    }
+
+    /**
+     * @return number of the pass in progress, starting at 1
+     */
+    public int getPass() {
+        return pass;
+    }
+
+    /**
+     * @return submissions checked so far in this pass
+     */
+    public int getChecked() {
+        return checked;
+    }
+
+    /**
+     * @return submissions resolved (approved or removed) so far in this pass
+     */
+    public int getResolved() {
+        return resolved;
+    }
+
+    /**
+     * @return reactions waiting to be added
+     */
+    public int getPendingReactions() {
+        return pendingReactions;
+    }
+
+    /**
+     * @return epoch millis of the last increment, 0 if none ran yet
+     */
+    public long getLastStepMillis() {
+        return lastStepMillis;
+    }
+
+    /**
+     * @return epoch millis of the last completed pass, 0 if none completed yet
+     */
+    public long getLastPassMillis() {
+        return lastPassMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Pass " + pass + ": " + checked + " submissions checked, " + resolved + " resolved, "
+                + pendingReactions + " reactions waiting.";
+    }
+}
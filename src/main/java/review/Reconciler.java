@@ -0,0 +1,227 @@
+package review;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import api.SpotifyAPI;
+import coordination.Coordination;
+import coordination.Coordinator;
+import metrics.Metrics;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildMessageChannel;
+import net.dv8tion.jda.api.entities.emoji.Emoji;
+import repository.Repositories;
+import utils.ReactionInfo;
+import utils.ResolvedSubmission;
+import utils.SubmissionBatch;
+import utils.Utility;
+
+/**
+ * Reconciles submissions in the background instead of all at once.
+ *
+ * Every RECONCILE_INTERVAL_SECONDS (default 60, 0 turns the schedule off) the
+ * replica holding the review lease checks the next RECONCILE_BATCH (default
+ * 100) submissions in ID order against both playlists, wrapping around once
+ * it reaches the end of the table. Playlists are only rescanned when their
+ * snapshot changed. Reactions for resolved submissions are queued and added
+ * one every REACTION_INTERVAL_MS (default 1000) so they never crowd out other
+ * Discord traffic.
+ */
+public class Reconciler {
+    private static Reconciler instance;
+
+    private static final Logger logger = LoggerFactory.getLogger(Reconciler.class);
+
+    private final SpotifyAPI spotifyApi;
+    private final int batchSize;
+    private final long intervalSeconds;
+    private final long reactionIntervalMillis;
+
+    private final ScheduledExecutorService worker; // passes and flushes, one at a time
+    private final ScheduledExecutorService pacer;
+    private final Queue<ReactionInfo> reactions = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger resolvedSinceFlush = new AtomicInteger();
+
+    private JDA jda;
+    private String channelId;
+
+    // progress, written on the worker thread only
+    private int cursor; // last submission ID checked in this pass
+    private volatile int pass = 1;
+    private volatile int checked;
+    private volatile int resolved;
+    private volatile long lastStepMillis;
+    private volatile long lastPassMillis;
+
+    // constructor
+    private Reconciler() {
+        spotifyApi = SpotifyAPI.getInstance();
+        batchSize = readInt("RECONCILE_BATCH", 100);
+        intervalSeconds = readInt("RECONCILE_INTERVAL_SECONDS", 60);
+        reactionIntervalMillis = readInt("REACTION_INTERVAL_MS", 1000);
+
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reconciler");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        pacer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reaction-pacer");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        Metrics.gauge("reconciler_reactions_queued", reactions::size);
+    }
+
+    public static synchronized Reconciler getInstance() {
+        if (instance == null) {
+            instance = new Reconciler();
+        }
+
+        return instance;
+    }
+
+    // public functions -------
+
+    /**
+     * Start the scheduled passes and the reaction pacer.
+     *
+     * @param jda       bot
+     * @param channelId submissions channel, where reactions go
+     */
+    public synchronized void start(JDA jda, String channelId) {
+        this.jda = jda;
+        this.channelId = channelId;
+
+        if (intervalSeconds > 0) {
+            worker.scheduleWithFixedDelay(this::scheduledStep, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+
+        pacer.scheduleAtFixedRate(this::react, reactionIntervalMillis, reactionIntervalMillis, TimeUnit.MILLISECONDS);
+
+        logger.info("Reconciler started: {} submissions every {} s, one reaction every {} ms", batchSize,
+                intervalSeconds, reactionIntervalMillis);
+    }
+
+    /**
+     * Finish the current pass right away. Reactions are still paced.
+     *
+     * @return future completing with the number of submissions resolved since
+     *         the previous flush (by this call or by the scheduled passes)
+     */
+    public CompletableFuture<Integer> flush() {
+        return CompletableFuture.supplyAsync(() -> {
+            int current = pass;
+
+            while (pass == current) {
+                step();
+            }
+
+            return resolvedSinceFlush.getAndSet(0);
+        }, worker);
+    }
+
+    /**
+     * Count submissions resolved outside a pass (]approve, ]reject) and queue
+     * their reactions with the rest.
+     */
+    public void recordReviewed(List<ResolvedSubmission> reviewed) {
+        reactions.addAll(SpotifyAPI.reactionsFor(reviewed));
+        resolvedSinceFlush.addAndGet(reviewed.size());
+    }
+
+    public ReconcileProgress getProgress() {
+        return new ReconcileProgress(pass, checked, resolved, reactions.size(), lastStepMillis, lastPassMillis);
+    }
+
+    // private functions -------
+
+    private void scheduledStep() {
+        // only the replica holding the review lease reconciles
+        if (!Coordination.get().holds(Coordinator.REVIEW)) {
+            return;
+        }
+
+        try {
+            step();
+        } catch (RuntimeException e) {
+            logger.error("Error reconciling submissions: {}", e.getMessage());
+        }
+    }
+
+    // check the next batch, ending the pass when the table runs out
+    private void step() {
+        SubmissionBatch batch = Repositories.get().fetchSubmissionsAfter(cursor, batchSize).join();
+
+        if (!batch.isEmpty()) {
+            // the playlist is read after the rows: a submission is added to Spotify before its row is
+            // inserted, so every row in the batch is already in this snapshot unless it was removed
+            Set<String> queued = spotifyApi.refreshPlaylistsAsync().join();
+            List<ResolvedSubmission> done = spotifyApi.reconcileBatch(queued, batch).join();
+
+            reactions.addAll(SpotifyAPI.reactionsFor(done));
+            resolvedSinceFlush.addAndGet(done.size());
+
+            cursor = batch.getLastSubmissionId();
+            checked += batch.size();
+            resolved += done.size();
+        }
+
+        lastStepMillis = System.currentTimeMillis();
+
+        if (batch.size() < batchSize) {
+            logger.info("Reconciliation pass {} complete: {} submissions checked, {} resolved", pass, checked,
+                    resolved);
+
+            cursor = 0;
+            checked = 0;
+            resolved = 0;
+            lastPassMillis = lastStepMillis;
+            pass++;
+        }
+    }
+
+    private void react() {
+        ReactionInfo reaction = reactions.poll();
+
+        if (reaction == null) {
+            return;
+        }
+
+        GuildMessageChannel channel = jda.getChannelById(GuildMessageChannel.class, channelId);
+
+        if (channel == null) {
+            logger.warn("Submissions channel {} not found, dropped reaction", channelId);
+
+            return;
+        }
+
+        // one call per reaction, the message doesn't have to be fetched first
+        channel.addReactionById(reaction.messageId, Emoji.fromUnicode(reaction.emoji))
+                .queue(null, throwable -> logger.error("Could not react to message: {}", throwable.getMessage()));
+    }
+
+    private static int readInt(String key, int fallback) {
+        String value = Utility.readFromDatabase(key);
+
+        try {
+            return (value != null) ? Integer.parseInt(value.trim()) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
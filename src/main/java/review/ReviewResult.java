@@ -0,0 +1,71 @@
+package review;
+
+import java.util.List;
+
+import utils.ResolvedSubmission;
+
+/**
+ * Outcome of one ]approve or ]reject batch.
+ */
+public class ReviewResult {
+    private final List<String> moved;
+    private final List<String> missing;
+    private final List<ResolvedSubmission> resolved;
+    private final int calls;
+    private final long apiMillis;
+    private final String error;
+
+    public ReviewResult(List<String> moved, List<String> missing, List<ResolvedSubmission> resolved, int calls,
+            long apiMillis, String error) {
+        this.moved = moved;
+        this.missing = missing;
+        this.resolved = resolved;
+        this.calls = calls;
+        this.apiMillis = apiMillis;
+        this.error = error;
+    }
+
+    /**
+     * @return track IDs taken out of the submissions playlist (and, when
+     *         approving, added to the approved playlist)
+     */
+    public List<String> getMoved() {
+        return moved;
+    }
+
+    /**
+     * @return requested track IDs that were not in the submissions playlist
+     */
+    public List<String> getMissing() {
+        return missing;
+    }
+
+    /**
+     * @return submissions archived because of the move (not ones already
+     *         resolved by the reconciler)
+     */
+    public List<ResolvedSubmission> getResolved() {
+        return resolved;
+    }
+
+    /**
+     * @return add and remove calls made
+     */
+    public int getCalls() {
+        return calls;
+    }
+
+    /**
+     * @return wall time spent on playlist calls
+     */
+    public long getApiMillis() {
+        return apiMillis;
+    }
+
+    /**
+     * @return why the batch stopped early, null if it went through
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,89 @@
+package stats;
+
+/**
+ * Changes to one user's stats since the last checkpoint.
+ *
+ * Counters are increments, so replicas can checkpoint independently without
+ * overwriting each other. The streak is only carried when this replica
+ * recorded a review outcome for the user (reviews run on one replica).
+ */
+public class StatsDelta {
+    private final String userId;
+    private int submitted;
+    private int approved;
+    private int rejected;
+    private boolean streakChanged;
+    private int currentStreak;
+    private int bestStreak;
+    private long lastSubmittedAt;
+
+    public StatsDelta(String userId) {
+        this.userId = userId;
+    }
+
+    void add(StatsDelta other) {
+        submitted += other.submitted;
+        approved += other.approved;
+        rejected += other.rejected;
+        lastSubmittedAt = Math.max(lastSubmittedAt, other.lastSubmittedAt);
+
+        if (other.streakChanged && !streakChanged) {
+            streakChanged = true;
+            currentStreak = other.currentStreak;
+            bestStreak = Math.max(bestStreak, other.bestStreak);
+        }
+    }
+
+    void recordSubmission(long timestamp) {
+        submitted++;
+        lastSubmittedAt = Math.max(lastSubmittedAt, timestamp);
+    }
+
+    void recordOutcome(boolean approved) {
+        if (approved) {
+            this.approved++;
+        } else {
+            this.rejected++;
+        }
+
+        streakChanged = true;
+    }
+
+    void setStreaks(int currentStreak, int bestStreak) {
+        this.currentStreak = currentStreak;
+        this.bestStreak = bestStreak;
+    }
+
+    public String getUserId() {
+        return this.userId;
+    }
+
+    public int getSubmitted() {
+        return this.submitted;
+    }
+
+    public int getApproved() {
+        return this.approved;
+    }
+
+    public int getRejected() {
+        return this.rejected;
+    }
+
+    public boolean isStreakChanged() {
+        return this.streakChanged;
+    }
+
+    public int getCurrentStreak() {
+        return this.currentStreak;
+    }
+
+    public int getBestStreak() {
+        return this.bestStreak;
+    }
+
+    public long getLastSubmittedAt() {
+        return this.lastSubmittedAt;
+    }
+
+}
@@ -0,0 +1,267 @@
+package stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import repository.Repositories;
+
+/**
+ * Per-user and server-wide submission statistics.
+ *
+ * Counters are updated incrementally as submissions come in and as
+ * reconciliation resolves them, so reads never touch the database: a user's
+ * stats are a map lookup, server totals are plain fields and the leaderboard is
+ * a snapshot rebuilt only when a counter changes.
+ *
+ * Once a minute the changes since the last checkpoint are added to the
+ * user_stats table as increments and the table is read back, which also picks
+ * up submissions counted by other replicas.
+ */
+public class SubmissionStats {
+    private static SubmissionStats instance;
+
+    private static final Logger logger = LoggerFactory.getLogger(SubmissionStats.class);
+    private static final int LEADERBOARD_SIZE = 10;
+    private static final long CHECKPOINT_SECONDS = 60;
+
+    // most approvals first, then most submissions, then user ID for a stable order
+    private static final Comparator<UserStats> RANKING = Comparator
+            .comparingInt(UserStats::getApproved).reversed()
+            .thenComparing(Comparator.comparingInt(UserStats::getSubmitted).reversed())
+            .thenComparing(UserStats::getUserId);
+
+    private final Map<String, UserStats> users = new HashMap<>();
+    private final TreeSet<UserStats> ranking = new TreeSet<>(RANKING);
+    private final Map<String, StatsDelta> pending = new HashMap<>();
+    private final ScheduledExecutorService checkpointer;
+
+    private long totalSubmitted;
+    private long totalApproved;
+    private long totalRejected;
+    private volatile List<UserStats> leaderboard = Collections.emptyList();
+
+    // constructor
+    private SubmissionStats() {
+        checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stats-checkpoint");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        checkpointer.scheduleWithFixedDelay(this::checkpoint, CHECKPOINT_SECONDS, CHECKPOINT_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    public static synchronized SubmissionStats getInstance() {
+        if (instance == null) {
+            instance = new SubmissionStats();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Load the last checkpoint. Call once at startup, before events arrive.
+     */
+    public void load() {
+        List<UserStats> stored = Repositories.get().loadUserStats().join();
+
+        replaceWith(stored);
+
+        logger.info("Loaded submission stats for {} users", stored.size());
+    }
+
+    // events -------
+
+    public synchronized void recordSubmission(String userId, long timestamp) {
+        UserStats user = detach(userId);
+
+        user.recordSubmission(timestamp);
+        totalSubmitted++;
+
+        delta(userId).recordSubmission(timestamp);
+
+        attach(user);
+    }
+
+    /**
+     * @param userId   submitting user
+     * @param approved true if the track made it into the approved playlist,
+     *                 false if it was rejected/removed
+     */
+    public synchronized void recordOutcome(String userId, boolean approved) {
+        UserStats user = detach(userId);
+
+        if (approved) {
+            user.recordApproval();
+            totalApproved++;
+        } else {
+            user.recordRejection();
+            totalRejected++;
+        }
+
+        delta(userId).recordOutcome(approved);
+
+        attach(user);
+    }
+
+    // reads -------
+
+    /**
+     * @return a copy of the user's stats (all zero if they never submitted)
+     */
+    public synchronized UserStats getUser(String userId) {
+        UserStats user = users.get(userId);
+
+        return (user != null) ? user.copy() : new UserStats(userId);
+    }
+
+    public synchronized long getTotalSubmitted() {
+        return totalSubmitted;
+    }
+
+    public synchronized long getTotalApproved() {
+        return totalApproved;
+    }
+
+    public synchronized long getTotalRejected() {
+        return totalRejected;
+    }
+
+    public synchronized int getUserCount() {
+        return users.size();
+    }
+
+    /**
+     * @return top submitters, best first (snapshot, safe to iterate)
+     */
+    public List<UserStats> getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Add the changes since the last checkpoint to the stored stats, then
+     * reload them. Changes that couldn't be added are kept for the next
+     * checkpoint; if only the reload fails, the current figures stay as they
+     * are.
+     */
+    public void checkpoint() {
+        List<StatsDelta> changed;
+
+        synchronized (this) {
+            changed = new ArrayList<>(pending.values());
+
+            for (StatsDelta delta : changed) {
+                UserStats user = users.get(delta.getUserId());
+
+                delta.setStreaks(user.getCurrentStreak(), user.getBestStreak());
+            }
+
+            pending.clear();
+        }
+
+        Repositories.get().applyStatsDeltas(changed)
+                .whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        logger.error("Error checkpointing stats: {}", e.getMessage());
+
+                        // nothing was added, try again next round
+                        synchronized (this) {
+                            for (StatsDelta delta : changed) {
+                                delta(delta.getUserId()).add(delta);
+                            }
+                        }
+
+                        return;
+                    }
+
+                    // the deltas are stored now, re-adding them would count them twice
+                    Repositories.get().loadUserStats()
+                            .whenComplete((stored, reloadError) -> {
+                                if (reloadError != null) {
+                                    logger.warn("Error reloading stats, keeping the last snapshot: {}",
+                                            reloadError.getMessage());
+                                } else {
+                                    replaceWith(stored);
+
+                                    logger.debug("Checkpointed stats for {} users", changed.size());
+                                }
+                            });
+                });
+    }
+
+    // private functions -------
+
+    // take the user out of the ranking before mutating, the TreeSet orders by counters
+    private UserStats detach(String userId) {
+        UserStats user = users.computeIfAbsent(userId, UserStats::new);
+
+        ranking.remove(user);
+
+        return user;
+    }
+
+    private void attach(UserStats user) {
+        ranking.add(user);
+
+        refreshLeaderboard();
+    }
+
+    private StatsDelta delta(String userId) {
+        return pending.computeIfAbsent(userId, StatsDelta::new);
+    }
+
+    // swap in stored stats, keeping changes that haven't been checkpointed yet
+    private synchronized void replaceWith(List<UserStats> stored) {
+        users.clear();
+        ranking.clear();
+
+        totalSubmitted = 0;
+        totalApproved = 0;
+        totalRejected = 0;
+
+        for (UserStats user : stored) {
+            users.put(user.getUserId(), user);
+        }
+
+        for (StatsDelta delta : pending.values()) {
+            users.computeIfAbsent(delta.getUserId(), UserStats::new).apply(delta);
+        }
+
+        for (UserStats user : users.values()) {
+            ranking.add(user);
+
+            totalSubmitted += user.getSubmitted();
+            totalApproved += user.getApproved();
+            totalRejected += user.getRejected();
+        }
+
+        refreshLeaderboard();
+    }
+
+    private void refreshLeaderboard() {
+        List<UserStats> top = new ArrayList<>(LEADERBOARD_SIZE);
+
+        for (UserStats user : ranking) {
+            if (top.size() == LEADERBOARD_SIZE) {
+                break;
+            }
+
+            top.add(user.copy());
+        }
+
+        leaderboard = Collections.unmodifiableList(top);
+    }
+}
@@ -0,0 +1,100 @@
+package stats;
+
+/**
+ * Running submission counters for one user.
+ */
+public class UserStats {
+    private final String userId;
+    private int submitted;
+    private int approved;
+    private int rejected;
+    private int currentStreak; // consecutive approvals
+    private int bestStreak;
+    private long lastSubmittedAt; // epoch millis, 0 if never
+
+    public UserStats(String userId) {
+        this.userId = userId;
+    }
+
+    public UserStats(String userId, int submitted, int approved, int rejected, int currentStreak, int bestStreak,
+            long lastSubmittedAt) {
+        this.userId = userId;
+        this.submitted = submitted;
+        this.approved = approved;
+        this.rejected = rejected;
+        this.currentStreak = currentStreak;
+        this.bestStreak = bestStreak;
+        this.lastSubmittedAt = lastSubmittedAt;
+    }
+
+    public UserStats copy() {
+        return new UserStats(userId, submitted, approved, rejected, currentStreak, bestStreak, lastSubmittedAt);
+    }
+
+    void recordSubmission(long timestamp) {
+        submitted++;
+        lastSubmittedAt = Math.max(lastSubmittedAt, timestamp);
+    }
+
+    void recordApproval() {
+        approved++;
+        currentStreak++;
+        bestStreak = Math.max(bestStreak, currentStreak);
+    }
+
+    void recordRejection() {
+        rejected++;
+        currentStreak = 0;
+    }
+
+    // re-apply changes that are not in the stored copy yet
+    void apply(StatsDelta delta) {
+        submitted += delta.getSubmitted();
+        approved += delta.getApproved();
+        rejected += delta.getRejected();
+        lastSubmittedAt = Math.max(lastSubmittedAt, delta.getLastSubmittedAt());
+
+        if (delta.isStreakChanged()) {
+            currentStreak = delta.getCurrentStreak();
+            bestStreak = Math.max(bestStreak, delta.getBestStreak());
+        }
+    }
+
+    /**
+     * @return approved / reviewed, or 0 if nothing has been reviewed yet
+     */
+    public double getApprovalRate() {
+        int reviewed = approved + rejected;
+
+        return (reviewed == 0) ? 0 : (double) approved / reviewed;
+    }
+
+    public String getUserId() {
+        return this.userId;
+    }
+
+    public int getSubmitted() {
+        return this.submitted;
+    }
+
+    public int getApproved() {
+        return this.approved;
+    }
+
+    public int getRejected() {
+        return this.rejected;
+    }
+
+    public int getCurrentStreak() {
+        return this.currentStreak;
+    }
+
+    public int getBestStreak() {
+        return this.bestStreak;
+    }
+
+    public long getLastSubmittedAt() {
+        return this.lastSubmittedAt;
+    }
+
+}
@@ -0,0 +1,101 @@
+package throttle;
+
+import utils.Utility;
+
+/**
+ * Rate limits for submissions, checked before anything reaches Spotify.
+ *
+ * Every submission needs a token from the submitter's bucket and one from the
+ * guild's bucket. Limits come from the config table:
+ * SUBMIT_USER_BURST / SUBMIT_USER_PER_MINUTE (default 3 / 2) and
+ * SUBMIT_GUILD_BURST / SUBMIT_GUILD_PER_MINUTE (default 30 / 30).
+ */
+public class SubmissionThrottle {
+    private static SubmissionThrottle instance;
+
+    private static final int MAX_USERS = 65_536; // buckets kept in memory
+    private static final int MAX_GUILDS = 1_024;
+
+    private final TokenBucketLimiter users;
+    private final TokenBucketLimiter guilds;
+    private final TokenBucketLimiter notices; // one "slow down" DM per user per minute
+    private final int userPerMinute;
+
+    // constructor
+    private SubmissionThrottle() {
+        userPerMinute = readInt("SUBMIT_USER_PER_MINUTE", 2);
+
+        users = new TokenBucketLimiter(readInt("SUBMIT_USER_BURST", 3), userPerMinute, MAX_USERS);
+        guilds = new TokenBucketLimiter(readInt("SUBMIT_GUILD_BURST", 30), readInt("SUBMIT_GUILD_PER_MINUTE", 30),
+                MAX_GUILDS);
+        notices = new TokenBucketLimiter(1, 1, MAX_USERS);
+    }
+
+    public static synchronized SubmissionThrottle getInstance() {
+        if (instance == null) {
+            instance = new SubmissionThrottle();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Take a submission slot for the user in the guild. A user turned down by
+     * the guild limit keeps their own token.
+     *
+     * @param userId  submitter
+     * @param guildId guild the message was posted in, or null for DMs
+     * @return true if the submission may go ahead
+     */
+    public boolean tryAcquire(String userId, String guildId) {
+        if (!users.tryAcquire(userId)) {
+            return false;
+        }
+
+        if (guildId != null && !guilds.tryAcquire(guildId)) {
+            users.release(userId);
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Take up to count submission slots, for a message with several tracks.
+     *
+     * @return number of slots taken, from 0 to count
+     */
+    public int tryAcquire(String userId, String guildId, int count) {
+        int acquired = 0;
+
+        while (acquired < count && tryAcquire(userId, guildId)) {
+            acquired++;
+        }
+
+        return acquired;
+    }
+
+    /**
+     * @return true at most once a minute per user, to tell them they were throttled
+     */
+    public boolean shouldNotify(String userId) {
+        return notices.tryAcquire(userId);
+    }
+
+    public int getUserPerMinute() {
+        return userPerMinute;
+    }
+
+    // private functions -------
+
+    private static int readInt(String key, int fallback) {
+        String value = Utility.readFromDatabase(key);
+
+        try {
+            return (value != null) ? Integer.parseInt(value.trim()) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
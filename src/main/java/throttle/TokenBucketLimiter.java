@@ -0,0 +1,164 @@
+package throttle;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Token buckets keyed by an ID (user, guild), split over lock stripes so
+ * unrelated keys never contend.
+ *
+ * Each stripe keeps its buckets in access order. A bucket that has been idle
+ * long enough to refill completely is indistinguishable from a new one, so
+ * those are swept from the cold end every SWEEP_EVERY acquisitions; on top of
+ * that each stripe holds at most maxKeys / STRIPES buckets and drops the least
+ * recently used one beyond that. Memory stays bounded no matter how many
+ * distinct keys show up, at worst an evicted key starts over with a full
+ * bucket.
+ */
+public class TokenBucketLimiter {
+    private static final int STRIPES = 64; // power of two
+    private static final int SWEEP_EVERY = 256; // acquisitions per stripe between idle sweeps
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final long refillNanos; // empty to full
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * @param capacity  burst size, tokens in a full bucket
+     * @param perMinute tokens added per minute
+     * @param maxKeys   buckets kept at most, across all stripes
+     */
+    public TokenBucketLimiter(int capacity, double perMinute, int maxKeys) {
+        if (capacity < 1 || perMinute <= 0) {
+            throw new IllegalArgumentException("Capacity must be at least 1 and the rate positive.");
+        }
+
+        this.capacity = capacity;
+        this.tokensPerNano = perMinute / 60e9;
+        this.refillNanos = (long) Math.ceil(capacity / tokensPerNano);
+
+        int perStripe = Math.max(1, maxKeys / STRIPES);
+
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+    }
+
+    /**
+     * Take one token from the key's bucket.
+     *
+     * @return true if a token was available
+     */
+    public boolean tryAcquire(String key) {
+        Stripe stripe = stripeFor(key);
+        long now = System.nanoTime();
+
+        synchronized (stripe) {
+            if (++stripe.operations % SWEEP_EVERY == 0) {
+                stripe.sweep(now, refillNanos);
+            }
+
+            Bucket bucket = stripe.buckets.get(key);
+
+            if (bucket == null) {
+                bucket = new Bucket(capacity, now);
+                stripe.buckets.put(key, bucket);
+            } else {
+                bucket.refill(now, capacity, tokensPerNano);
+            }
+
+            if (bucket.tokens < 1) {
+                return false;
+            }
+
+            bucket.tokens--;
+
+            return true;
+        }
+    }
+
+    /**
+     * Give back a token taken by {@link #tryAcquire(String)}, e.g. when a
+     * later check turned the request down.
+     */
+    public void release(String key) {
+        Stripe stripe = stripeFor(key);
+
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+
+            if (bucket != null) {
+                bucket.tokens = Math.min(capacity, bucket.tokens + 1);
+            }
+        }
+    }
+
+    /**
+     * @return buckets currently held
+     */
+    public int size() {
+        int size = 0;
+
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.buckets.size();
+            }
+        }
+
+        return size;
+    }
+
+    // private functions -------
+
+    private Stripe stripeFor(String key) {
+        int h = key.hashCode();
+
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    private static final class Stripe {
+        private final LinkedHashMap<String, Bucket> buckets;
+        private int operations;
+
+        private Stripe(int maxKeys) {
+            buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > maxKeys;
+                }
+            };
+        }
+
+        // drop buckets that would be full by now, starting from the least recently used
+        private void sweep(long now, long refillNanos) {
+            Iterator<Bucket> it = buckets.values().iterator();
+
+            while (it.hasNext()) {
+                if (now - it.next().updatedNanos < refillNanos) {
+                    break; // everything after this was used more recently
+                }
+
+                it.remove();
+            }
+        }
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long updatedNanos;
+
+        private Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.updatedNanos = now;
+        }
+
+        private void refill(long now, double capacity, double tokensPerNano) {
+            tokens = Math.min(capacity, tokens + (now - updatedNanos) * tokensPerNano);
+            updatedNanos = now;
+        }
+    }
+}
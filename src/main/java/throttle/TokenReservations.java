@@ -0,0 +1,49 @@
+package throttle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Submission tokens held back for submissions still in flight.
+ *
+ * A user's tokens are Discord roles, counted from JDA's member cache and only
+ * removed once Spotify has taken the track, so two messages handled at the
+ * same time would both see the same token. Each submission reserves its
+ * tokens before any async work starts and releases them once it has been
+ * charged (or turned down), so a token backs at most one submission.
+ * Nothing survives a restart.
+ */
+public class TokenReservations {
+    private final Map<String, Integer> inFlight = new HashMap<>(); // user ID -> tokens reserved
+
+    /**
+     * Reserve up to wanted of the user's tokens.
+     *
+     * @param userId submitter
+     * @param held   tokens the user holds right now
+     * @param wanted tokens the submission would spend
+     * @return tokens reserved, from 0 to wanted
+     */
+    public synchronized int reserve(String userId, int held, int wanted) {
+        int reserved = inFlight.getOrDefault(userId, 0);
+        int granted = Math.max(0, Math.min(wanted, held - reserved));
+
+        if (granted > 0) {
+            inFlight.put(userId, reserved + granted);
+        }
+
+        return granted;
+    }
+
+    /**
+     * Give back tokens reserved by reserve(), once they were charged or the
+     * submission didn't need them.
+     */
+    public synchronized void release(String userId, int count) {
+        if (count <= 0) {
+            return;
+        }
+
+        inFlight.computeIfPresent(userId, (id, reserved) -> (reserved > count) ? reserved - count : null);
+    }
+}
@@ -0,0 +1,626 @@
+package tools;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.CopyOut;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import api.SpotifyAPI;
+import repository.PostgresRepository;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+import utils.Json;
+import utils.SpotifyLinks;
+
+/**
+ * Offline bulk import/export of submissions, config and approved tracks,
+ * streamed through the Postgres COPY protocol.
+ *
+ * <pre>
+ * java -jar TokenBot.jar bulk export &lt;dataset&gt; [--format csv|ndjson] [--out FILE] [--metadata]
+ * java -jar TokenBot.jar bulk import &lt;dataset&gt; FILE [--format csv|ndjson] [--resolve]
+ * </pre>
+ *
+ * Datasets are submissions, config and approved (approved rows of
+ * submission_history). Exports default to ./&lt;dataset&gt;.csv or .ndjson.
+ * Imports land in a temporary staging table first and are moved into place
+ * in one transaction, so a bad file changes nothing.
+ *
+ * Rows are streamed, never collected: plain imports/exports hand the stream
+ * straight to the driver, and the Spotify-backed options (--metadata for
+ * approved exports, --resolve to check submission links before importing)
+ * hold at most one lookup batch of 50 rows.
+ */
+public class BulkTool {
+    private static final Logger logger = LoggerFactory.getLogger(BulkTool.class);
+
+    private static final int LOOKUP_BATCH = 50; // Spotify's max IDs per "get several tracks"
+    private static final long PROGRESS_EVERY = 10_000; // rows
+    private static final Pattern TRACK_ID = Pattern.compile("[a-zA-Z0-9]{22}");
+
+    // one JSON document per line: \x01 never appears in JSON text, so nothing is quoted or escaped
+    private static final String JSON_LINES = "(FORMAT csv, QUOTE E'\\x01', DELIMITER E'\\x02')";
+    private static final String CSV_WITH_HEADER = "(FORMAT csv, HEADER true)";
+
+    private enum Dataset {
+        SUBMISSIONS("trackid TEXT, userid TEXT, messageid TEXT",
+                "SELECT trackid, userid, messageid FROM submissions ORDER BY submissionid",
+                "INSERT INTO submissions (trackid, userid, messageid) SELECT trackid, userid, messageid "
+                        + "FROM bulk_staging ON CONFLICT (messageid, trackid) DO NOTHING"),
+        CONFIG("key TEXT, value TEXT",
+                "SELECT key, value FROM config ORDER BY key",
+                "INSERT INTO config (key, value) SELECT DISTINCT ON (key) key, value FROM bulk_staging "
+                        + "ON CONFLICT (key) DO UPDATE SET value = EXCLUDED.value"),
+        APPROVED("submissionid INT, trackid TEXT, userid TEXT, messageid TEXT, submitted_at TIMESTAMPTZ, "
+                + "resolved_at TIMESTAMPTZ",
+                "SELECT submissionid, trackid, userid, messageid, submitted_at, resolved_at FROM submission_history "
+                        + "WHERE outcome = 'APPROVED' ORDER BY resolved_at",
+                "INSERT INTO submission_history (submissionid, trackid, userid, messageid, outcome, submitted_at, "
+                        + "resolved_at) SELECT submissionid, trackid, userid, messageid, 'APPROVED', submitted_at, "
+                        + "resolved_at FROM bulk_staging ON CONFLICT DO NOTHING");
+
+        private final String stagingColumns;
+        private final String exportQuery;
+        private final String insertFromStaging;
+
+        Dataset(String stagingColumns, String exportQuery, String insertFromStaging) {
+            this.stagingColumns = stagingColumns;
+            this.exportQuery = exportQuery;
+            this.insertFromStaging = insertFromStaging;
+        }
+    }
+
+    private final Dataset dataset;
+    private final boolean ndjson;
+    private final String file;
+    private final boolean withSpotify; // --metadata / --resolve
+    private final Progress progress = new Progress();
+
+    private BulkTool(Dataset dataset, boolean ndjson, String file, boolean withSpotify) {
+        this.dataset = dataset;
+        this.ndjson = ndjson;
+        this.file = file;
+        this.withSpotify = withSpotify;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2 || !(args[0].equals("import") || args[0].equals("export"))) {
+            usage();
+
+            System.exit(2);
+        }
+
+        boolean importing = args[0].equals("import");
+        Dataset dataset;
+
+        try {
+            dataset = Dataset.valueOf(args[1].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            usage();
+
+            System.exit(2);
+            return;
+        }
+
+        String file = null;
+        boolean ndjson = false;
+        boolean withSpotify = false;
+
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--format":
+                    ndjson = (i + 1 < args.length) && args[++i].equals("ndjson");
+                    break;
+                case "--out":
+                    file = (i + 1 < args.length) ? args[++i] : null;
+                    break;
+                case "--metadata":
+                case "--resolve":
+                    withSpotify = true;
+                    break;
+                default:
+                    file = args[i];
+            }
+        }
+
+        if (withSpotify && dataset != (importing ? Dataset.SUBMISSIONS : Dataset.APPROVED)) {
+            logger.error("--resolve only applies to submission imports, --metadata to approved exports.");
+
+            System.exit(2);
+        }
+
+        if (file == null) {
+            if (importing) {
+                usage();
+
+                System.exit(2);
+            }
+
+            // logs go to stdout, so exports always go to a file
+            file = args[1] + (ndjson ? ".ndjson" : ".csv");
+        }
+
+        BulkTool tool = new BulkTool(dataset, ndjson, file, withSpotify);
+
+        try (Connection conn = DriverManager.getConnection(
+                PostgresRepository.toJdbcUrl(System.getenv("DATABASE_URL")))) {
+            PostgresRepository.createSchema(conn);
+
+            long rows = importing ? tool.importFile(conn) : tool.export(conn);
+
+            logger.info("{} {} rows of {} in {} ms.", importing ? "Imported" : "Exported", rows,
+                    dataset.name().toLowerCase(), tool.progress.elapsedMillis());
+
+            System.exit(0);
+        } catch (Exception e) {
+            logger.error("Error: " + e.getMessage());
+
+            System.exit(1);
+        }
+    }
+
+    // export -------
+
+    private long export(Connection conn) throws SQLException, IOException {
+        CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+        try (OutputStream out = new CountingOutputStream(new FileOutputStream(file), progress)) {
+            if (withSpotify) {
+                return exportWithMetadata(copy, out);
+            }
+
+            String sql = ndjson
+                    ? "COPY (SELECT row_to_json(t) FROM (" + dataset.exportQuery + ") t) TO STDOUT WITH " + JSON_LINES
+                    : "COPY (" + dataset.exportQuery + ") TO STDOUT WITH " + CSV_WITH_HEADER;
+
+            return copy.copyOut(sql, out);
+        }
+    }
+
+    // rows come out of COPY as JSON, get name/artists/ISRC attached 50 at a time and are written in the requested format
+    private long exportWithMetadata(CopyManager copy, OutputStream out) throws SQLException, IOException {
+        SpotifyAPI spotifyApi = SpotifyAPI.getInstance();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        List<ObjectNode> batch = new ArrayList<>(LOOKUP_BATCH);
+        String[] columns = null;
+        long rows = 0;
+
+        CopyOut copyOut = copy.copyOut("COPY (SELECT row_to_json(t) FROM (" + dataset.exportQuery + ") t) TO STDOUT WITH "
+                + JSON_LINES);
+
+        try {
+            byte[] line;
+
+            while ((line = copyOut.readFromCopy()) != null) {
+                batch.add((ObjectNode) Json.mapper().readTree(line));
+
+                if (batch.size() == LOOKUP_BATCH) {
+                    columns = writeWithMetadata(spotifyApi, batch, columns, writer);
+                    rows += batch.size();
+                    batch.clear();
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                writeWithMetadata(spotifyApi, batch, columns, writer);
+                rows += batch.size();
+            }
+        } finally {
+            if (copyOut.isActive()) {
+                copyOut.cancelCopy();
+            }
+        }
+
+        writer.flush();
+
+        return rows;
+    }
+
+    private String[] writeWithMetadata(SpotifyAPI spotifyApi, List<ObjectNode> batch, String[] columns,
+            Writer writer) throws IOException {
+        Map<String, Track> tracks = lookUp(spotifyApi, batch);
+
+        for (ObjectNode row : batch) {
+            Track track = tracks.get(row.path("trackid").asText());
+
+            row.put("name", (track != null) ? track.getName() : null);
+            row.put("artists", (track != null) ? artists(track) : null);
+            row.put("isrc", (track != null && track.getExternalIds() != null)
+                    ? track.getExternalIds().getExternalIds().get("isrc")
+                    : null);
+
+            if (ndjson) {
+                writer.write(Json.mapper().writeValueAsString(row));
+                writer.write('\n');
+                continue;
+            }
+
+            if (columns == null) {
+                List<String> names = new ArrayList<>();
+                row.fieldNames().forEachRemaining(names::add);
+                columns = names.toArray(new String[0]);
+
+                writer.write(String.join(",", columns));
+                writer.write('\n');
+            }
+
+            for (int i = 0; i < columns.length; i++) {
+                JsonNode value = row.get(columns[i]);
+
+                if (i > 0) {
+                    writer.write(',');
+                }
+
+                writer.write(csvField((value == null || value.isNull()) ? null : value.asText()));
+            }
+
+            writer.write('\n');
+        }
+
+        return columns;
+    }
+
+    // import -------
+
+    private long importFile(Connection conn) throws SQLException, IOException {
+        CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+
+        conn.setAutoCommit(false);
+
+        try {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TEMP TABLE bulk_staging (" + dataset.stagingColumns + ") ON COMMIT DROP");
+                stmt.execute("CREATE TEMP TABLE bulk_json (doc JSON) ON COMMIT DROP");
+            }
+
+            long staged;
+
+            try (InputStream in = new CountingInputStream(new FileInputStream(file), progress)) {
+                if (withSpotify) {
+                    staged = stageResolved(copy, in);
+                } else if (ndjson) {
+                    staged = copy.copyIn("COPY bulk_json (doc) FROM STDIN WITH " + JSON_LINES, in);
+                } else {
+                    staged = copy.copyIn("COPY bulk_staging FROM STDIN WITH " + CSV_WITH_HEADER, in);
+                }
+            }
+
+            try (Statement stmt = conn.createStatement()) {
+                // JSON documents map onto the staging columns by name
+                stmt.executeUpdate("INSERT INTO bulk_staging SELECT r.* FROM bulk_json, "
+                        + "json_populate_record(NULL::bulk_staging, doc) r WHERE doc IS NOT NULL");
+
+                if (dataset == Dataset.APPROVED) {
+                    ensurePartitions(conn, stmt);
+                }
+
+                stmt.executeUpdate(dataset.insertFromStaging);
+            }
+
+            conn.commit();
+
+            return staged;
+        } catch (SQLException | IOException | RuntimeException e) {
+            conn.rollback();
+
+            throw e;
+        }
+    }
+
+    // read the file ourselves, keep rows whose track exists, and feed them to COPY as JSON lines
+    private long stageResolved(CopyManager copy, InputStream in) throws SQLException, IOException {
+        SpotifyAPI spotifyApi = SpotifyAPI.getInstance();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        CopyIn copyIn = copy.copyIn("COPY bulk_json (doc) FROM STDIN WITH " + JSON_LINES);
+        List<ObjectNode> batch = new ArrayList<>(LOOKUP_BATCH);
+        String[] header = ndjson ? null : parseCsvLine(reader.readLine());
+        long lineNumber = ndjson ? 0 : 1;
+        long skipped = 0;
+
+        try {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                ObjectNode row = ndjson ? (ObjectNode) Json.mapper().readTree(line) : csvRow(header, line);
+                String trackId = normalizeTrackId(row.path("trackid").asText(null));
+
+                if (trackId == null) {
+                    logger.warn("Line {}: not a track link or ID, skipped.", lineNumber);
+                    skipped++;
+                    continue;
+                }
+
+                row.put("trackid", trackId);
+                batch.add(row);
+
+                if (batch.size() == LOOKUP_BATCH) {
+                    skipped += stageBatch(spotifyApi, batch, copyIn);
+                    batch.clear();
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                skipped += stageBatch(spotifyApi, batch, copyIn);
+            }
+
+            long staged = copyIn.endCopy();
+
+            if (skipped > 0) {
+                logger.warn("Skipped {} rows without a valid track.", skipped);
+            }
+
+            return staged;
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private long stageBatch(SpotifyAPI spotifyApi, List<ObjectNode> batch, CopyIn copyIn)
+            throws SQLException, IOException {
+        Map<String, Track> tracks = lookUp(spotifyApi, batch);
+        long skipped = 0;
+
+        for (ObjectNode row : batch) {
+            String trackId = row.get("trackid").asText();
+
+            if (!tracks.containsKey(trackId)) {
+                logger.warn("Track {} does not exist, skipped.", trackId);
+                skipped++;
+                continue;
+            }
+
+            byte[] line = (Json.mapper().writeValueAsString(row) + "\n").getBytes(StandardCharsets.UTF_8);
+
+            copyIn.writeToCopy(line, 0, line.length);
+        }
+
+        return skipped;
+    }
+
+    private static void ensurePartitions(Connection conn, Statement stmt) throws SQLException {
+        List<YearMonth> months = new ArrayList<>();
+
+        try (ResultSet rs = stmt.executeQuery("SELECT DISTINCT date_trunc('month', resolved_at AT TIME ZONE 'UTC') "
+                + "FROM bulk_staging WHERE resolved_at IS NOT NULL")) {
+            while (rs.next()) {
+                months.add(YearMonth.from(rs.getTimestamp(1).toLocalDateTime().atZone(ZoneOffset.UTC)));
+            }
+        }
+
+        for (YearMonth month : months) {
+            PostgresRepository.ensureHistoryPartition(conn, month);
+        }
+    }
+
+    // private functions -------
+
+    private static Map<String, Track> lookUp(SpotifyAPI spotifyApi, List<ObjectNode> batch) {
+        List<String> trackIds = new ArrayList<>(batch.size());
+
+        for (ObjectNode row : batch) {
+            String trackId = row.path("trackid").asText(null);
+
+            if (trackId != null && TRACK_ID.matcher(trackId).matches() && !trackIds.contains(trackId)) {
+                trackIds.add(trackId);
+            }
+        }
+
+        return spotifyApi.getTracksAsync(trackIds).join();
+    }
+
+    // accepts bare IDs as well as anything the submission channel accepts
+    private static String normalizeTrackId(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        if (TRACK_ID.matcher(value).matches()) {
+            return value;
+        }
+
+        String trackId = SpotifyLinks.trackId(value);
+
+        return (trackId != null && TRACK_ID.matcher(trackId).matches()) ? trackId : null;
+    }
+
+    private static String artists(Track track) {
+        StringBuilder sb = new StringBuilder();
+
+        for (ArtistSimplified artist : track.getArtists()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(artist.getName());
+        }
+
+        return sb.toString();
+    }
+
+    private static ObjectNode csvRow(String[] header, String line) {
+        String[] values = parseCsvLine(line);
+        ObjectNode row = Json.mapper().createObjectNode();
+
+        for (int i = 0; i < header.length; i++) {
+            row.put(header[i], (i < values.length && !values[i].isEmpty()) ? values[i] : null);
+        }
+
+        return row;
+    }
+
+    // RFC 4180 fields on a single line (quoted newlines are not supported here)
+    private static String[] parseCsvLine(String line) {
+        if (line == null) {
+            return new String[0];
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        fields.add(field.toString());
+
+        return fields.toArray(new String[0]);
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        if (value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+                || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+        return value;
+    }
+
+    private static void usage() {
+        logger.error("Usage: bulk export <submissions|config|approved> [--format csv|ndjson] [--out FILE] "
+                + "[--metadata]\n       bulk import <submissions|config|approved> FILE [--format csv|ndjson] "
+                + "[--resolve]");
+    }
+
+    /**
+     * Counts lines going through a stream and logs progress every
+     * PROGRESS_EVERY lines.
+     */
+    private static final class Progress {
+        private final long start = System.nanoTime();
+        private long lines;
+
+        void newLine() {
+            if (++lines % PROGRESS_EVERY == 0) {
+                long millis = Math.max(1, elapsedMillis());
+
+                logger.info("{} rows ({} rows/s)", lines, lines * 1000 / millis);
+            }
+        }
+
+        long elapsedMillis() {
+            return (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final Progress progress;
+
+        CountingInputStream(InputStream in, Progress progress) {
+            super(in);
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+
+            if (b == '\n') {
+                progress.newLine();
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+
+            for (int i = off; i < off + n; i++) {
+                if (buf[i] == '\n') {
+                    progress.newLine();
+                }
+            }
+
+            return n;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private final Progress progress;
+
+        CountingOutputStream(OutputStream out, Progress progress) {
+            super(out);
+            this.progress = progress;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+
+            if (b == '\n') {
+                progress.newLine();
+            }
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) throws IOException {
+            out.write(buf, off, len);
+
+            for (int i = off; i < off + len; i++) {
+                if (buf[i] == '\n') {
+                    progress.newLine();
+                }
+            }
+        }
+    }
+}
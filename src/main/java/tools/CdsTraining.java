@@ -0,0 +1,98 @@
+package tools;
+
+import static spark.Spark.awaitInitialization;
+import static spark.Spark.get;
+import static spark.Spark.port;
+import static spark.Spark.stop;
+
+import java.time.Duration;
+
+import com.sun.net.httpserver.HttpServer;
+
+import api.JdkHttpManager;
+import metrics.Metrics;
+import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.requests.GatewayIntent;
+import se.michaelthelin.spotify.SpotifyApi;
+import tracing.Span;
+import tracing.Tracing;
+import utils.CuratorList;
+import utils.Json;
+
+/**
+ * Training run for the class-data sharing archive: walks the startup path
+ * (JDA builder, Jackson, the Spotify client over JdkHttpManager, Spark, the
+ * Postgres driver, metrics and tracing) without touching Discord, Spotify or
+ * the database, so the JVM can record which classes the bot loads.
+ *
+ * <pre>
+ * java -XX:DumpLoadedClassList=classes.lst -jar TokenBot.jar cds-training
+ * java -Xshare:dump -XX:SharedClassListFile=classes.lst -XX:SharedArchiveFile=tokenbot.jsa -jar TokenBot.jar
+ * java -XX:SharedArchiveFile=tokenbot.jsa -Xshare:auto -jar TokenBot.jar
+ * </pre>
+ *
+ * The Dockerfile runs the first two steps in the runtime image; an archive
+ * only works with the exact JVM build that dumped it.
+ */
+public class CdsTraining {
+
+    public static void main(String[] args) {
+        long start = System.currentTimeMillis();
+
+        try {
+            train();
+        } catch (Exception e) {
+            System.err.println("CDS training run failed: " + e);
+
+            System.exit(1);
+        }
+
+        System.out.printf("CDS training run finished in %d ms%n", System.currentTimeMillis() - start);
+
+        // Spark and the HTTP client leave non-daemon threads behind
+        System.exit(0);
+    }
+
+    // private functions -------
+
+    private static void train() throws Exception {
+        // gateway client and listener plumbing, without logging in
+        JDABuilder.createDefault("cds-training").enableIntents(GatewayIntent.MESSAGE_CONTENT);
+
+        Json.mapper().readValue("{\"curators\":[{\"id\":\"1\",\"name\":\"curator\"}]}", CuratorList.class);
+
+        // Spotify client, HTTP transport and model parsing, against the local stub
+        HttpServer stub = SpotifyStub.start(0, 0, 100);
+
+        try {
+            SpotifyApi api = new SpotifyApi.Builder()
+                    .setScheme("http")
+                    .setHost("localhost")
+                    .setPort(stub.getAddress().getPort())
+                    .setAccessToken("cds-training")
+                    .setHttpManager(new JdkHttpManager(Duration.ofSeconds(5), Duration.ofSeconds(10), true))
+                    .build();
+
+            api.getSeveralTracks(SpotifyStub.trackId(0), SpotifyStub.trackId(1)).build().execute();
+            api.getPlaylistsItems("cds-training").limit(100).build().execute();
+            api.addItemsToPlaylist("cds-training", new String[] { "spotify:track:" + SpotifyStub.trackId(2) })
+                    .build().execute();
+        } finally {
+            stub.stop(0);
+        }
+
+        // embedded web server
+        port(0);
+        get("/cds-training", (req, res) -> "ok");
+        awaitInitialization();
+        stop();
+
+        Class.forName("org.postgresql.Driver");
+
+        Span span = Tracing.startTrace("cds-training");
+        span.end();
+
+        Metrics.increment("cds_training_total");
+        Metrics.render();
+    }
+}
@@ -0,0 +1,637 @@
+package tools;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import utils.Json;
+
+/**
+ * Minimal stand-in for Discord: one guild with a submissions, a commands and
+ * a help channel, a REST API that answers the calls the bot makes (sending,
+ * deleting and reacting to messages, DMs, roles, users, history) and a
+ * gateway that identifies the bot and delivers the messages posted through
+ * {@link #post}. Nothing is rate limited and nothing is persisted; sent
+ * messages only exist long enough to be deleted.
+ *
+ * Point the bot at it with the config keys DISCORD_API_URL (see url()) and
+ * DISCORD_GATEWAY_URL (see gatewayUrl()). The gateway speaks plain ws://
+ * with uncompressed JSON.
+ */
+public class DiscordStub {
+    private static final Logger logger = LoggerFactory.getLogger(DiscordStub.class);
+
+    private static final String API = "/api/v10/";
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final long HEARTBEAT_MILLIS = 41_250;
+
+    private final HttpServer rest;
+    private final ServerSocket gateway;
+    private final AtomicLong ids = new AtomicLong(1_100_000_000_000_000_000L);
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+    private final Map<Long, String> dmChannels = new ConcurrentHashMap<>(); // channel -> recipient
+    private volatile Connection connection;
+
+    private final long botId = nextId();
+    private final long guildId = nextId();
+    private final long submissionsChannelId = nextId();
+    private final long commandsChannelId = nextId();
+    private final long helpChannelId = nextId();
+    private final long submittedRoleId = nextId();
+
+    private DiscordStub(int port) throws IOException {
+        rest = HttpServer.create(new InetSocketAddress("localhost", port), 256);
+        rest.setExecutor(Executors.newFixedThreadPool(16, r -> {
+            Thread thread = new Thread(r, "discord-stub");
+            thread.setDaemon(true);
+
+            return thread;
+        }));
+        rest.createContext(API, exchange -> {
+            try {
+                restCall(exchange);
+            } catch (RuntimeException e) {
+                logger.warn("Discord stub failed on {} {}: {}", exchange.getRequestMethod(),
+                        exchange.getRequestURI(), e.toString());
+
+                exchange.sendResponseHeaders(500, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+
+        gateway = new ServerSocket(0, 16, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * @param port 0 for any free port (the gateway always gets a free one)
+     * @return the running stub; stop() it when done
+     */
+    public static DiscordStub start(int port) throws IOException {
+        DiscordStub stub = new DiscordStub(port);
+
+        stub.rest.start();
+
+        Thread acceptor = new Thread(stub::acceptGateway, "discord-stub-gateway");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        return stub;
+    }
+
+    // public functions -------
+
+    /**
+     * @return base URL for DISCORD_API_URL
+     */
+    public String url() {
+        return "http://localhost:" + rest.getAddress().getPort() + API;
+    }
+
+    /**
+     * @return websocket URL for DISCORD_GATEWAY_URL
+     */
+    public String gatewayUrl() {
+        return "ws://localhost:" + gateway.getLocalPort();
+    }
+
+    public String getSubmissionsChannelId() {
+        return Long.toString(submissionsChannelId);
+    }
+
+    public String getCommandsChannelId() {
+        return Long.toString(commandsChannelId);
+    }
+
+    public String getHelpChannelId() {
+        return Long.toString(helpChannelId);
+    }
+
+    public String getSubmittedRoleId() {
+        return Long.toString(submittedRoleId);
+    }
+
+    /**
+     * @return true once the bot has identified on the gateway
+     */
+    public boolean isConnected() {
+        Connection current = connection;
+
+        return current != null && current.ready;
+    }
+
+    /**
+     * Deliver a message from a member of the guild to the bot.
+     *
+     * @return message ID, null if the bot isn't connected
+     */
+    public String post(String channelId, long userId, String content) {
+        Connection current = connection;
+
+        if (current == null || !current.ready) {
+            return null;
+        }
+
+        long messageId = nextId();
+        ObjectNode message = message(messageId, Long.parseLong(channelId), user(userId, false), content);
+        ObjectNode member = message.putObject("member");
+
+        member.putArray("roles");
+        member.put("joined_at", OffsetDateTime.now().minusDays(30).toString());
+        member.put("deaf", false);
+        member.put("mute", false);
+        message.put("guild_id", Long.toString(guildId));
+
+        current.dispatch("MESSAGE_CREATE", message);
+
+        return Long.toString(messageId);
+    }
+
+    /**
+     * @return REST calls served so far, by method and route
+     */
+    public Map<String, Long> calls() {
+        Map<String, Long> snapshot = new TreeMap<>();
+
+        calls.forEach((route, count) -> snapshot.put(route, count.sum()));
+
+        return snapshot;
+    }
+
+    public void stop() {
+        rest.stop(0);
+
+        try {
+            gateway.close();
+        } catch (IOException e) {
+            logger.debug("Error closing gateway: {}", e.getMessage());
+        }
+    }
+
+    // private functions -------
+
+    private long nextId() {
+        return ids.incrementAndGet();
+    }
+
+    private void restCall(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath().substring(API.length());
+        String[] parts = path.split("/");
+
+        exchange.getRequestBody().readAllBytes();
+        calls.computeIfAbsent(method + " " + route(parts), key -> new LongAdder()).increment();
+
+        JsonNode body = null;
+
+        if (path.equals("users/@me") && method.equals("GET")) {
+            body = user(botId, true);
+        } else if (path.equals("gateway/bot") || path.equals("gateway")) {
+            ObjectNode gatewayInfo = Json.mapper().createObjectNode();
+
+            gatewayInfo.put("url", gatewayUrl());
+            gatewayInfo.put("shards", 1);
+
+            ObjectNode limit = gatewayInfo.putObject("session_start_limit");
+
+            limit.put("total", 1000);
+            limit.put("remaining", 1000);
+            limit.put("reset_after", 0);
+            limit.put("max_concurrency", 1);
+            body = gatewayInfo;
+        } else if (path.equals("users/@me/channels")) {
+            // the recipient comes in the body, which only matters for the reply
+            long channelId = nextId();
+            ObjectNode channel = Json.mapper().createObjectNode();
+
+            dmChannels.put(channelId, "dm");
+            channel.put("id", Long.toString(channelId));
+            channel.put("type", 1);
+            channel.putNull("last_message_id");
+            channel.putArray("recipients").add(user(nextId(), false));
+            body = channel;
+        } else if (parts[0].equals("users") && parts.length == 2) {
+            body = user(Long.parseLong(parts[1]), false);
+        } else if (parts[0].equals("channels") && parts.length == 3 && parts[2].equals("messages")) {
+            long channelId = Long.parseLong(parts[1]);
+
+            if (method.equals("POST")) {
+                body = message(nextId(), channelId, user(botId, true), "");
+
+                if (!dmChannels.containsKey(channelId)) {
+                    ((ObjectNode) body).put("guild_id", Long.toString(guildId));
+                }
+            } else {
+                body = Json.mapper().createArrayNode(); // history
+            }
+        } else if (method.equals("DELETE") || method.equals("PUT")) {
+            // message deletes, reactions, role changes
+            exchange.sendResponseHeaders(204, -1);
+
+            return;
+        }
+
+        if (body == null) {
+            logger.warn("Discord stub has no route for {} {}", method, path);
+
+            exchange.sendResponseHeaders(404, -1);
+
+            return;
+        }
+
+        byte[] bytes = Json.mapper().writeValueAsBytes(body);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // channels/123/messages/456 -> channels/{id}/messages/{id}
+    private static String route(String[] parts) {
+        StringBuilder sb = new StringBuilder();
+
+        for (String part : parts) {
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+
+            sb.append(!part.isEmpty() && Character.isDigit(part.charAt(0)) ? "{id}" : part);
+        }
+
+        return sb.toString();
+    }
+
+    private ObjectNode user(long id, boolean bot) {
+        ObjectNode user = Json.mapper().createObjectNode();
+
+        user.put("id", Long.toString(id));
+        user.put("username", (bot ? "tokenbot" : "user") + id % 100_000);
+        user.put("discriminator", "0");
+        user.putNull("global_name");
+        user.putNull("avatar");
+        user.put("bot", bot);
+        user.put("public_flags", 0);
+
+        return user;
+    }
+
+    private ObjectNode message(long id, long channelId, ObjectNode author, String content) {
+        ObjectNode message = Json.mapper().createObjectNode();
+
+        message.put("id", Long.toString(id));
+        message.put("channel_id", Long.toString(channelId));
+        message.set("author", author);
+        message.put("content", content);
+        message.put("timestamp", OffsetDateTime.now().toString());
+        message.putNull("edited_timestamp");
+        message.put("tts", false);
+        message.put("mention_everyone", false);
+        message.putArray("mentions");
+        message.putArray("mention_roles");
+        message.putArray("attachments");
+        message.putArray("embeds");
+        message.put("pinned", false);
+        message.put("type", 0);
+        message.put("flags", 0);
+
+        return message;
+    }
+
+    private ObjectNode guild() {
+        ObjectNode guild = Json.mapper().createObjectNode();
+        String id = Long.toString(guildId);
+
+        guild.put("id", id);
+        guild.put("name", "Stub Guild");
+        guild.putNull("icon");
+        guild.put("owner_id", Long.toString(botId));
+        guild.put("afk_timeout", 300);
+        guild.put("verification_level", 0);
+        guild.put("default_message_notifications", 0);
+        guild.put("explicit_content_filter", 0);
+        guild.put("mfa_level", 0);
+        guild.put("nsfw_level", 0);
+        guild.put("premium_tier", 0);
+        guild.put("premium_subscription_count", 0);
+        guild.put("preferred_locale", "en-US");
+        guild.put("system_channel_flags", 0);
+        guild.put("member_count", 2);
+        guild.put("large", false);
+        guild.put("unavailable", false);
+        guild.put("joined_at", OffsetDateTime.now().minusDays(30).toString());
+        guild.putArray("features");
+        guild.putArray("emojis");
+        guild.putArray("stickers");
+        guild.putArray("voice_states");
+        guild.putArray("presences");
+        guild.putArray("threads");
+        guild.putArray("stage_instances");
+        guild.putArray("guild_scheduled_events");
+
+        ArrayNode roles = guild.putArray("roles");
+
+        roles.add(role(guildId, "@everyone", 0));
+        roles.add(role(submittedRoleId, "Submitted", 1));
+
+        ArrayNode channels = guild.putArray("channels");
+
+        channels.add(channel(submissionsChannelId, "submissions", 0));
+        channels.add(channel(commandsChannelId, "commands", 1));
+        channels.add(channel(helpChannelId, "help", 2));
+
+        ObjectNode self = guild.putArray("members").addObject();
+
+        self.set("user", user(botId, true));
+        self.putArray("roles");
+        self.put("joined_at", OffsetDateTime.now().minusDays(30).toString());
+        self.put("deaf", false);
+        self.put("mute", false);
+
+        return guild;
+    }
+
+    private ObjectNode role(long id, String name, int position) {
+        ObjectNode role = Json.mapper().createObjectNode();
+
+        role.put("id", Long.toString(id));
+        role.put("name", name);
+        role.put("color", 0);
+        role.put("hoist", false);
+        role.put("position", position);
+        role.put("permissions", Long.toString(id == guildId ? 8L : 0L)); // everyone is an administrator
+        role.put("managed", false);
+        role.put("mentionable", false);
+
+        return role;
+    }
+
+    private ObjectNode channel(long id, String name, int position) {
+        ObjectNode channel = Json.mapper().createObjectNode();
+
+        channel.put("id", Long.toString(id));
+        channel.put("type", 0);
+        channel.put("guild_id", Long.toString(guildId));
+        channel.put("name", name);
+        channel.put("position", position);
+        channel.putNull("parent_id");
+        channel.putNull("topic");
+        channel.put("nsfw", false);
+        channel.put("rate_limit_per_user", 0);
+        channel.putNull("last_message_id");
+        channel.putArray("permission_overwrites");
+
+        return channel;
+    }
+
+    private void acceptGateway() {
+        while (!gateway.isClosed()) {
+            try {
+                Socket socket = gateway.accept();
+                Connection next = new Connection(socket);
+                Thread reader = new Thread(next::run, "discord-stub-session");
+
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!gateway.isClosed()) {
+                    logger.warn("Discord stub gateway accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * One gateway session: the websocket handshake, HELLO, IDENTIFY -> READY
+     * and GUILD_CREATE, heartbeat ACKs, then dispatches.
+     */
+    private class Connection {
+        private final Socket socket;
+        private OutputStream out;
+        private volatile boolean ready;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        void run() {
+            try (Socket s = socket) {
+                DataInputStream in = new DataInputStream(s.getInputStream());
+
+                out = new BufferedOutputStream(s.getOutputStream());
+                handshake(in);
+                ObjectNode hello = op(10);
+
+                hello.putObject("d").put("heartbeat_interval", HEARTBEAT_MILLIS);
+                send(hello.toString());
+
+                while (true) {
+                    String text = readFrame(in);
+
+                    if (text == null) {
+                        break;
+                    }
+
+                    received(Json.mapper().readTree(text));
+                }
+            } catch (IOException e) {
+                logger.debug("Discord stub gateway session ended: {}", e.getMessage());
+            } finally {
+                ready = false;
+            }
+        }
+
+        private void received(JsonNode payload) throws IOException {
+            switch (payload.path("op").asInt()) {
+                case 1: // heartbeat
+                    send(op(11).toString());
+                    break;
+                case 2: // identify
+                    connection = this;
+
+                    ObjectNode ready = Json.mapper().createObjectNode();
+
+                    ready.put("v", 10);
+                    ready.set("user", user(botId, true));
+                    ready.putArray("guilds").addObject().put("id", Long.toString(guildId)).put("unavailable", true);
+                    ready.put("session_id", "stub-" + botId);
+                    ready.put("resume_gateway_url", gatewayUrl());
+                    ready.putArray("private_channels");
+                    ready.putObject("application").put("id", Long.toString(botId)).put("flags", 0);
+
+                    dispatch("READY", ready);
+                    dispatch("GUILD_CREATE", guild());
+
+                    this.ready = true;
+                    break;
+                default:
+                    break; // presence updates, member chunk requests, ...
+            }
+        }
+
+        void dispatch(String type, ObjectNode data) {
+            ObjectNode payload = op(0);
+
+            payload.put("t", type);
+            payload.put("s", sequence.incrementAndGet());
+            payload.set("d", data);
+
+            try {
+                send(payload.toString());
+            } catch (IOException e) {
+                logger.debug("Discord stub could not dispatch {}: {}", type, e.getMessage());
+            }
+        }
+
+        private ObjectNode op(int op) {
+            ObjectNode payload = Json.mapper().createObjectNode();
+
+            payload.put("op", op);
+            payload.putNull("d");
+
+            return payload;
+        }
+
+        private void handshake(InputStream in) throws IOException {
+            String key = null;
+            String line;
+
+            while (!(line = readLine(in)).isEmpty()) {
+                if (line.toLowerCase().startsWith("sec-websocket-key:")) {
+                    key = line.substring(line.indexOf(':') + 1).trim();
+                }
+            }
+
+            if (key == null) {
+                throw new IOException("Not a websocket upgrade");
+            }
+
+            String accept;
+
+            try {
+                accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                        .digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+
+            out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        // one text message, null once the client closes
+        private String readFrame(DataInputStream in) throws IOException {
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+
+            while (true) {
+                int first = in.readUnsignedByte();
+                int second = in.readUnsignedByte();
+                int opcode = first & 0x0F;
+                long length = second & 0x7F;
+
+                if (length == 126) {
+                    length = in.readUnsignedShort();
+                } else if (length == 127) {
+                    length = in.readLong();
+                }
+
+                byte[] mask = new byte[4];
+
+                if ((second & 0x80) != 0) {
+                    in.readFully(mask);
+                }
+
+                byte[] data = new byte[(int) length];
+
+                in.readFully(data);
+
+                for (int i = 0; i < data.length; i++) {
+                    data[i] ^= mask[i & 3];
+                }
+
+                if (opcode == 8) {
+                    return null;
+                } else if (opcode == 9) {
+                    frame(0xA, data);
+                } else if (opcode <= 2) {
+                    message.write(data);
+
+                    if ((first & 0x80) != 0) {
+                        return message.toString(StandardCharsets.UTF_8);
+                    }
+                }
+            }
+        }
+
+        private void send(String text) throws IOException {
+            frame(0x1, text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // servers don't mask their frames
+        private synchronized void frame(int opcode, byte[] data) throws IOException {
+            out.write(0x80 | opcode);
+
+            if (data.length < 126) {
+                out.write(data.length);
+            } else if (data.length < 65_536) {
+                out.write(126);
+                out.write(data.length >>> 8);
+                out.write(data.length);
+            } else {
+                out.write(127);
+
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) ((long) data.length >>> shift));
+                }
+            }
+
+            out.write(data);
+            out.flush();
+        }
+
+        private String readLine(InputStream in) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            int c;
+
+            while ((c = in.read()) != -1 && c != '\n') {
+                if (c != '\r') {
+                    sb.append((char) c);
+                }
+            }
+
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package tools;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.logging.log4j.LogManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures what a hot-path log call costs the calling thread: the old style
+ * (string concatenation, synchronous appender) against the new one
+ * (parameterized messages, async garbage-free loggers).
+ *
+ * <pre>
+ * java -cp TokenBot.jar tools.LoggingBenchmark sync|async [bursts=200]
+ * </pre>
+ *
+ * Run it once per mode, the context selector is fixed for the life of the JVM.
+ * Events go through log4j2-bench.xml to a scratch file with the production
+ * layout. Calls are made in bursts of 10,000 with a pause in between so the
+ * async ring buffer drains and never blocks; that is the per-event latency a
+ * JDA thread sees, not the appender's sustained throughput. Allocation is
+ * read from the thread's allocation counter, so it only covers the caller.
+ *
+ * SLF4J only has one- and two-argument overloads, so three arguments still
+ * allocate a varargs array even when the level is off; hot paths guard those
+ * calls with isDebugEnabled(). Async loggers need a spare core for the
+ * background thread, on a single CPU they can't beat the synchronous ones.
+ */
+public class LoggingBenchmark {
+    private static final int BURST = 10_000;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        boolean async = args.length > 0 && "async".equals(args[0]);
+        int bursts = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+
+        Path logFile = Files.createTempFile("logging-bench", ".log");
+
+        // must be set before the first logger is created
+        System.setProperty("log4j2.configurationFile", "log4j2-bench.xml");
+        System.setProperty("bench.logfile", logFile.toString());
+        System.setProperty("log4j2.contextSelector", async
+                ? "org.apache.logging.log4j.core.async.AsyncLoggerContextSelector"
+                : "org.apache.logging.log4j.core.selector.ClassLoaderContextSelector");
+        System.setProperty("log4j2.asyncQueueFullPolicy", "Default"); // block rather than drop, keeps counts honest
+
+        Logger logger = LoggerFactory.getLogger("api.SpotifyAPI");
+
+        // representative arguments: submission IDs, track IDs and Discord user IDs
+        String[] submissionIds = new String[BURST];
+        String[] trackIds = new String[BURST];
+        String[] userIds = new String[BURST];
+
+        for (int i = 0; i < BURST; i++) {
+            submissionIds[i] = Integer.toString(100_000 + i);
+            trackIds[i] = String.format("%022d", i);
+            userIds[i] = Long.toString(180_000_000_000_000_000L + i);
+        }
+
+        System.out.printf("%s loggers, %,d calls per case%n%n", async ? "async" : "sync", (long) bursts * BURST);
+
+        Call[] calls = {
+            i -> logger.info("Processing submission " + submissionIds[i] + ": trackId=" + trackIds[i] + ", userId="
+                    + userIds[i]),
+            i -> logger.info("Processing submission {}: trackId={}, userId={}", submissionIds[i], trackIds[i],
+                    userIds[i]),
+            i -> logger.debug("Processing submission " + submissionIds[i] + ": trackId=" + trackIds[i] + ", userId="
+                    + userIds[i]),
+            i -> logger.debug("Processing submission {}: trackId={}, userId={}", submissionIds[i], trackIds[i],
+                    userIds[i])
+        };
+        String[] names = { "concatenated, enabled", "parameterized, enabled", "concatenated, disabled",
+                "parameterized, disabled" };
+
+        for (int c = 0; c < calls.length; c++) {
+            run(calls[c], Math.max(1, bursts / 4)); // warm up
+            run(calls[c], bursts);
+        }
+
+        for (int c = 0; c < calls.length; c++) {
+            long[] result = run(calls[c], bursts);
+            long total = (long) bursts * BURST;
+
+            System.out.printf("%-26s %8.1f ns/call %8.1f bytes/call%n", names[c], (double) result[0] / total,
+                    (double) result[1] / total);
+        }
+
+        LogManager.shutdown();
+
+        System.out.printf("%nlog file: %,d bytes%n", Files.size(logFile));
+        Files.deleteIfExists(logFile);
+    }
+
+    private interface Call {
+        void log(int i);
+    }
+
+    // returns {nanos spent in calls, bytes allocated by the calling thread}
+    private static long[] run(Call call, int bursts) throws InterruptedException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long nanos = 0;
+        long bytes = 0;
+
+        for (int b = 0; b < bursts; b++) {
+            long allocated = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+
+            for (int i = 0; i < BURST; i++) {
+                call.log(i);
+            }
+
+            nanos += System.nanoTime() - start;
+            bytes += threads.getThreadAllocatedBytes(thread) - allocated;
+
+            Thread.sleep(20); // let the background thread drain the burst
+        }
+
+        return new long[] { nanos, bytes };
+    }
+}
@@ -0,0 +1,253 @@
+package tools;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import index.TrackIdSet;
+import utils.ReactionInfo;
+import utils.ResolvedSubmission;
+import utils.Submission;
+import utils.SubmissionBatch;
+import utils.SubmissionOutcome;
+
+/**
+ * Compares reconciling submissions as a List&lt;Submission&gt; (one object per
+ * row, two set lookups per row) with SubmissionBatch (columns, one lookup per
+ * distinct track, objects only for resolved rows): rows per second, bytes
+ * allocated per row and heap retained by a loaded page.
+ *
+ * <pre>
+ * java -cp TokenBot.jar tools.ReconcileBenchmark [rows=1000000] [tracks=300000] [rounds=5]
+ * </pre>
+ *
+ * Rows are handed over as fresh Strings, the way the JDBC driver produces
+ * them, so both sides pay for decoding. About 10% of the tracks are approved
+ * and 5% gone from the submissions playlist. Allocation comes from the
+ * thread's allocation counter (HotSpot only); heap numbers come from
+ * Runtime after explicit GCs, so run it with a fixed heap (e.g. -Xms2g
+ * -Xmx2g).
+ */
+public class ReconcileBenchmark {
+    private static final String ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    public static void main(String[] args) throws IOException {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        int trackCount = (args.length > 1) ? Integer.parseInt(args[1]) : 300_000;
+        int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+
+        Random random = new Random(42);
+        String[] tracks = new String[trackCount];
+
+        for (int i = 0; i < trackCount; i++) {
+            tracks[i] = randomId(random);
+        }
+
+        Path file = Files.createTempFile("reconcile-bench", ".idx");
+        Files.delete(file);
+
+        TrackIdSet approved = TrackIdSet.open(file);
+        Set<String> queued = new HashSet<>();
+
+        for (String track : tracks) {
+            int roll = random.nextInt(100);
+
+            if (roll < 10) {
+                approved.add(track);
+            } else if (roll >= 15) {
+                queued.add(track);
+            }
+        }
+
+        // the page as the database returns it: trackid, userid, messageid
+        String[][] page = new String[rows][];
+
+        for (int i = 0; i < rows; i++) {
+            page[i] = new String[] { tracks[random.nextInt(trackCount)],
+                    Long.toString(100_000_000_000_000_000L + random.nextInt(5_000)),
+                    Long.toString(1_000_000_000_000_000_000L + i) };
+        }
+
+        System.out.printf("%,d rows, %,d tracks, %d rounds%n%n", rows, trackCount, rounds);
+
+        // List<Submission> -------
+        long[] listLoad = measure(rounds, () -> load(page).size());
+        List<Submission> loadedList = load(page);
+        long[] listCheck = measure(rounds, () -> reconcileList(loadedList, approved, queued));
+        long listHeap = retained(() -> load(page));
+
+        report("List<Submission>", listLoad, listCheck, listHeap, rows);
+
+        // SubmissionBatch -------
+        long[] batchLoad = measure(rounds, () -> loadBatch(page).size());
+        SubmissionBatch loadedBatch = loadBatch(page);
+        long[] batchCheck = measure(rounds, () -> reconcileBatch(loadedBatch, approved, queued));
+        long batchHeap = retained(() -> loadBatch(page));
+
+        report("SubmissionBatch", batchLoad, batchCheck, batchHeap, rows);
+        System.out.printf("  distinct:  %,d tracks%n", loadedBatch.distinctTracks());
+
+        approved.close();
+        Files.deleteIfExists(file);
+    }
+
+    private interface Pass {
+        int run();
+    }
+
+    // best time and the allocation of that round
+    private static long[] measure(int rounds, Pass pass) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long bestNanos = Long.MAX_VALUE;
+        long bestBytes = 0;
+        int resolved = 0;
+
+        pass.run(); // warm up
+
+        for (int i = 0; i < rounds; i++) {
+            long bytes = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+
+            resolved = pass.run();
+
+            long elapsed = System.nanoTime() - start;
+
+            if (elapsed < bestNanos) {
+                bestNanos = elapsed;
+                bestBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+            }
+        }
+
+        return new long[] { bestNanos, bestBytes, resolved };
+    }
+
+    // heap held by one loaded page
+    private static long retained(Supplier<Object> loader) {
+        long before = usedHeap();
+        Object page = loader.get();
+        long after = usedHeap();
+
+        if (page == null) {
+            System.out.println(); // keeps the page reachable until measured
+        }
+
+        return Math.max(0, after - before);
+    }
+
+    // what the repository used to return
+    private static List<Submission> load(String[][] page) {
+        List<Submission> submissions = new ArrayList<>();
+
+        for (int i = 0; i < page.length; i++) {
+            String[] row = page[i];
+
+            submissions.add(new Submission(decode(row[0]), decode(row[1]), decode(row[2]), i + 1));
+        }
+
+        return submissions;
+    }
+
+    private static SubmissionBatch loadBatch(String[][] page) {
+        SubmissionBatch.Builder builder = SubmissionBatch.builder(page.length);
+
+        for (int i = 0; i < page.length; i++) {
+            String[] row = page[i];
+
+            builder.add(i + 1, decode(row[0]), decode(row[1]), decode(row[2]));
+        }
+
+        return builder.build();
+    }
+
+    // a String with its own characters, like one the driver decoded off the wire
+    private static String decode(String column) {
+        return new String(column.toCharArray());
+    }
+
+    // the per-row loop SpotifyAPI.reconcile used to run
+    private static int reconcileList(List<Submission> submissions, TrackIdSet approved, Set<String> queued) {
+        List<ResolvedSubmission> resolved = new ArrayList<>();
+
+        for (Submission submission : submissions) {
+            String trackId = submission.getTrackId();
+
+            if (approved.contains(trackId)) {
+                resolved.add(ResolvedSubmission.of(submission, SubmissionOutcome.APPROVED));
+            } else if (!queued.contains(trackId)) {
+                resolved.add(ResolvedSubmission.of(submission, SubmissionOutcome.REMOVED));
+            }
+        }
+
+        return reactions(resolved);
+    }
+
+    private static int reconcileBatch(SubmissionBatch batch, TrackIdSet approved, Set<String> queued) {
+        byte[] outcomes = batch.reconcile(approved, queued);
+        List<ResolvedSubmission> resolved = new ArrayList<>();
+
+        for (int i = 0; i < outcomes.length; i++) {
+            if (outcomes[i] != SubmissionBatch.PENDING) {
+                resolved.add(ResolvedSubmission.of(batch.toSubmission(i),
+                        (outcomes[i] == SubmissionBatch.APPROVED) ? SubmissionOutcome.APPROVED
+                                : SubmissionOutcome.REMOVED));
+            }
+        }
+
+        return reactions(resolved);
+    }
+
+    private static int reactions(List<ResolvedSubmission> resolved) {
+        List<ReactionInfo> reactions = new ArrayList<>();
+
+        for (ResolvedSubmission entry : resolved) {
+            Submission submission = entry.getSubmission();
+
+            reactions.add(new ReactionInfo(submission.getUserId(), submission.getMessageId(), "✅"));
+        }
+
+        return reactions.size();
+    }
+
+    private static void report(String name, long[] load, long[] check, long heapBytes, int rows) {
+        long total = load[0] + check[0];
+
+        System.out.println(name);
+        System.out.printf("  load:      %,d ms, %.1f bytes/row%n", load[0] / 1_000_000, (double) load[1] / rows);
+        System.out.printf("  reconcile: %,d ms, %.1f bytes/row%n", check[0] / 1_000_000, (double) check[1] / rows);
+        System.out.printf("  total:     %,.0f rows/s%n", rows / (total / 1e9));
+        System.out.printf("  heap:      %,d bytes retained per page%n", heapBytes);
+        System.out.printf("  resolved:  %,d%n", check[2]);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String randomId(Random random) {
+        char[] chars = new char[TrackIdSet.ID_LENGTH];
+
+        // a leading digit below '7' keeps the value within 128 bits, like real IDs
+        chars[0] = ALPHABET.charAt(random.nextInt(7));
+
+        for (int i = 1; i < chars.length; i++) {
+            chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        }
+
+        return new String(chars);
+    }
+}
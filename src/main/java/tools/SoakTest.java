@@ -0,0 +1,434 @@
+package tools;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpServer;
+
+import coordination.Coordination;
+import coordination.LocalCoordinator;
+import metrics.Metrics;
+import repository.InMemoryRepository;
+import repository.Repositories;
+
+/**
+ * Runs the whole bot for hours against DiscordStub and SpotifyStub with
+ * synthetic traffic, and fails if resource use keeps climbing.
+ *
+ * <pre>
+ * java -jar TokenBot.jar soak [minutes=120] [messagesPerSecond=20] [sampleSeconds=60] [threshold=0.10]
+ * </pre>
+ *
+ * Traffic is a mix of submissions (a bounded pool of tracks and users, so
+ * caches and indexes level off), wrong and non-Spotify links, chatter,
+ * commands and curator ]approve/]reject batches. Every sample forces a GC
+ * and records used heap, live threads, the Discord REST queue, JDA's
+ * scheduled retries, pending DM deletions and queued reactions, plus a
+ * class histogram.
+ *
+ * After a warm-up (a fifth of the run, at most 10 minutes) each series gets
+ * a least-squares line. A metric fails if the line rises by more than
+ * threshold (relative to its early level, and above a small absolute floor)
+ * and the last third of the samples sits that much above the first third.
+ * The classes that grew most are listed to point at the leak. Exit code 1
+ * on failure.
+ *
+ * Uses the in-memory store and a single-replica coordinator; set PORT if
+ * 8080 is taken.
+ */
+public class SoakTest {
+    private static final Logger logger = LoggerFactory.getLogger(SoakTest.class);
+
+    private static final int TRACKS = 5_000; // distinct tracks submitted
+    private static final int USERS = 500;
+    private static final int PLAYLIST_SIZE = 500; // stub playlist tracks, submitted ones are duplicates
+    private static final long FIRST_USER = 200_000_000_000_000_000L;
+    private static final long CURATOR = FIRST_USER - 1;
+    private static final String[] COMMANDS = { "]balance", "]stats", "]help", "]commands" };
+
+    private final int minutes;
+    private final int messagesPerSecond;
+    private final int sampleSeconds;
+    private final double threshold;
+    private final Random random = new Random(42);
+    private final Map<String, Series> series = new LinkedHashMap<>();
+    private final List<Map<String, long[]>> histograms = new ArrayList<>();
+    private final List<String> recentTracks = new ArrayList<>();
+
+    private DiscordStub discord;
+    private InMemoryRepository store;
+
+    /**
+     * Something that starts the bot (Main.main) once the stand-ins are up.
+     */
+    public interface Bot {
+        void start() throws Exception;
+    }
+
+    private SoakTest(String[] args) {
+        minutes = (args.length > 0) ? Integer.parseInt(args[0]) : 120;
+        messagesPerSecond = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        sampleSeconds = (args.length > 2) ? Integer.parseInt(args[2]) : 60;
+        threshold = (args.length > 3) ? Double.parseDouble(args[3]) : 0.10;
+
+        // absolute floors keep noise in small numbers from failing a run
+        series.put("heap_used_after_gc_bytes", new Series(16L << 20));
+        series.put("threads_live", new Series(5));
+        series.put("discord_rest_queue", new Series(50));
+        series.put("discord_scheduled_tasks", new Series(50));
+        series.put("secret_message_deletions", new Series(200));
+        series.put("reconciler_reactions_queued", new Series(200));
+    }
+
+    /**
+     * Start the stand-ins and the bot, drive traffic and sample until the
+     * time is up, then report and exit.
+     */
+    public static void run(String[] args, Bot bot) {
+        SoakTest test = new SoakTest(args);
+        boolean passed;
+
+        try {
+            passed = test.soak(bot);
+        } catch (Exception e) {
+            logger.error("Soak test could not run: {}", e.getMessage(), e);
+
+            System.exit(2);
+            return;
+        }
+
+        System.exit(passed ? 0 : 1);
+    }
+
+    // private functions -------
+
+    private boolean soak(Bot bot) throws Exception {
+        HttpServer spotify = SpotifyStub.start(0, 20, PLAYLIST_SIZE);
+
+        discord = DiscordStub.start(0);
+        configure(spotify);
+        bot.start();
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+
+        while (!discord.isConnected()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Bot did not connect to the Discord stub");
+            }
+
+            Thread.sleep(100);
+        }
+
+        Thread.sleep(2000); // Spotify auth check after login
+
+        long start = System.currentTimeMillis();
+        long end = start + TimeUnit.MINUTES.toMillis(minutes);
+        long warmUp = start + Math.min(TimeUnit.MINUTES.toMillis(10), TimeUnit.MINUTES.toMillis(minutes) / 5);
+        long nextSample = warmUp;
+        long nextReview = start + TimeUnit.SECONDS.toMillis(30);
+        long sent = 0;
+
+        logger.info("Soak test: {} min, {} messages/s, samples every {} s after {} s warm-up", minutes,
+                messagesPerSecond, sampleSeconds, (warmUp - start) / 1000);
+
+        while (System.currentTimeMillis() < end) {
+            long second = System.currentTimeMillis();
+
+            for (int i = 0; i < messagesPerSecond; i++) {
+                message();
+                sent++;
+            }
+
+            if (second >= nextReview) {
+                review();
+                nextReview += TimeUnit.SECONDS.toMillis(30);
+            }
+
+            if (System.currentTimeMillis() >= nextSample) {
+                sample();
+                nextSample += TimeUnit.SECONDS.toMillis(sampleSeconds);
+            }
+
+            Thread.sleep(Math.max(0, 1000 - (System.currentTimeMillis() - second)));
+        }
+
+        sample();
+
+        return report(sent);
+    }
+
+    private void configure(HttpServer spotify) {
+        store = new InMemoryRepository();
+        long now = System.currentTimeMillis() / 1000;
+        String[][] config = {
+                { "TOKEN", "soak.test.token" },
+                { "DISCORD_API_URL", discord.url() },
+                { "DISCORD_GATEWAY_URL", discord.gatewayUrl() },
+                { "SPOTIFY_API_URL", "http://localhost:" + spotify.getAddress().getPort() },
+                { "PLAYLIST_ID", "submissions" },
+                { "APPROVED_PLAYLIST_ID", "approved" },
+                { "TARGET_CHANNEL_ID", discord.getSubmissionsChannelId() },
+                { "COMMANDS_CHANNEL_ID", discord.getCommandsChannelId() },
+                { "HELP_CHANNEL_ID", discord.getHelpChannelId() },
+                { "SUBMITTED_ROLE_ID", discord.getSubmittedRoleId() },
+                { "ADMIN", Long.toString(CURATOR) },
+                { "CURATORS", "{\"curators\":[{\"name\":\"soak\",\"id\":\"" + CURATOR + "\"}]}" },
+                { "TOKEN_NAME", "Token" },
+                { "APP_CLIENT_ID", "soak" },
+                { "CLIENT_SECRET", "soak" },
+                { "URI_STRING", "http://localhost/spotify-redirect" },
+                { "SPOTIFY_AUTH_CODE", "soak" },
+                { "AUTH_ACCESS_TOKEN", "soak" },
+                { "AUTH_REFRESH_TOKEN", "soak" },
+                { "AUTH_TIME", Long.toString(now) },
+                { "EXPIRES_IN", Long.toString(TimeUnit.DAYS.toSeconds(365)) }, // no refreshes against the real API
+                { "RECONCILE_INTERVAL_SECONDS", "10" },
+                { "REACTION_INTERVAL_MS", "50" }
+        };
+
+        for (String[] entry : config) {
+            store.saveConfig(entry[0], entry[1]).join();
+        }
+
+        Repositories.set(store);
+        Coordination.set(new LocalCoordinator("soak"));
+    }
+
+    // one synthetic message
+    private void message() {
+        long user = FIRST_USER + random.nextInt(USERS);
+        int roll = random.nextInt(100);
+        String channel = discord.getSubmissionsChannelId();
+        String content;
+
+        if (roll < 50) {
+            String trackId = SpotifyStub.trackId(random.nextInt(TRACKS));
+
+            content = "https://open.spotify.com/track/" + trackId;
+
+            synchronized (recentTracks) {
+                recentTracks.add(trackId);
+            }
+        } else if (roll < 60) {
+            StringBuilder sb = new StringBuilder("a few for the list:");
+
+            for (int i = 2 + random.nextInt(3); i > 0; i--) {
+                String trackId = SpotifyStub.trackId(random.nextInt(TRACKS));
+
+                sb.append(" https://open.spotify.com/track/").append(trackId);
+
+                synchronized (recentTracks) {
+                    recentTracks.add(trackId);
+                }
+            }
+
+            content = sb.toString();
+        } else if (roll < 70) {
+            content = "https://open.spotify.com/album/" + SpotifyStub.trackId(random.nextInt(TRACKS));
+        } else if (roll < 80) {
+            content = "https://example.com/" + random.nextInt(1000);
+        } else if (roll < 90) {
+            content = "nice one";
+        } else {
+            channel = discord.getCommandsChannelId();
+            content = COMMANDS[random.nextInt(COMMANDS.length)];
+        }
+
+        discord.post(channel, user, content);
+    }
+
+    // a curator batch over recent submissions
+    private void review() {
+        StringBuilder sb = new StringBuilder(random.nextBoolean() ? "]approve" : "]reject");
+
+        synchronized (recentTracks) {
+            for (int i = Math.max(0, recentTracks.size() - 50); i < recentTracks.size(); i++) {
+                sb.append(' ').append(recentTracks.get(i));
+            }
+
+            recentTracks.clear();
+        }
+
+        discord.post(discord.getCommandsChannelId(), CURATOR, sb.toString());
+    }
+
+    private void sample() throws Exception {
+        // resolved submissions would pile up in the in-memory store; Postgres keeps them on disk
+        store.clearHistory();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        series.get("heap_used_after_gc_bytes").add(heap);
+        series.get("threads_live").add(threads.getThreadCount());
+
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            Number gauge = Metrics.value(entry.getKey());
+
+            if (gauge != null) {
+                entry.getValue().add(gauge.longValue());
+            }
+        }
+
+        histograms.add(histogram());
+
+        logger.info("Soak sample {}: heap {} MB, {} threads, REST queue {}, DM deletions {}", histograms.size(),
+                heap >> 20, threads.getThreadCount(), Metrics.value("discord_rest_queue"),
+                Metrics.value("secret_message_deletions"));
+    }
+
+    // class -> {instances, bytes}, from the same histogram jmap -histo prints
+    private static Map<String, long[]> histogram() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        String text = (String) server.invoke(new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                "gcClassHistogram", new Object[] { new String[0] }, new String[] { String[].class.getName() });
+        Map<String, long[]> classes = new HashMap<>();
+
+        for (String line : text.split("\n")) {
+            String[] columns = line.trim().split("\\s+");
+
+            // "  1:   12345   678900  java.lang.String (java.base@17)"
+            if (columns.length >= 4 && columns[0].endsWith(":")) {
+                classes.put(columns[3], new long[] { Long.parseLong(columns[1]), Long.parseLong(columns[2]) });
+            }
+        }
+
+        return classes;
+    }
+
+    private boolean report(long sent) {
+        boolean passed = true;
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(String.format("%nSoak test: %,d messages in %d min, %d samples%n%n", sent, minutes,
+                histograms.size()));
+        sb.append(String.format("%-30s %15s %15s %15s %8s  %s%n", "metric", "first", "last", "trend", "growth",
+                "verdict"));
+
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            Series values = entry.getValue();
+
+            if (values.size() < 3) {
+                sb.append(String.format("%-30s %15s%n", entry.getKey(), "not sampled"));
+                continue;
+            }
+
+            boolean leaking = values.isRising(threshold);
+
+            passed &= !leaking;
+            sb.append(String.format("%-30s %,15d %,15d %,15.0f %7.1f%%  %s%n", entry.getKey(), values.first(),
+                    values.last(), values.trend(), 100 * values.growth(), leaking ? "RISING" : "ok"));
+        }
+
+        if (histograms.size() >= 2) {
+            sb.append(String.format("%nLargest growth by class (first sample -> last):%n"));
+
+            Map<String, long[]> first = histograms.get(0);
+            Map<String, long[]> last = histograms.get(histograms.size() - 1);
+            List<Map.Entry<String, long[]>> growth = new ArrayList<>(last.entrySet());
+
+            growth.sort(Comparator.comparingLong(
+                    (Map.Entry<String, long[]> e) -> e.getValue()[1] - first.getOrDefault(e.getKey(), new long[2])[1])
+                    .reversed());
+
+            for (Map.Entry<String, long[]> entry : growth.subList(0, Math.min(10, growth.size()))) {
+                long[] before = first.getOrDefault(entry.getKey(), new long[2]);
+
+                sb.append(String.format("  %+,14d bytes %+,12d instances  %s%n", entry.getValue()[1] - before[1],
+                        entry.getValue()[0] - before[0], entry.getKey()));
+            }
+        }
+
+        sb.append(String.format("%nDiscord REST calls: %s%n", discord.calls()));
+        sb.append(String.format("%nSoak test %s%n", passed ? "PASSED" : "FAILED"));
+
+        System.out.print(sb);
+
+        return passed;
+    }
+
+    /**
+     * Samples of one metric.
+     */
+    private static class Series {
+        private final long floor;
+        private final List<Long> values = new ArrayList<>();
+
+        Series(long floor) {
+            this.floor = floor;
+        }
+
+        void add(long value) {
+            values.add(value);
+        }
+
+        int size() {
+            return values.size();
+        }
+
+        long first() {
+            return values.get(0);
+        }
+
+        long last() {
+            return values.get(values.size() - 1);
+        }
+
+        // rise of the least-squares line over the run
+        double trend() {
+            int n = values.size();
+            double meanX = (n - 1) / 2.0;
+            double meanY = mean(0, n);
+            double covariance = 0;
+            double variance = 0;
+
+            for (int i = 0; i < n; i++) {
+                covariance += (i - meanX) * (values.get(i) - meanY);
+                variance += (i - meanX) * (i - meanX);
+            }
+
+            return covariance / variance * (n - 1);
+        }
+
+        // trend relative to the early level
+        double growth() {
+            return trend() / Math.max(mean(0, Math.min(3, values.size())), 1);
+        }
+
+        boolean isRising(double threshold) {
+            int third = Math.max(1, values.size() / 3);
+            double early = mean(0, third);
+            double late = mean(values.size() - third, values.size());
+
+            return trend() > floor && growth() > threshold && late - early > Math.max(floor, threshold * early);
+        }
+
+        private double mean(int from, int to) {
+            double sum = 0;
+
+            for (int i = from; i < to; i++) {
+                sum += values.get(i);
+            }
+
+            return sum / Math.max(1, to - from);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal stand-in for the parts of the Spotify Web API the bot uses: track
+ * lookups, playlist snapshots, playlist pages, adding and reordering items,
+ * the current user and creating playlists. Responses are canned but
+ * well-formed, each one is delayed by a fixed latency to mimic the round
+ * trip, and gzip is honoured.
+ *
+ * <pre>
+ * java -cp TokenBot.jar tools.SpotifyStub [port=8089] [latencyMs=20] [playlistSize=1000]
+ * </pre>
+ *
+ * Point the bot at it with the config key SPOTIFY_API_URL=http://localhost:8089.
+ * It speaks plain HTTP/1.1 only (no TLS, so no HTTP/2 negotiation).
+ */
+public class SpotifyStub {
+    private static final String ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8089;
+        long latencyMillis = (args.length > 1) ? Long.parseLong(args[1]) : 20;
+        int playlistSize = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+
+        start(port, latencyMillis, playlistSize);
+
+        System.out.printf("Spotify stub listening on http://localhost:%d (latency %d ms, %d tracks per playlist)%n",
+                port, latencyMillis, playlistSize);
+
+        Thread.currentThread().join(); // the server threads are daemons
+    }
+
+    /**
+     * @param port 0 for any free port
+     * @return the running server; stop() it when done
+     */
+    public static HttpServer start(int port, long latencyMillis, int playlistSize) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 256);
+
+        server.setExecutor(Executors.newFixedThreadPool(64, r -> {
+            Thread thread = new Thread(r, "spotify-stub");
+            thread.setDaemon(true);
+
+            return thread;
+        }));
+
+        server.createContext("/v1/", exchange -> {
+            try {
+                Thread.sleep(latencyMillis);
+
+                respond(exchange, route(exchange, playlistSize));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                exchange.sendResponseHeaders(500, -1);
+            } finally {
+                exchange.close();
+            }
+        });
+
+        server.start();
+
+        return server;
+    }
+
+    /**
+     * @return a well-formed track ID, the same for the same number
+     */
+    public static String trackId(int n) {
+        char[] chars = new char[22];
+        long value = n;
+
+        chars[0] = '1';
+
+        for (int i = chars.length - 1; i > 0; i--) {
+            chars[i] = ALPHABET.charAt((int) (value % ALPHABET.length()));
+            value /= ALPHABET.length();
+        }
+
+        return new String(chars);
+    }
+
+    // private functions -------
+
+    private static Reply route(HttpExchange exchange, int playlistSize) throws IOException {
+        URI uri = exchange.getRequestURI();
+        String path = uri.getPath();
+        Map<String, String> query = query(uri.getRawQuery());
+
+        exchange.getRequestBody().readAllBytes();
+
+        if (path.equals("/v1/tracks")) {
+            StringBuilder sb = new StringBuilder("{\"tracks\":[");
+            String[] ids = query.getOrDefault("ids", "").split(",");
+
+            for (int i = 0; i < ids.length; i++) {
+                sb.append((i > 0) ? "," : "").append(track(ids[i]));
+            }
+
+            return new Reply(200, sb.append("]}").toString());
+        }
+
+        if (path.startsWith("/v1/tracks/")) {
+            return new Reply(200, track(path.substring("/v1/tracks/".length())));
+        }
+
+        if (path.startsWith("/v1/playlists/") && path.endsWith("/tracks")) {
+            // add (POST) and reorder (PUT) both answer with a new snapshot
+            if (!exchange.getRequestMethod().equals("GET")) {
+                return new Reply(201, "{\"snapshot_id\":\"stub-snapshot\"}");
+            }
+
+            int offset = Integer.parseInt(query.getOrDefault("offset", "0"));
+            int limit = Integer.parseInt(query.getOrDefault("limit", "100"));
+            StringBuilder sb = new StringBuilder("{\"items\":[");
+
+            for (int i = offset; i < Math.min(offset + limit, playlistSize); i++) {
+                sb.append((i > offset) ? "," : "").append("{\"track\":").append(track(trackId(i))).append('}');
+            }
+
+            return new Reply(200, sb.append("],\"limit\":").append(limit).append(",\"offset\":").append(offset)
+                    .append(",\"total\":").append(playlistSize).append('}').toString());
+        }
+
+        if (path.startsWith("/v1/playlists/")) {
+            return new Reply(200, "{\"snapshot_id\":\"stub-snapshot\",\"tracks\":{\"total\":" + playlistSize + "}}");
+        }
+
+        if (path.equals("/v1/me")) {
+            return new Reply(200, "{\"id\":\"stub-user\",\"type\":\"user\"}");
+        }
+
+        if (path.startsWith("/v1/users/") && path.endsWith("/playlists")) {
+            String id = "stubplaylist" + Long.toString(System.nanoTime(), 36);
+
+            return new Reply(201, "{\"id\":\"" + id + "\",\"name\":\"Stub Playlist\",\"type\":\"playlist\","
+                    + "\"snapshot_id\":\"stub-snapshot\"}");
+        }
+
+        return new Reply(404, "{\"error\":{\"status\":404,\"message\":\"Not found\"}}");
+    }
+
+    private static String track(String id) {
+        return "{\"id\":\"" + id + "\",\"uri\":\"spotify:track:" + id + "\",\"name\":\"Track " + id
+                + "\",\"type\":\"track\",\"duration_ms\":180000,\"popularity\":50,"
+                + "\"artists\":[{\"id\":\"stubartist\",\"name\":\"Stub Artist\",\"type\":\"artist\"}],"
+                + "\"album\":{\"id\":\"stubalbum\",\"name\":\"Stub Album\",\"album_type\":\"album\"},"
+                + "\"external_ids\":{\"isrc\":\"ST" + Math.abs(id.hashCode()) + "\"}}";
+    }
+
+    private static void respond(HttpExchange exchange, Reply reply) throws IOException {
+        byte[] bytes = reply.body.getBytes(StandardCharsets.UTF_8);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(bytes);
+            }
+
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+
+        exchange.sendResponseHeaders(reply.status, bytes.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+
+        if (rawQuery == null) {
+            return params;
+        }
+
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+
+            if (eq > 0) {
+                params.put(pair.substring(0, eq),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+
+        return params;
+    }
+
+    private static final class Reply {
+        private final int status;
+        private final String body;
+
+        private Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
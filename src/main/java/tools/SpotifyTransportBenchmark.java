@@ -0,0 +1,128 @@
+package tools;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+
+import api.JdkHttpManager;
+import se.michaelthelin.spotify.IHttpManager;
+import se.michaelthelin.spotify.SpotifyApi;
+
+/**
+ * Compares the library's default Apache transport with JdkHttpManager against
+ * a local SpotifyStub: requests per second and latency percentiles with
+ * several threads issuing the bot's two hot calls (50-ID track lookups and
+ * 100-item playlist pages) at once.
+ *
+ * <pre>
+ * java -cp TokenBot.jar tools.SpotifyTransportBenchmark [threads=16] [requests=2000] [latencyMs=20]
+ * </pre>
+ *
+ * The stub speaks HTTP/1.1 only, so this measures connection reuse and pool
+ * limits rather than HTTP/2 multiplexing, which only api.spotify.com (TLS +
+ * ALPN) negotiates.
+ */
+public class SpotifyTransportBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = (args.length > 0) ? Integer.parseInt(args[0]) : 16;
+        int requests = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+        long latencyMillis = (args.length > 2) ? Long.parseLong(args[2]) : 20;
+
+        HttpServer stub = SpotifyStub.start(0, latencyMillis, 10_000);
+        int port = stub.getAddress().getPort();
+
+        System.out.printf("%d threads, %,d requests, %d ms stub latency%n%n", threads, requests, latencyMillis);
+
+        try {
+            run("apache (library default)", api(null, port), threads, requests);
+            run("jdk (gzip)", api(new JdkHttpManager(Duration.ofSeconds(5), Duration.ofSeconds(10), true), port),
+                    threads, requests);
+            run("jdk (identity)", api(new JdkHttpManager(Duration.ofSeconds(5), Duration.ofSeconds(10), false), port),
+                    threads, requests);
+        } finally {
+            stub.stop(0);
+        }
+    }
+
+    private static SpotifyApi api(IHttpManager manager, int port) {
+        SpotifyApi.Builder builder = new SpotifyApi.Builder()
+                .setScheme("http")
+                .setHost("localhost")
+                .setPort(port)
+                .setAccessToken("stub");
+
+        if (manager != null) {
+            builder.setHttpManager(manager);
+        }
+
+        return builder.build();
+    }
+
+    private static void run(String name, SpotifyApi api, int threads, int requests) throws Exception {
+        String[] ids = new String[50];
+
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = SpotifyStub.trackId(i);
+        }
+
+        // warm up: connections, JIT
+        measure(api, ids, threads, Math.min(requests, 200));
+
+        long start = System.nanoTime();
+        long[] latencies = measure(api, ids, threads, requests);
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+
+        System.out.println(name);
+        System.out.printf("  throughput: %,.0f requests/s%n", requests / (elapsed / 1e9));
+        System.out.printf("  latency:    p50 %.1f ms, p99 %.1f ms, max %.1f ms%n", percentile(latencies, 0.50),
+                percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+    }
+
+    private static long[] measure(SpotifyApi api, String[] ids, int threads, int requests) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        Future<?>[] workers = new Future<?>[threads];
+
+        for (int t = 0; t < threads; t++) {
+            workers[t] = pool.submit(() -> {
+                int i;
+
+                while ((i = next.getAndIncrement()) < requests) {
+                    long start = System.nanoTime();
+
+                    // alternate the two calls the bot makes in bulk
+                    if (i % 2 == 0) {
+                        api.getSeveralTracks(ids).build().execute();
+                    } else {
+                        api.getPlaylistsItems("stub").offset((i % 100) * 100).limit(100).build().execute();
+                    }
+
+                    latencies[i] = System.nanoTime() - start;
+                }
+
+                return null;
+            });
+        }
+
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+
+        pool.shutdown();
+
+        return latencies;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))] / 1e6;
+    }
+}
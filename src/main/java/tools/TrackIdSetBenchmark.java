@@ -0,0 +1,160 @@
+package tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import index.TrackIdSet;
+
+/**
+ * Compares TrackIdSet with the HashSet&lt;String&gt; it replaces: heap retained,
+ * build time, reopen time and contains() throughput for hits and misses.
+ *
+ * <pre>
+ * java -cp TokenBot.jar tools.TrackIdSetBenchmark [ids=1000000] [lookups=5000000]
+ * </pre>
+ *
+ * Heap numbers come from Runtime after explicit GCs, so run it with a fixed
+ * heap (e.g. -Xms2g -Xmx2g) and nothing else in the JVM. HashSet lookups reuse
+ * the same probe Strings, so their hash codes are cached after the warm-up,
+ * which is its best case.
+ */
+public class TrackIdSetBenchmark {
+    private static final String ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    public static void main(String[] args) throws IOException {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        int lookups = (args.length > 1) ? Integer.parseInt(args[1]) : 5_000_000;
+
+        Random random = new Random(42);
+        String[] ids = new String[count];
+        String[] misses = new String[Math.min(count, 100_000)];
+
+        for (int i = 0; i < count; i++) {
+            ids[i] = randomId(random);
+        }
+
+        for (int i = 0; i < misses.length; i++) {
+            misses[i] = randomId(random);
+        }
+
+        Path file = Files.createTempFile("trackidset-bench", ".idx");
+        Files.delete(file);
+
+        System.out.printf("%,d IDs, %,d lookups%n%n", count, lookups);
+
+        // HashSet<String> -------
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        Set<String> hashSet = new HashSet<>();
+
+        for (String id : ids) {
+            hashSet.add(new String(id)); // own copy, as if parsed from a playlist page
+        }
+
+        long hashBuild = System.nanoTime() - start;
+        long hashHeap = usedHeap() - heapBefore;
+
+        long hashHits = timeLookups(ids, lookups, hashSet::contains);
+        long hashMisses = timeLookups(misses, lookups, hashSet::contains);
+
+        report("HashSet<String>", hashBuild, hashHeap, -1, hashHits, hashMisses, lookups);
+
+        hashSet = null;
+
+        // TrackIdSet -------
+        heapBefore = usedHeap();
+        start = System.nanoTime();
+        TrackIdSet trackIdSet = TrackIdSet.open(file);
+
+        for (String id : ids) {
+            trackIdSet.add(id);
+        }
+
+        trackIdSet.close();
+
+        long mappedBuild = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        trackIdSet = TrackIdSet.open(file);
+        long reopen = System.nanoTime() - start;
+        long mappedHeap = usedHeap() - heapBefore;
+
+        TrackIdSet set = trackIdSet;
+        long mappedHits = timeLookups(ids, lookups, set::contains);
+        long mappedMisses = timeLookups(misses, lookups, set::contains);
+
+        report("TrackIdSet", mappedBuild, mappedHeap, reopen, mappedHits, mappedMisses, lookups);
+        System.out.printf("  file: %,d bytes, %,d entries%n", set.sizeInBytes(), set.size());
+
+        set.close();
+        Files.deleteIfExists(file);
+    }
+
+    private interface Lookup {
+        boolean contains(String id);
+    }
+
+    private static long timeLookups(String[] keys, int lookups, Lookup lookup) {
+        int found = 0;
+
+        // warm up, then measure
+        for (int i = 0; i < Math.min(lookups, 1_000_000); i++) {
+            found += lookup.contains(keys[i % keys.length]) ? 1 : 0;
+        }
+
+        long start = System.nanoTime();
+
+        for (int i = 0; i < lookups; i++) {
+            found += lookup.contains(keys[i % keys.length]) ? 1 : 0;
+        }
+
+        long elapsed = System.nanoTime() - start;
+
+        if (found == -1) {
+            System.out.println(); // keeps the loop from being optimized away
+        }
+
+        return elapsed;
+    }
+
+    private static void report(String name, long buildNanos, long heapBytes, long reopenNanos, long hitNanos,
+            long missNanos, int lookups) {
+        System.out.println(name);
+        System.out.printf("  build:    %,d ms%n", buildNanos / 1_000_000);
+        System.out.printf("  heap:     %,d bytes retained%n", Math.max(0, heapBytes));
+
+        if (reopenNanos >= 0) {
+            System.out.printf("  reopen:   %.2f ms%n", reopenNanos / 1e6);
+        }
+
+        System.out.printf("  hits:     %.1f ns/lookup%n", (double) hitNanos / lookups);
+        System.out.printf("  misses:   %.1f ns/lookup%n", (double) missNanos / lookups);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String randomId(Random random) {
+        char[] chars = new char[TrackIdSet.ID_LENGTH];
+
+        // a leading digit below '7' keeps the value within 128 bits, like real IDs
+        chars[0] = ALPHABET.charAt(random.nextInt(7));
+
+        for (int i = 1; i < chars.length; i++) {
+            chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        }
+
+        return new String(chars);
+    }
+}
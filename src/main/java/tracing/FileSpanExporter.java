@@ -0,0 +1,48 @@
+package tracing;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends one OTLP/JSON document per export to a file (NDJSON). The file is
+ * rolled over to "&lt;file&gt;.1" once it passes MAX_BYTES.
+ */
+final class FileSpanExporter implements SpanExporter {
+    private static final long MAX_BYTES = 64L * 1024 * 1024;
+
+    private final Path file;
+    private final String serviceName;
+
+    FileSpanExporter(Path file, String serviceName) {
+        this.file = file;
+        this.serviceName = serviceName;
+    }
+
+    @Override
+    public void export(List<Trace> traces) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+
+        if (Files.exists(file) && Files.size(file) > MAX_BYTES) {
+            Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND)) {
+            writer.write(OtlpJson.encode(traces, serviceName));
+            writer.write('\n');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package tracing;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * POSTs OTLP/JSON to a collector's /v1/traces endpoint (an OpenTelemetry
+ * collector, Jaeger, or any stand-in that accepts the same body).
+ */
+final class OtlpHttpSpanExporter implements SpanExporter {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final URI endpoint;
+    private final String serviceName;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+
+    OtlpHttpSpanExporter(URI endpoint, String serviceName) {
+        this.endpoint = endpoint;
+        this.serviceName = serviceName;
+    }
+
+    @Override
+    public void export(List<Trace> traces) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(OtlpJson.encode(traces, serviceName)))
+                .build();
+
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("Collector answered " + response.statusCode());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Interrupted while exporting traces", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return endpoint.toString();
+    }
+}
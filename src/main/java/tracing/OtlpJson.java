@@ -0,0 +1,83 @@
+package tracing;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import utils.Json;
+
+/**
+ * OTLP/JSON encoding (the body of POST /v1/traces), shared by the file and
+ * HTTP exporters so a trace file can be replayed into a collector as-is.
+ */
+final class OtlpJson {
+
+    // offset from System.nanoTime() to epoch nanos, fixed at startup
+    private static final long EPOCH_OFFSET_NANOS = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+
+    private OtlpJson() {
+    }
+
+    static String encode(List<Trace> traces, String serviceName) {
+        ObjectNode root = Json.mapper().createObjectNode();
+        ObjectNode resourceSpans = root.putArray("resourceSpans").addObject();
+
+        attribute(resourceSpans.putObject("resource").putArray("attributes"), "service.name", serviceName);
+
+        ObjectNode scopeSpans = resourceSpans.putArray("scopeSpans").addObject();
+        scopeSpans.putObject("scope").put("name", "tokenbot");
+
+        ArrayNode spans = scopeSpans.putArray("spans");
+
+        for (Trace trace : traces) {
+            String traceId = trace.traceId();
+
+            for (Span span : trace.getSpans()) {
+                ObjectNode node = spans.addObject();
+
+                node.put("traceId", traceId);
+                node.put("spanId", String.format("%016x", span.getSpanId()));
+
+                if (span.getParentId() != 0) {
+                    node.put("parentSpanId", String.format("%016x", span.getParentId()));
+                }
+
+                node.put("name", span.getName());
+                node.put("kind", (span.getParentId() == 0) ? 2 : 3); // SERVER for the root, CLIENT for calls
+                node.put("startTimeUnixNano", Long.toString(EPOCH_OFFSET_NANOS + span.getStartNanos()));
+                node.put("endTimeUnixNano", Long.toString(EPOCH_OFFSET_NANOS + span.getEndNanos()));
+
+                ArrayNode attributes = node.putArray("attributes");
+
+                for (Map.Entry<String, Object> entry : span.getAttributes().entrySet()) {
+                    attribute(attributes, entry.getKey(), entry.getValue());
+                }
+
+                if (span.getError() != null) {
+                    node.putObject("status").put("code", 2).put("message", span.getError());
+                }
+            }
+        }
+
+        return root.toString();
+    }
+
+    private static void attribute(ArrayNode attributes, String key, Object value) {
+        ObjectNode node = attributes.addObject();
+        node.put("key", key);
+
+        ObjectNode wrapped = node.putObject("value");
+
+        if (value instanceof Long || value instanceof Integer) {
+            wrapped.put("intValue", value.toString()); // int64 is a string in OTLP/JSON
+        } else if (value instanceof Number) {
+            wrapped.put("doubleValue", ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            wrapped.put("boolValue", (Boolean) value);
+        } else {
+            wrapped.put("stringValue", value.toString());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package tracing;
+
+/**
+ * Makes a span the current one on this thread until closed, then restores
+ * whatever was current before.
+ */
+public final class Scope implements AutoCloseable {
+    static final Scope NOOP = new Scope(null);
+
+    private final Span previous;
+
+    Scope(Span previous) {
+        this.previous = previous;
+    }
+
+    @Override
+    public void close() {
+        if (this != NOOP) {
+            Tracing.restore(previous);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One timed operation in a trace: the handling of a message, or a Spotify,
+ * database or Discord call made for it.
+ *
+ * Spans are cheap to create and only serialized if the trace is kept by tail
+ * sampling. Outside of a trace, {@link #NOOP} stands in and every method does
+ * nothing.
+ */
+public final class Span {
+    public static final Span NOOP = new Span(null, 0, 0, "noop");
+
+    private final Trace trace;
+    private final long spanId;
+    private final long parentId; // 0 for the root
+    private final String name;
+    private final long startNanos;
+    private volatile long endNanos;
+    private Map<String, Object> attributes; // guarded by this
+    private volatile String error;
+
+    Span(Trace trace, long spanId, long parentId, String name) {
+        this.trace = trace;
+        this.spanId = spanId;
+        this.parentId = parentId;
+        this.name = name;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the span active on this thread, or NOOP
+     */
+    public static Span current() {
+        return Tracing.current();
+    }
+
+    /**
+     * @return false for NOOP, which records nothing
+     */
+    public boolean isRecording() {
+        return trace != null;
+    }
+
+    public Span setAttribute(String key, Object value) {
+        if (trace != null && value != null) {
+            synchronized (this) {
+                if (attributes == null) {
+                    attributes = new LinkedHashMap<>();
+                }
+
+                attributes.put(key, value);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Mark the span as failed; failed traces are always kept.
+     */
+    public Span recordError(Throwable e) {
+        if (trace != null) {
+            while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+                e = e.getCause();
+            }
+
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+
+        return this;
+    }
+
+    /**
+     * Make this span current on the calling thread. Use in try-with-resources.
+     */
+    public Scope activate() {
+        return (trace != null) ? Tracing.activate(this) : Scope.NOOP;
+    }
+
+    /**
+     * End the span. Only the first call counts.
+     */
+    public void end() {
+        if (trace != null && endNanos == 0) {
+            endNanos = System.nanoTime();
+            trace.spanEnded(this);
+        }
+    }
+
+    // package-private -------
+
+    Span child(String childName) {
+        if (trace == null) {
+            return NOOP;
+        }
+
+        Span child = new Span(trace, ThreadLocalRandom.current().nextLong(), spanId, childName);
+        trace.spanStarted();
+
+        return child;
+    }
+
+    Trace getTrace() {
+        return trace;
+    }
+
+    long getSpanId() {
+        return spanId;
+    }
+
+    long getParentId() {
+        return parentId;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    long getEndNanos() {
+        return endNanos;
+    }
+
+    long durationNanos() {
+        return endNanos - startNanos;
+    }
+
+    String getError() {
+        return error;
+    }
+
+    synchronized Map<String, Object> getAttributes() {
+        return (attributes != null) ? new LinkedHashMap<>(attributes) : Collections.emptyMap();
+    }
+}
@@ -0,0 +1,11 @@
+package tracing;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Ships sampled traces somewhere. Called from the exporter thread only.
+ */
+interface SpanExporter {
+    void export(List<Trace> traces) throws IOException;
+}
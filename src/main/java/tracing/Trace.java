@@ -0,0 +1,84 @@
+package tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spans of one trace. The trace is complete once every span started in it
+ * has ended, which can be after the root ended (replies and role updates
+ * are queued after the message handler returns); only then does the tracer
+ * make its sampling decision. Spans that end after that are ignored.
+ */
+final class Trace {
+    private final long traceIdHigh;
+    private final long traceIdLow;
+    private final Tracer tracer;
+    private final AtomicInteger open = new AtomicInteger(1); // the root
+    private final AtomicBoolean completed = new AtomicBoolean(false);
+    private final List<Span> ended = new ArrayList<>(8); // guarded by this
+    private volatile boolean failed;
+
+    private Span root;
+
+    Trace(Tracer tracer) {
+        this.tracer = tracer;
+        this.traceIdHigh = ThreadLocalRandom.current().nextLong();
+        this.traceIdLow = ThreadLocalRandom.current().nextLong();
+    }
+
+    Span start(String name) {
+        root = new Span(this, ThreadLocalRandom.current().nextLong(), 0, name);
+
+        return root;
+    }
+
+    void spanStarted() {
+        open.incrementAndGet();
+    }
+
+    void spanEnded(Span span) {
+        synchronized (this) {
+            ended.add(span);
+        }
+
+        if (span.getError() != null) {
+            failed = true;
+        }
+
+        if (open.decrementAndGet() == 0 && completed.compareAndSet(false, true)) {
+            tracer.complete(this);
+        }
+    }
+
+    String traceId() {
+        return String.format("%016x%016x", traceIdHigh, traceIdLow);
+    }
+
+    Span getRoot() {
+        return root;
+    }
+
+    boolean isFailed() {
+        return failed;
+    }
+
+    synchronized List<Span> getSpans() {
+        return new ArrayList<>(ended);
+    }
+
+    /**
+     * @return root start to the last span's end
+     */
+    synchronized long durationNanos() {
+        long last = root.getStartNanos();
+
+        for (Span span : ended) {
+            last = Math.max(last, span.getEndNanos());
+        }
+
+        return last - root.getStartNanos();
+    }
+}
@@ -0,0 +1,173 @@
+package tracing;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import utils.Utility;
+
+/**
+ * Tail sampling and export of finished traces.
+ *
+ * A trace is kept if it took at least TRACE_SLOW_MS (default 2000) or any
+ * span failed; the rest are kept with probability TRACE_SAMPLE_RATE (default
+ * 0.01), so normal traffic only costs the span objects themselves. Slow traces
+ * also get a per-phase breakdown in the log. Kept traces are written by a
+ * background thread to TRACE_EXPORTER: an http(s) URL is treated as an OTLP
+ * collector endpoint, anything else as a file path, "off" disables tracing.
+ * The default is traces.ndjson in TOKENBOT_DATA_DIR.
+ */
+final class Tracer {
+    private static Tracer instance;
+
+    private static final Logger logger = LoggerFactory.getLogger(Tracer.class);
+    private static final String SERVICE_NAME = "tokenbot";
+    private static final int QUEUE_CAPACITY = 1024; // kept traces waiting for export, overflow is dropped
+    private static final int EXPORT_BATCH = 64;
+
+    private final boolean enabled;
+    private final long slowNanos;
+    private final double sampleRate;
+    private final SpanExporter exporter;
+    private final BlockingQueue<Trace> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    // constructor
+    private Tracer() {
+        String target = Utility.readFromDatabase("TRACE_EXPORTER");
+
+        slowNanos = TimeUnit.MILLISECONDS.toNanos(parseLong(Utility.readFromDatabase("TRACE_SLOW_MS"), 2000));
+        sampleRate = parseDouble(Utility.readFromDatabase("TRACE_SAMPLE_RATE"), 0.01);
+
+        if ("off".equalsIgnoreCase(target)) {
+            exporter = null;
+        } else if (target != null && (target.startsWith("http://") || target.startsWith("https://"))) {
+            exporter = new OtlpHttpSpanExporter(URI.create(target), SERVICE_NAME);
+        } else if (target != null && !target.isEmpty()) {
+            exporter = new FileSpanExporter(Paths.get(target), SERVICE_NAME);
+        } else {
+            exporter = new FileSpanExporter(
+                    Paths.get(System.getenv().getOrDefault("TOKENBOT_DATA_DIR", "data"), "traces.ndjson"),
+                    SERVICE_NAME);
+        }
+
+        enabled = exporter != null;
+
+        if (enabled) {
+            Thread thread = new Thread(this::exportLoop, "trace-exporter");
+            thread.setDaemon(true);
+            thread.start();
+
+            logger.info("Tracing to {} (slow: {} ms, sample rate: {})", exporter,
+                    TimeUnit.NANOSECONDS.toMillis(slowNanos), sampleRate);
+        }
+    }
+
+    static synchronized Tracer getInstance() {
+        if (instance == null) {
+            instance = new Tracer();
+        }
+
+        return instance;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Called once every span of the trace has ended.
+     */
+    void complete(Trace trace) {
+        long duration = trace.durationNanos();
+        boolean slow = duration >= slowNanos;
+
+        if (slow) {
+            logger.warn("Slow trace {} ({} ms): {}", trace.traceId(), TimeUnit.NANOSECONDS.toMillis(duration),
+                    breakdown(trace));
+        }
+
+        if (slow || trace.isFailed() || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            if (!queue.offer(trace)) {
+                logger.debug("Trace export queue full, dropped trace {}", trace.traceId());
+            }
+        }
+    }
+
+    // private functions -------
+
+    private void exportLoop() {
+        List<Trace> batch = new ArrayList<>(EXPORT_BATCH);
+
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, EXPORT_BATCH - 1);
+
+                exporter.export(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                logger.warn("Could not export {} traces: {}", batch.size(), e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // time per span name, in the order the phases started
+    private static String breakdown(Trace trace) {
+        List<Span> spans = trace.getSpans();
+        spans.sort((a, b) -> Long.compare(a.getStartNanos(), b.getStartNanos()));
+
+        Map<String, long[]> phases = new LinkedHashMap<>(); // name -> {total nanos, count}
+
+        for (Span span : spans) {
+            long[] phase = phases.computeIfAbsent(span.getName(), name -> new long[2]);
+            phase[0] += span.durationNanos();
+            phase[1]++;
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (Map.Entry<String, long[]> phase : phases.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(phase.getKey()).append(' ').append(TimeUnit.NANOSECONDS.toMillis(phase.getValue()[0]))
+                    .append(" ms");
+
+            if (phase.getValue()[1] > 1) {
+                sb.append(" x").append(phase.getValue()[1]);
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static long parseLong(String value, long fallback) {
+        try {
+            return (value != null) ? Long.parseLong(value.trim()) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static double parseDouble(String value, double fallback) {
+        try {
+            return (value != null) ? Double.parseDouble(value.trim()) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
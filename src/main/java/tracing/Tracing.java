@@ -0,0 +1,175 @@
+package tracing;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Entry points for tracing.
+ *
+ * The current span lives in a thread-local. Code running on the same thread
+ * just calls {@link #traceAsync} or {@link #trace}; continuations that run on
+ * another thread (CompletableFuture stages, executors) are wrapped with
+ * {@link #propagate} so they see the span that was current when they were
+ * created. Without a current span these calls record nothing.
+ */
+public final class Tracing {
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+
+    private Tracing() {
+    }
+
+    /**
+     * Read the tracing config and start the exporter now rather than on the
+     * first traced event.
+     */
+    public static void init() {
+        Tracer.getInstance();
+    }
+
+    /**
+     * Start a new trace. The caller ends the returned root span; the trace is
+     * sampled once the root and every child have ended.
+     *
+     * @return the root span, or NOOP if tracing is off
+     */
+    public static Span startTrace(String name) {
+        Tracer tracer = Tracer.getInstance();
+
+        return tracer.isEnabled() ? new Trace(tracer).start(name) : Span.NOOP;
+    }
+
+    /**
+     * @return a child of the current span (NOOP outside a trace); the caller ends it
+     */
+    public static Span startSpan(String name) {
+        return current().child(name);
+    }
+
+    /**
+     * Run an asynchronous operation in a child span of the current one. The
+     * span is current while the call is made and ends when the future does.
+     */
+    @SuppressWarnings("try")
+    public static <T> CompletableFuture<T> traceAsync(String name, Supplier<CompletableFuture<T>> call) {
+        Span span = startSpan(name);
+
+        if (!span.isRecording()) {
+            return call.get();
+        }
+
+        CompletableFuture<T> future;
+
+        try (Scope ignored = span.activate()) {
+            future = call.get();
+        } catch (RuntimeException e) {
+            span.recordError(e).end();
+
+            throw e;
+        }
+
+        return future.whenComplete((result, e) -> {
+            if (e != null) {
+                span.recordError(e);
+            }
+
+            span.end();
+        });
+    }
+
+    /**
+     * Run a blocking operation in a child span of the current one.
+     */
+    @SuppressWarnings("try")
+    public static <T> T trace(String name, Supplier<T> call) {
+        Span span = startSpan(name);
+
+        if (!span.isRecording()) {
+            return call.get();
+        }
+
+        try (Scope ignored = span.activate()) {
+            return call.get();
+        } catch (RuntimeException e) {
+            span.recordError(e);
+
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * @return the task, run with the span that is current now
+     */
+    @SuppressWarnings("try")
+    public static Runnable propagate(Runnable task) {
+        Span span = current();
+
+        if (!span.isRecording()) {
+            return task;
+        }
+
+        return () -> {
+            try (Scope ignored = span.activate()) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * @return the function, applied with the span that is current now
+     */
+    @SuppressWarnings("try")
+    public static <T, R> Function<T, R> propagate(Function<T, R> function) {
+        Span span = current();
+
+        if (!span.isRecording()) {
+            return function;
+        }
+
+        return value -> {
+            try (Scope ignored = span.activate()) {
+                return function.apply(value);
+            }
+        };
+    }
+
+    /**
+     * @return the function, applied with the span that is current now
+     */
+    @SuppressWarnings("try")
+    public static <T, U, R> BiFunction<T, U, R> propagate(BiFunction<T, U, R> function) {
+        Span span = current();
+
+        if (!span.isRecording()) {
+            return function;
+        }
+
+        return (first, second) -> {
+            try (Scope ignored = span.activate()) {
+                return function.apply(first, second);
+            }
+        };
+    }
+
+    // package-private -------
+
+    static Span current() {
+        Span span = CURRENT.get();
+
+        return (span != null) ? span : Span.NOOP;
+    }
+
+    static Scope activate(Span span) {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(span);
+
+        return scope;
+    }
+
+    static void restore(Span previous) {
+        CURRENT.set(previous);
+    }
+}
@@ -0,0 +1,23 @@
+package utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The shared Jackson mapper. It is created on first use, not when a class
+ * that might need it is loaded, and ObjectMapper is thread-safe once
+ * configured, so one instance serves the whole process.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    public static ObjectMapper mapper() {
+        return Holder.MAPPER;
+    }
+
+    // initialized by the JVM on the first mapper() call
+    private static final class Holder {
+        private static final ObjectMapper MAPPER = new ObjectMapper();
+    }
+}
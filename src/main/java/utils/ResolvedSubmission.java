@@ -0,0 +1,54 @@
+package utils;
+
+/**
+ * A submission that has been reviewed, as stored in submission_history.
+ */
+public class ResolvedSubmission {
+    private static final long DISCORD_EPOCH = 1420070400000L;
+
+    private final Submission submission;
+    private final SubmissionOutcome outcome;
+    private final long submittedAt; // epoch millis
+    private final long resolvedAt; // epoch millis
+
+    public ResolvedSubmission(Submission submission, SubmissionOutcome outcome, long submittedAt, long resolvedAt) {
+        this.submission = submission;
+        this.outcome = outcome;
+        this.submittedAt = submittedAt;
+        this.resolvedAt = resolvedAt;
+    }
+
+    /**
+     * Resolve a submission now. The submission time is read from the Discord
+     * message snowflake, falling back to now if there's no usable message ID.
+     */
+    public static ResolvedSubmission of(Submission submission, SubmissionOutcome outcome) {
+        long now = System.currentTimeMillis();
+
+        return new ResolvedSubmission(submission, outcome, snowflakeTime(submission.getMessageId(), now), now);
+    }
+
+    public Submission getSubmission() {
+        return this.submission;
+    }
+
+    public SubmissionOutcome getOutcome() {
+        return this.outcome;
+    }
+
+    public long getSubmittedAt() {
+        return this.submittedAt;
+    }
+
+    public long getResolvedAt() {
+        return this.resolvedAt;
+    }
+
+    private static long snowflakeTime(String messageId, long fallback) {
+        try {
+            return (Long.parseLong(messageId) >>> 22) + DISCORD_EPOCH;
+        } catch (NumberFormatException | NullPointerException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.concrete.PrivateChannel;
+import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import metrics.Metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends self-deleting direct messages.
+ *
+ * Private channels are cached per user ID (LRU with an idle timeout) so a
+ * repeat DM does not need another openPrivateChannel() round trip, and all
+ * pending deletions share one timing wheel instead of one scheduled future
+ * per message on JDA's rate-limit scheduler.
+ */
+public class SecretMessageService {
+    private static SecretMessageService instance;
+
+    private static final Logger logger = LoggerFactory.getLogger(SecretMessageService.class);
+    private static final int MAX_CACHED_CHANNELS = 1000;
+    private static final long CHANNEL_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final Map<Long, CachedChannel> channels;
+    private final TimingWheel deletions;
+
+    // constructor
+    private SecretMessageService() {
+        // access-ordered so the eldest entry is the least recently used one
+        channels = new LinkedHashMap<>(64, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedChannel> eldest) {
+                return size() > MAX_CACHED_CHANNELS;
+            }
+        };
+
+        // 1 second resolution, 512 buckets covers ~8.5 minutes per round
+        deletions = new TimingWheel("secret-message-deletions", 1000, 512);
+
+        Metrics.gauge("secret_message_deletions", deletions::pendingCount);
+    }
+
+    public static synchronized SecretMessageService getInstance() {
+        if (instance == null) {
+            instance = new SecretMessageService();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Sends a direct message to the user and deletes it after the given time.
+     *
+     * @param user    recipient
+     * @param content message content
+     * @param time    seconds before the message is deleted
+     */
+    public void send(User user, @Nonnull String content, int time) {
+        long userId = user.getIdLong();
+        PrivateChannel cached = cachedChannel(userId);
+
+        RestAction<Message> action = (cached != null)
+                ? cached.sendMessage(content)
+                : user.openPrivateChannel() // RestAction<PrivateChannel>
+                        .map(channel -> cache(userId, channel))
+                        .flatMap(channel -> channel.sendMessage(content)); // RestAction<Message>
+
+        action.queue(message -> scheduleDeletion(message, time), throwable -> {
+            // drop the cached channel in case it went stale
+            evict(userId);
+
+            logger.debug("Failed to send secret message: {}", throwable.getMessage());
+        });
+    }
+
+    /**
+     * @return number of DMs waiting to be deleted
+     */
+    public int pendingDeletions() {
+        return deletions.pendingCount();
+    }
+
+    // private functions -------
+    private void scheduleDeletion(Message message, int time) {
+        MessageChannel channel = message.getChannel();
+        long messageId = message.getIdLong();
+
+        deletions.schedule(() -> channel.deleteMessageById(messageId).queue(null, throwable -> {
+            // message may already be gone (user closed DMs, etc.)
+            logger.debug("Failed to delete secret message: {}", throwable.getMessage());
+        }), time, TimeUnit.SECONDS);
+    }
+
+    private PrivateChannel cachedChannel(long userId) {
+        long now = System.currentTimeMillis();
+
+        synchronized (channels) {
+            CachedChannel cached = channels.get(userId);
+
+            if (cached == null) {
+                return null;
+            }
+
+            if (now - cached.lastUsed >= CHANNEL_IDLE_MILLIS) {
+                channels.remove(userId);
+
+                return null;
+            }
+
+            cached.lastUsed = now;
+
+            return cached.channel;
+        }
+    }
+
+    private PrivateChannel cache(long userId, PrivateChannel channel) {
+        synchronized (channels) {
+            channels.put(userId, new CachedChannel(channel, System.currentTimeMillis()));
+        }
+
+        return channel;
+    }
+
+    private void evict(long userId) {
+        synchronized (channels) {
+            channels.remove(userId);
+        }
+    }
+
+    private static final class CachedChannel {
+        private final PrivateChannel channel;
+        private long lastUsed;
+
+        private CachedChannel(PrivateChannel channel, long lastUsed) {
+            this.channel = channel;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Spotify link rules shared by the submission channel and the intake
+ * endpoint: spotify:type:id URIs and open/play.spotify.com links for
+ * albums, tracks and playlists.
+ */
+public final class SpotifyLinks {
+    // group 1/2: URI type and ID, group 3: whole link, group 4/5: link type and ID
+    public static final Pattern PATTERN = Pattern.compile(
+            "(?:spotify:(album|track|playlist):([^\\s?]+)|(https?://(?:open|play)\\.spotify\\.com/(album|track|playlist)/([^\\s?]+)))");
+
+    private static final Pattern ID = Pattern.compile("[a-zA-Z0-9]+");
+
+    private SpotifyLinks() {
+    }
+
+    /**
+     * @param matcher matcher of {@link #PATTERN} positioned on a match
+     * @return album, track or playlist
+     */
+    public static String contentType(Matcher matcher) {
+        return (matcher.group(1) != null) ? matcher.group(1) : matcher.group(4);
+    }
+
+    /**
+     * @param text message
+     * @return every Spotify link or URI in the text, in order
+     */
+    public static List<String> links(String text) {
+        List<String> links = new ArrayList<>();
+
+        if (text == null) {
+            return links;
+        }
+
+        Matcher matcher = PATTERN.matcher(text);
+
+        while (matcher.find()) {
+            links.add(matcher.group(0));
+        }
+
+        return links;
+    }
+
+    /**
+     * @param text message or link
+     * @return the track ID of the first Spotify link in the text, or null if
+     *         the first link is missing, not a track or has no usable ID
+     */
+    public static String trackId(String text) {
+        if (text == null) {
+            return null;
+        }
+
+        Matcher matcher = PATTERN.matcher(text);
+
+        if (!matcher.find() || !"track".equals(contentType(matcher))) {
+            return null;
+        }
+
+        String rawId = (matcher.group(2) != null) ? matcher.group(2) : matcher.group(5);
+
+        // links pasted in chat often carry trailing punctuation, keep the base62 part
+        Matcher id = ID.matcher(rawId);
+
+        return id.lookingAt() ? id.group() : null;
+    }
+}
@@ -0,0 +1,310 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import index.TrackIdSet;
+
+/**
+ * A page of submissions stored by column instead of one Submission per row:
+ * submission IDs in an int[], user and message snowflakes in long[]s, and
+ * track IDs as int codes into a dictionary of the distinct IDs in the batch.
+ *
+ * Reconciliation then looks up each distinct track once and fills a byte
+ * per row, without creating anything per row or hashing the same string
+ * twice. Only the rows that turn out resolved are turned back into objects.
+ *
+ * User and message IDs that aren't snowflakes (intake submissions can carry
+ * any string) are kept in a side column that only exists when needed.
+ */
+public final class SubmissionBatch {
+    public static final byte PENDING = 0;
+    public static final byte APPROVED = 1;
+    public static final byte REMOVED = 2;
+
+    private static final long NONE = 0; // no message
+    private static final long OTHER = -1; // not a snowflake, see the side column
+    private static final String MAX_SNOWFLAKE = Long.toString(Long.MAX_VALUE);
+
+    private final int size;
+    private final int[] submissionIds;
+    private final long[] userIds;
+    private final long[] messageIds;
+    private final int[] trackCodes;
+    private final String[] tracks; // code -> track ID
+    private final String[] otherUserIds; // null unless some user ID isn't a snowflake
+    private final String[] otherMessageIds;
+
+    private SubmissionBatch(Builder builder) {
+        this.size = builder.size;
+        this.submissionIds = builder.submissionIds;
+        this.userIds = builder.userIds;
+        this.messageIds = builder.messageIds;
+        this.trackCodes = builder.trackCodes;
+        this.tracks = builder.tracks;
+        this.otherUserIds = builder.otherUserIds;
+        this.otherMessageIds = builder.otherMessageIds;
+    }
+
+    public static Builder builder(int capacity) {
+        return new Builder(capacity);
+    }
+
+    public static SubmissionBatch of(List<Submission> submissions) {
+        Builder builder = new Builder(submissions.size());
+
+        for (Submission submission : submissions) {
+            builder.add(submission.getSubmissionId(), submission.getTrackId(), submission.getUserId(),
+                    submission.getMessageId());
+        }
+
+        return builder.build();
+    }
+
+    // public functions -------
+
+    /**
+     * Check every row against the playlists.
+     *
+     * @param approved approved track IDs
+     * @param queued   track IDs in the submissions playlist
+     * @return one outcome per row: PENDING (still queued), APPROVED or
+     *         REMOVED
+     */
+    public byte[] reconcile(TrackIdSet approved, Set<String> queued) {
+        byte[] byTrack = new byte[tracks.length];
+
+        for (int code = 0; code < tracks.length; code++) {
+            String trackId = tracks[code];
+
+            byTrack[code] = approved.contains(trackId) ? APPROVED : queued.contains(trackId) ? PENDING : REMOVED;
+        }
+
+        byte[] outcomes = new byte[size];
+
+        for (int i = 0; i < size; i++) {
+            outcomes[i] = byTrack[trackCodes[i]];
+        }
+
+        return outcomes;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of distinct track IDs
+     */
+    public int distinctTracks() {
+        return tracks.length;
+    }
+
+    public int getSubmissionId(int row) {
+        return submissionIds[row];
+    }
+
+    /**
+     * @return submission ID of the last row, 0 if empty
+     */
+    public int getLastSubmissionId() {
+        return (size > 0) ? submissionIds[size - 1] : 0;
+    }
+
+    public String getTrackId(int row) {
+        return tracks[trackCodes[row]];
+    }
+
+    public String getUserId(int row) {
+        return text(userIds[row], otherUserIds, row);
+    }
+
+    /**
+     * @return the message ID, null if the submission has none
+     */
+    public String getMessageId(int row) {
+        return text(messageIds[row], otherMessageIds, row);
+    }
+
+    public Submission toSubmission(int row) {
+        return new Submission(getTrackId(row), getUserId(row), getMessageId(row), submissionIds[row]);
+    }
+
+    // private functions -------
+
+    private static String text(long snowflake, String[] other, int row) {
+        if (snowflake == OTHER) {
+            return other[row];
+        }
+
+        return (snowflake == NONE) ? null : Long.toString(snowflake);
+    }
+
+    // Discord IDs are positive 64-bit integers without leading zeros
+    private static long snowflake(String id) {
+        if (id == null || id.isEmpty() || id.length() > 19 || id.charAt(0) == '0'
+                || (id.length() == 19 && id.compareTo(MAX_SNOWFLAKE) > 0)) {
+            return OTHER;
+        }
+
+        long value = 0;
+
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return OTHER;
+            }
+
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    /**
+     * Rows in submission ID order, as the repository reads them.
+     */
+    public static final class Builder {
+        private int size;
+        private int[] submissionIds;
+        private long[] userIds;
+        private long[] messageIds;
+        private int[] trackCodes;
+        private String[] tracks = new String[16];
+        private String[] otherUserIds;
+        private String[] otherMessageIds;
+        private int distinct;
+        private long[] slots = new long[32]; // open addressing, hash << 32 | track code + 1, 0 is empty
+
+        private Builder(int capacity) {
+            capacity = Math.max(capacity, 1);
+
+            submissionIds = new int[capacity];
+            userIds = new long[capacity];
+            messageIds = new long[capacity];
+            trackCodes = new int[capacity];
+        }
+
+        public Builder add(int submissionId, String trackId, String userId, String messageId) {
+            if (size == submissionIds.length) {
+                grow();
+            }
+
+            submissionIds[size] = submissionId;
+            trackCodes[size] = code(trackId);
+            userIds[size] = snowflake(userId);
+            messageIds[size] = (messageId == null) ? NONE : snowflake(messageId);
+
+            if (userIds[size] == OTHER) {
+                otherUserIds = column(otherUserIds);
+                otherUserIds[size] = userId;
+            }
+
+            if (messageIds[size] == OTHER) {
+                otherMessageIds = column(otherMessageIds);
+                otherMessageIds[size] = messageId;
+            }
+
+            size++;
+
+            return this;
+        }
+
+        public SubmissionBatch build() {
+            tracks = Arrays.copyOf(tracks, distinct);
+
+            return new SubmissionBatch(this);
+        }
+
+        // code of a track ID, assigning the next one the first time it's seen
+        private int code(String trackId) {
+            int hash = mix(trackId.hashCode());
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+
+            // the stored hash settles most mismatches without touching the string
+            while (slots[slot] != 0) {
+                int code = (int) slots[slot] - 1;
+
+                if ((int) (slots[slot] >>> 32) == hash && tracks[code].equals(trackId)) {
+                    return code;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+
+            int code = distinct++;
+
+            if (code == tracks.length) {
+                tracks = Arrays.copyOf(tracks, code * 2);
+            }
+
+            tracks[code] = trackId;
+            slots[slot] = entry(hash, code);
+
+            // keep the table at most half full
+            if (distinct * 2 > slots.length) {
+                rehash();
+            }
+
+            return code;
+        }
+
+        private void rehash() {
+            long[] bigger = new long[slots.length * 2];
+            int mask = bigger.length - 1;
+
+            for (long entry : slots) {
+                if (entry != 0) {
+                    int slot = (int) (entry >>> 32) & mask;
+
+                    while (bigger[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+
+                    bigger[slot] = entry;
+                }
+            }
+
+            slots = bigger;
+        }
+
+        private static long entry(int hash, int code) {
+            return ((long) hash << 32) | (code + 1);
+        }
+
+        // spread String.hashCode so the low bits used for the slot vary
+        private static int mix(int hash) {
+            hash *= 0x9E3779B9;
+
+            return hash ^ (hash >>> 16);
+        }
+
+        private void grow() {
+            int capacity = submissionIds.length * 2;
+
+            submissionIds = Arrays.copyOf(submissionIds, capacity);
+            userIds = Arrays.copyOf(userIds, capacity);
+            messageIds = Arrays.copyOf(messageIds, capacity);
+            trackCodes = Arrays.copyOf(trackCodes, capacity);
+
+            if (otherUserIds != null) {
+                otherUserIds = Arrays.copyOf(otherUserIds, capacity);
+            }
+
+            if (otherMessageIds != null) {
+                otherMessageIds = Arrays.copyOf(otherMessageIds, capacity);
+            }
+        }
+
+        private String[] column(String[] existing) {
+            return (existing != null) ? existing : new String[submissionIds.length];
+        }
+    }
+}
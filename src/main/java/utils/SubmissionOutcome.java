@@ -0,0 +1,9 @@
+package utils;
+
+/**
+ * How a submission left the review queue.
+ */
+public enum SubmissionOutcome {
+    APPROVED, // track made it into the approved playlist
+    REMOVED // track was taken out of the submissions playlist (rejected/removed)
+}
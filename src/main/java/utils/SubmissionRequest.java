@@ -0,0 +1,31 @@
+package utils;
+
+/**
+ * A track submission that did not come through the submission channel (the
+ * intake endpoint, bulk imports). messageId is null when there is no Discord
+ * message to react to.
+ */
+public class SubmissionRequest {
+    private final String link;
+    private final String userId;
+    private final String messageId;
+
+    public SubmissionRequest(String link, String userId, String messageId) {
+        this.link = link;
+        this.userId = userId;
+        this.messageId = messageId;
+    }
+
+    public String getLink() {
+        return this.link;
+    }
+
+    public String getUserId() {
+        return this.userId;
+    }
+
+    public String getMessageId() {
+        return this.messageId;
+    }
+
+}
@@ -0,0 +1,60 @@
+package utils;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one item of a batch submission.
+ */
+public class SubmissionResult {
+    public enum Status {
+        ACCEPTED, // added to the submissions playlist
+        INVALID, // not a Spotify track link, or no submitter
+        NOT_FOUND, // track ID does not exist
+        DUPLICATE, // already queued, approved, or earlier in the same batch
+        FAILED // Spotify or database error, safe to retry
+    }
+
+    private final int index;
+    private final String trackId;
+    private final Status status;
+    private final String message;
+    private final Integer sameAs;
+
+    public SubmissionResult(int index, String trackId, Status status, String message) {
+        this(index, trackId, status, message, null);
+    }
+
+    public SubmissionResult(int index, String trackId, Status status, String message, Integer sameAs) {
+        this.index = index;
+        this.trackId = trackId;
+        this.status = status;
+        this.message = message;
+        this.sameAs = sameAs;
+    }
+
+    public int getIndex() {
+        return this.index;
+    }
+
+    public String getTrackId() {
+        return this.trackId;
+    }
+
+    public Status getStatus() {
+        return this.status;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+
+    /**
+     * @return index of the earlier item in the batch this one repeats, or
+     *         null if it is not a repeat within the batch
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Integer getSameAs() {
+        return this.sameAs;
+    }
+
+}
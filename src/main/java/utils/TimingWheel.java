@@ -0,0 +1,136 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timing wheel for cheap, coarse-grained delayed tasks.
+ *
+ * All pending tasks share a single ticking thread, so scheduling a task is an
+ * O(1) enqueue regardless of how many tasks are already waiting. Tasks run on
+ * the wheel thread and should only hand work off (e.g. queue a RestAction).
+ */
+public class TimingWheel {
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+
+    private final long tickMillis;
+    private final int mask;
+    private final List<LinkedList<Timeout>> buckets; // only touched by the wheel thread
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ScheduledExecutorService ticker;
+    private long tick; // current tick, only touched by the wheel thread
+
+    /**
+     * @param name        name of the ticking thread
+     * @param tickMillis  duration of one tick (resolution of the wheel)
+     * @param wheelSize   number of buckets, rounded up to a power of two
+     */
+    public TimingWheel(String name, long tickMillis, int wheelSize) {
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.buckets = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            buckets.add(new LinkedList<>());
+        }
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedule a task to run after (roughly) the given delay. Precision is one
+     * tick.
+     *
+     * @param task  task to run on the wheel thread
+     * @param delay delay before running
+     * @param unit  unit of the delay
+     */
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        long ticks = Math.max(1, (unit.toMillis(delay) + tickMillis - 1) / tickMillis);
+
+        incoming.add(new Timeout(task, ticks));
+        pending.incrementAndGet();
+    }
+
+    /**
+     * @return number of tasks scheduled but not yet run
+     */
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    // private functions -------
+    private void advance() {
+        try {
+            // place newly scheduled tasks relative to the current tick
+            Timeout timeout;
+
+            while ((timeout = incoming.poll()) != null) {
+                long deadline = tick + timeout.ticks;
+
+                timeout.rounds = (timeout.ticks - 1) / buckets.size();
+                buckets.get((int) (deadline & mask)).add(timeout);
+            }
+
+            tick++;
+
+            Iterator<Timeout> it = buckets.get((int) (tick & mask)).iterator();
+
+            while (it.hasNext()) {
+                Timeout current = it.next();
+
+                if (current.rounds > 0) {
+                    current.rounds--;
+                    continue;
+                }
+
+                it.remove();
+                pending.decrementAndGet();
+
+                try {
+                    current.task.run();
+                } catch (RuntimeException e) {
+                    logger.debug("Timing wheel task failed: {}", e.getMessage());
+                }
+            }
+        } catch (Throwable t) {
+            // never let the ticker die, it would silently stop every pending task
+            logger.error("Timing wheel tick failed: {}", t.getMessage());
+        }
+    }
+
+    private static final class Timeout {
+        private final Runnable task;
+        private final long ticks;
+        private long rounds;
+
+        private Timeout(Runnable task, long ticks) {
+            this.task = task;
+            this.ticks = ticks;
+        }
+    }
+}
@@ -2,27 +2,30 @@ package utils;
 
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import javax.annotation.Nonnull;
 
 import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.requests.RestAction;
 
+import coordination.Coordination;
+import repository.Repositories;
+import stats.SubmissionStats;
+import tracing.Tracing;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class Utility {
     private static final Properties properties = new Properties();
@@ -32,25 +35,16 @@ public class Utility {
 
     /**
      * Sends a direct message to the user. Delete after a given amount of time.
-     * Handles errors gracefully to prevent memory leaks from failed deletions.
+     * Private channels are cached and deletions go through a single timing
+     * wheel (see SecretMessageService), so bursts of DMs don't pile up
+     * scheduled tasks.
      *
      * @param user    the submitting user
      * @param content private message sent by bot to user
      * @param time    time before message deletion
      */
     public static void sendSecretMessage(User user, @Nonnull String content, int time) {
-        user.openPrivateChannel() // RestAction<PrivateChannel>
-                .flatMap(channel -> channel.sendMessage(content)) // RestAction<Message>
-                .queue(message -> {
-                    // Schedule deletion with proper error handling to prevent memory leaks
-                    message.delete().queueAfter(time, TimeUnit.SECONDS, null, throwable -> {
-                        // Silently handle deletion failures - prevents memory accumulation
-                        logger.debug("Failed to delete secret message: {}", throwable.getMessage());
-                    });
-                }, throwable -> {
-                    // Handle message send failures to prevent hanging tasks
-                    logger.debug("Failed to send secret message: {}", throwable.getMessage());
-                });
+        SecretMessageService.getInstance().send(user, content, time);
     }
 
     public static void saveToFile(String key, String value) {
@@ -75,146 +69,158 @@ public class Utility {
         }
     }
 
+    /**
+     * Blocking write of a config value, for startup and background threads.
+     * Event threads use {@link Repositories#get()} instead.
+     *
+     * @throws IllegalStateException on a repository thread
+     */
     public static void saveToDatabase(String key, String value) {
-        String sql = "INSERT INTO config(key, value) VALUES(?, ?) ON CONFLICT (key) DO UPDATE SET value = ?";
-
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, key);
-            stmt.setString(2, value);
-            stmt.setString(3, value);
+        checkBlockingAllowed();
 
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.error("Error: " + e.getMessage());
+        try {
+            Repositories.get().saveConfig(key, value).join();
+        } catch (CompletionException e) {
+            logger.error("Error: {}", unwrap(e).getMessage());
         }
     }
 
+    /**
+     * Blocking read of a config value, for startup and background threads.
+     * Event threads use {@link Repositories#get()} instead.
+     *
+     * @throws IllegalStateException on a repository thread
+     */
     public static String readFromDatabase(String key) {
-        String sql = "SELECT value FROM config WHERE key = ?";
-
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, key);
+        checkBlockingAllowed();
 
-            ResultSet rs = stmt.executeQuery();
+        try {
+            return Repositories.get().readConfig(key).join();
+        } catch (CompletionException e) {
+            logger.error("Error: {}", unwrap(e).getMessage());
 
-            if (rs.next()) {
-                return rs.getString("value");
-            }
-        } catch (SQLException e) {
-            logger.error("Error: " + e.getMessage());
+            return null;
         }
-
-        return null;
     }
 
+    /**
+     * Queues a submission insert and counts it in the submission stats; does
+     * not wait for the database.
+     */
     public static void saveTrackSubmission(String trackId, String userId, String messageId) {
-        String sql = "INSERT INTO submissions (trackid, userid, messageid) VALUES (?, ?, ?)";
-
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql)) {
+        SubmissionStats.getInstance().recordSubmission(userId, System.currentTimeMillis());
 
-            stmt.setString(1, trackId);
-            stmt.setString(2, userId);
-            stmt.setString(3, messageId);
+        Repositories.get().saveSubmission(trackId, userId, messageId)
+                .exceptionally(e -> {
+                    logger.error("Error saving track submission: {}", unwrap(e).getMessage());
 
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.error("Error saving track submission: " + e.getMessage());
-        }
+                    return null;
+                });
     }
 
     /**
-     * Deletes a submission from the database based on its submission ID.
+     * Deletes a submission from the database based on its submission ID. The
+     * delete is queued; this does not wait for the database.
      * 
      * @param submissionId The ID of the submission to delete.
      */
     public static void deleteSubmission(int submissionId) {
-        String sql = "DELETE FROM submissions WHERE submissionid = ?";
-
-        try (Connection conn = getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        Repositories.get().deleteSubmission(submissionId)
+                .exceptionally(e -> {
+                    logger.error("Error deleting submission: {}", unwrap(e).getMessage());
 
-            pstmt.setInt(1, submissionId);
-            pstmt.executeUpdate();
-        } catch (SQLException e) {
-            logger.error("Error deleting submission: " + e.getMessage());
-        }
+                    return null;
+                });
     }
 
+    /**
+     * Blocking read of every pending submission.
+     *
+     * @throws IllegalStateException on a repository thread
+     */
     public static List<Submission> fetchAllSubmissions() {
-        List<Submission> submissions = new ArrayList<>();
-
-        String sql = "SELECT trackid, userid, messageid, submissionid FROM submissions";
-
-        try (Connection conn = getConnection();
-                PreparedStatement stmt = conn.prepareStatement(sql);
-                ResultSet rs = stmt.executeQuery()) {
+        checkBlockingAllowed();
 
-            while (rs.next()) {
-                String trackId = rs.getString("trackid");
-                String userId = rs.getString("userid");
-                String messageId = rs.getString("messageid");
-                int submissionId = rs.getInt("submissionid");
+        try {
+            return Repositories.get().fetchAllSubmissions().join();
+        } catch (CompletionException e) {
+            logger.error("Error fetching all submissions: {}", unwrap(e).getMessage());
 
-                submissions.add(new Submission(trackId, userId, messageId, submissionId));
-            }
-        } catch (SQLException e) {
-            logger.error("Error fetching all submissions: " + e.getMessage());
+            return new ArrayList<>();
         }
-
-        return submissions;
     }
 
     public static CuratorList readCuratorsFromDatabase() {
         String json = readFromDatabase("CURATORS");
 
-        ObjectMapper mapper = new ObjectMapper();
-
         try {
-            return mapper.readValue(json, CuratorList.class);
+            return Json.mapper().readValue(json, CuratorList.class);
         } catch (JsonProcessingException e) {
             // Handle the exception
             return null;
         }
     }
 
+    /**
+     * Run the action only on the replica that claims the event's message, so a
+     * message is handled once no matter how many replicas are running.
+     *
+     * @param event  message event
+     * @param action work to do for the message
+     */
+    public static void runIfClaimed(MessageReceivedEvent event, Runnable action) {
+        runIfClaimedAsync(event, () -> {
+            action.run();
+
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Like {@link #runIfClaimed(MessageReceivedEvent, Runnable)}, for handlers
+     * that finish asynchronously. The claim and the handler run in the current
+     * trace, if any.
+     *
+     * @param event  message event
+     * @param action work to do for the message
+     * @return future completing once the handler's future does (or right away
+     *         if another replica claimed the message); never exceptional
+     */
+    public static CompletableFuture<Void> runIfClaimedAsync(MessageReceivedEvent event,
+            Supplier<CompletableFuture<Void>> action) {
+        Function<Boolean, CompletableFuture<Void>> handle = Tracing
+                .propagate(claimed -> claimed ? action.get() : CompletableFuture.completedFuture(null));
+
+        return Tracing.traceAsync("coordination.claimMessage",
+                () -> Coordination.get().claimMessage(event.getMessageId()))
+                .thenCompose(handle)
+                .exceptionally(e -> {
+                    logger.error("Error handling message: {}", unwrap(e).getMessage());
+
+                    return null;
+                });
+    }
+
     public static boolean isCurator(List<Curator> curators, User user) {
         return curators.stream().anyMatch(curator -> curator.getId().equals(user.getId()));
     }
 
     // private functions -------
-    private static Connection getConnection() throws SQLException {
-        String dbUrl = toJdbcUrl(System.getenv("DATABASE_URL"));
 
-        return DriverManager.getConnection(dbUrl);
+    // a repository thread waiting on its own pool can deadlock it
+    private static void checkBlockingAllowed() {
+        if (Repositories.isRepositoryThread()) {
+            throw new IllegalStateException("Blocking database call on repository thread "
+                    + Thread.currentThread().getName());
+        }
     }
 
-    private static String toJdbcUrl(String databaseUrl) {
-        if (databaseUrl == null || !databaseUrl.startsWith("postgresql://")) {
-            return null;
+    private static Throwable unwrap(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
         }
 
-        int protocolEnd = databaseUrl.indexOf("://");
-        int credentialsEnd = databaseUrl.lastIndexOf("@");
-
-        String credentials = databaseUrl.substring(protocolEnd + 3, credentialsEnd);
-        String[] splitCredentials = credentials.split(":");
-
-        String user = splitCredentials[0];
-        String password = splitCredentials[1];
-
-        String afterCredentials = databaseUrl.substring(credentialsEnd + 1);
-        String host = afterCredentials.substring(0, afterCredentials.indexOf(":"));
-        String portAndDatabase = afterCredentials.substring(afterCredentials.indexOf(":") + 1);
-
-        String jdbcUrl = "jdbc:postgresql://" + host + ":" + portAndDatabase + "?user=" + user + "&password="
-                + password;
-
-        return jdbcUrl;
+        return e;
     }
 
 }
@@ -0,0 +1,64 @@
+-- Everything the bot used before migrations existed. Written to be a no-op on
+-- databases that already have these tables, so existing environments adopt
+-- the history without changes.
+
+-- configuration key/value pairs (see utils.Utility.readFromDatabase)
+CREATE TABLE IF NOT EXISTS config (
+    key TEXT PRIMARY KEY,
+    value TEXT
+);
+
+-- submissions waiting for review
+CREATE TABLE IF NOT EXISTS submissions (
+    submissionid SERIAL PRIMARY KEY,
+    trackid TEXT NOT NULL,
+    userid TEXT NOT NULL,
+    messageid TEXT
+);
+
+CREATE TABLE IF NOT EXISTS user_stats (
+    userid TEXT PRIMARY KEY,
+    submitted INT NOT NULL DEFAULT 0,
+    approved INT NOT NULL DEFAULT 0,
+    rejected INT NOT NULL DEFAULT 0,
+    current_streak INT NOT NULL DEFAULT 0,
+    best_streak INT NOT NULL DEFAULT 0,
+    last_submitted_at BIGINT NOT NULL DEFAULT 0
+);
+
+-- resolved submissions, one partition per month of resolved_at
+-- (see PostgresRepository.ensureHistoryPartition)
+CREATE TABLE IF NOT EXISTS submission_history (
+    submissionid INT NOT NULL,
+    trackid TEXT NOT NULL,
+    userid TEXT NOT NULL,
+    messageid TEXT,
+    outcome TEXT NOT NULL,
+    submitted_at TIMESTAMPTZ NOT NULL,
+    resolved_at TIMESTAMPTZ NOT NULL
+) PARTITION BY RANGE (resolved_at);
+
+CREATE INDEX IF NOT EXISTS submission_history_userid_idx ON submission_history (userid, resolved_at);
+
+-- duplicate index, one row per track per playlist (see index.DuplicateIndex)
+CREATE TABLE IF NOT EXISTS track_index (
+    source TEXT NOT NULL,
+    trackid TEXT NOT NULL,
+    isrc TEXT,
+    artist_key TEXT NOT NULL,
+    title_key TEXT NOT NULL,
+    PRIMARY KEY (source, trackid)
+);
+
+-- replica coordination (see coordination.PostgresCoordinator)
+CREATE TABLE IF NOT EXISTS leases (
+    name TEXT PRIMARY KEY,
+    owner TEXT NOT NULL,
+    expires_at TIMESTAMPTZ NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS message_claims (
+    messageid TEXT PRIMARY KEY,
+    owner TEXT NOT NULL,
+    claimed_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
@@ -0,0 +1,32 @@
+-- Keys and indexes for config and submissions, which were created by hand in
+-- older environments and may lack them.
+
+-- config: one row per key (the upsert in saveConfig relies on it); keep the
+-- newest row of any duplicates
+DO $$ BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_index WHERE indrelid = 'config'::regclass AND indisprimary) THEN
+        DELETE FROM config a USING config b WHERE a.key = b.key AND a.ctid < b.ctid;
+        ALTER TABLE config ADD PRIMARY KEY (key);
+    END IF;
+END $$;
+
+-- submissions: paged and deleted by submissionid
+DO $$ BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_index WHERE indrelid = 'submissions'::regclass AND indisprimary) THEN
+        ALTER TABLE submissions ADD PRIMARY KEY (submissionid);
+    END IF;
+END $$;
+
+-- one row per Discord message (intake rows have none); rows left by earlier
+-- double deliveries are dropped, keeping the first, before the constraint
+-- goes on
+DO $$ BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_indexes WHERE indexname = 'submissions_messageid_key') THEN
+        DELETE FROM submissions a USING submissions b
+            WHERE a.messageid = b.messageid AND a.submissionid > b.submissionid;
+        CREATE UNIQUE INDEX submissions_messageid_key ON submissions (messageid);
+    END IF;
+END $$;
+
+-- duplicate checks, ]approve/]reject and reconciliation look submissions up by track
+CREATE INDEX IF NOT EXISTS submissions_trackid_idx ON submissions (trackid);
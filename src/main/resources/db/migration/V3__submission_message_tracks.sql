@@ -0,0 +1,8 @@
+-- a message may submit several tracks: one row per track of a message rather
+-- than one per message (intake rows have no message and are not constrained)
+CREATE UNIQUE INDEX IF NOT EXISTS submissions_message_track_key ON submissions (messageid, trackid);
+
+DROP INDEX IF EXISTS submissions_messageid_key;
+
+-- ]approve/]reject by message still look rows up by messageid
+CREATE INDEX IF NOT EXISTS submissions_messageid_idx ON submissions (messageid);
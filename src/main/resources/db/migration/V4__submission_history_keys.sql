@@ -0,0 +1,19 @@
+-- submission_history: one row per submission. The table is partitioned by
+-- resolved_at, so the key lives on each partition (new partitions get it in
+-- PostgresRepository.ensureHistoryPartition). Rows archived twice before the
+-- key existed are dropped, keeping the first.
+DO $$
+DECLARE
+    part TEXT;
+BEGIN
+    FOR part IN
+        SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid JOIN pg_class p ON p.oid = i.inhparent
+            WHERE p.relname = 'submission_history'
+    LOOP
+        EXECUTE format('DELETE FROM %I a USING %I b WHERE a.submissionid = b.submissionid AND a.ctid > b.ctid',
+                part, part);
+        EXECUTE format('CREATE UNIQUE INDEX IF NOT EXISTS %I ON %I (submissionid)', part || '_submissionid_key',
+                part);
+    END LOOP;
+END $$;
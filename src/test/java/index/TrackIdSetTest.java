@@ -0,0 +1,100 @@
+package index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TrackIdSetTest {
+    private static final String KEPT = "4uLU6hMCjMI75M1A2tKUQC";
+    private static final String REMOVED = "7ouMYWpwJ422jRcDASZB7P";
+    private static final String ZERO = "0000000000000000000000";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void idsSurviveReopening() throws Exception {
+        Path file = dir.resolve("approved-tracks.idx");
+
+        try (TrackIdSet set = TrackIdSet.open(file)) {
+            assertTrue(set.add(KEPT));
+            assertFalse(set.add(KEPT));
+        }
+
+        try (TrackIdSet set = TrackIdSet.open(file)) {
+            assertTrue(set.contains(KEPT));
+            assertEquals(1, set.size());
+        }
+    }
+
+    @Test
+    void idsNotRetainedStayGoneAfterReopening() throws Exception {
+        Path file = dir.resolve("approved-tracks.idx");
+
+        try (TrackIdSet set = TrackIdSet.open(file)) {
+            set.add(KEPT);
+            set.add(REMOVED);
+            set.add(ZERO);
+        }
+
+        // a later run finds REMOVED and ZERO in no volume
+        try (TrackIdSet set = TrackIdSet.open(file)) {
+            assertEquals(2, set.retainAll(Arrays.asList(KEPT, "not a track ID")));
+        }
+
+        try (TrackIdSet set = TrackIdSet.open(file)) {
+            assertTrue(set.contains(KEPT));
+            assertFalse(set.contains(REMOVED));
+            assertFalse(set.contains(ZERO));
+            assertEquals(1, set.size());
+        }
+    }
+
+    @Test
+    void retainingAcrossProbeRunsKeepsTheRestReachable() throws Exception {
+        try (TrackIdSet set = TrackIdSet.open(dir.resolve("many.idx"))) {
+            // enough IDs to grow the table and build long probe runs
+            for (int i = 0; i < 5000; i++) {
+                set.add(id(i));
+            }
+
+            List<String> even = new ArrayList<>();
+
+            for (int i = 0; i < 5000; i += 2) {
+                even.add(id(i));
+            }
+
+            assertEquals(2500, set.retainAll(even));
+            assertEquals(2500, set.size());
+
+            for (int i = 0; i < 5000; i++) {
+                assertEquals(i % 2 == 0, set.contains(id(i)), id(i));
+            }
+
+            assertEquals(2500, set.retainAll(Collections.emptyList()));
+            assertEquals(0, set.size());
+        }
+    }
+
+    // distinct well-formed IDs: a fixed prefix and the number in base 62
+    private static String id(int n) {
+        String digits = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+        StringBuilder id = new StringBuilder();
+
+        for (int i = 0; i < 5; i++) {
+            id.append(digits.charAt(n % 62));
+            n /= 62;
+        }
+
+        return "5dSFtHJg2Lq3bAwBK" + id;
+    }
+}
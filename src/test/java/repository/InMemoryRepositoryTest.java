@@ -0,0 +1,9 @@
+package repository;
+
+class InMemoryRepositoryTest extends RepositoryContract {
+
+    @Override
+    protected Repository createRepository() {
+        return new InMemoryRepository();
+    }
+}
@@ -0,0 +1,301 @@
+package repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import index.IndexedTrack;
+import index.IndexedTrack.Source;
+import stats.StatsDeltas;
+import stats.UserStats;
+import utils.ResolvedSubmission;
+import utils.Submission;
+import utils.SubmissionBatch;
+import utils.SubmissionOutcome;
+
+/**
+ * What every Repository must do, run against each implementation so they
+ * can't drift apart. Subclasses hand over an empty store.
+ */
+public abstract class RepositoryContract {
+    protected Repository repository;
+
+    /**
+     * @return a repository with no config, submissions, history, stats or
+     *         index entries
+     */
+    protected abstract Repository createRepository() throws Exception;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repository = createRepository();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (repository != null) { // null when a subclass skipped the test
+            repository.close();
+        }
+    }
+
+    // config -------
+
+    @Test
+    void missingConfigKeyReadsAsNull() {
+        assertNull(repository.readConfig("MISSING").join());
+    }
+
+    @Test
+    void readSeesWritesIssuedBeforeIt() {
+        // neither write is waited for
+        repository.saveConfig("KEY", "first");
+        repository.saveConfig("KEY", "second");
+
+        assertEquals("second", repository.readConfig("KEY").join());
+    }
+
+    @Test
+    void writesApplyInIssueOrder() {
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+
+        for (int i = 1; i <= 50; i++) {
+            writes.add(repository.saveConfig("COUNTER", Integer.toString(i)));
+        }
+
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+
+        assertEquals("50", repository.readConfig("COUNTER").join());
+    }
+
+    // submissions -------
+
+    @Test
+    void submissionsAreListedInIdOrder() {
+        repository.saveSubmission("track1", "user1", "message1");
+        repository.saveSubmission("track2", "user2", "message2");
+        repository.saveSubmission("track3", "user1", null);
+
+        List<Submission> submissions = repository.fetchAllSubmissions().join();
+
+        assertEquals(Arrays.asList("track1", "track2", "track3"), trackIds(submissions));
+        assertTrue(submissions.get(0).getSubmissionId() < submissions.get(1).getSubmissionId());
+        assertTrue(submissions.get(1).getSubmissionId() < submissions.get(2).getSubmissionId());
+        assertNull(submissions.get(2).getMessageId());
+    }
+
+    @Test
+    void repeatedTrackOfAMessageIsIgnored() {
+        repository.saveSubmission("track1", "user1", "message1");
+        repository.saveSubmission("track1", "user1", "message1"); // redelivered
+        repository.saveSubmission("track2", "user1", "message1"); // same message, another track
+        repository.saveSubmission("track3", "user1", null); // intake rows have no message
+        repository.saveSubmission("track3", "user1", null);
+
+        assertEquals(Arrays.asList("track1", "track2", "track3", "track3"),
+                trackIds(repository.fetchAllSubmissions().join()));
+    }
+
+    @Test
+    void rowMissingARequiredColumnFailsOnlyItsOwnWrite() {
+        CompletableFuture<Void> bad = repository.saveSubmission(null, "user1", "message1");
+        CompletableFuture<Void> good = repository.saveSubmission("track2", "user2", "message2");
+
+        assertThrows(CompletionException.class, bad::join);
+        good.join();
+
+        assertEquals(Collections.singletonList("track2"), trackIds(repository.fetchAllSubmissions().join()));
+    }
+
+    @Test
+    void batchOfSubmissionsIsSavedTogether() {
+        repository.saveSubmissions(Arrays.asList(new Submission("track1", "user1", "message1", 0),
+                new Submission("track2", "user1", "message1", 0),
+                new Submission("track1", "user1", "message1", 0))).join();
+
+        assertEquals(Arrays.asList("track1", "track2"), trackIds(repository.fetchAllSubmissions().join()));
+    }
+
+    @Test
+    void submissionsArePagedById() {
+        for (int i = 1; i <= 5; i++) {
+            repository.saveSubmission("track" + i, "user1", "message" + i);
+        }
+
+        SubmissionBatch first = repository.fetchSubmissionsAfter(0, 2).join();
+        SubmissionBatch second = repository.fetchSubmissionsAfter(first.getLastSubmissionId(), 2).join();
+        SubmissionBatch last = repository.fetchSubmissionsAfter(second.getLastSubmissionId(), 2).join();
+
+        assertEquals(2, first.size());
+        assertEquals("track1", first.getTrackId(0));
+        assertEquals("track3", second.getTrackId(0));
+        assertEquals(1, last.size());
+        assertEquals("track5", last.getTrackId(0));
+        assertTrue(repository.fetchSubmissionsAfter(last.getLastSubmissionId(), 2).join().isEmpty());
+    }
+
+    @Test
+    void submissionsAreFoundByTrackOrMessage() {
+        repository.saveSubmission("track1", "user1", "message1");
+        repository.saveSubmission("track2", "user1", "message2");
+        repository.saveSubmission("track3", "user1", "message3");
+
+        List<Submission> found = repository.fetchSubmissionsFor(Collections.singletonList("track1"),
+                Collections.singletonList("message3")).join();
+
+        assertEquals(Arrays.asList("track1", "track3"), trackIds(found));
+    }
+
+    @Test
+    void deletedSubmissionIsGone() {
+        repository.saveSubmission("track1", "user1", "message1");
+        repository.saveSubmission("track2", "user1", "message2");
+
+        int id = repository.fetchAllSubmissions().join().get(0).getSubmissionId();
+
+        repository.deleteSubmission(id);
+
+        assertEquals(Collections.singletonList("track2"), trackIds(repository.fetchAllSubmissions().join()));
+    }
+
+    // history -------
+
+    @Test
+    void archivedSubmissionsMoveToHistory() {
+        repository.saveSubmission("track1", "user1", "message1");
+        repository.saveSubmission("track2", "user1", "message2");
+        repository.saveSubmission("track3", "user2", "message3");
+
+        List<Submission> submissions = repository.fetchAllSubmissions().join();
+        long now = System.currentTimeMillis();
+
+        repository.archiveSubmissions(Arrays.asList(
+                new ResolvedSubmission(submissions.get(0), SubmissionOutcome.APPROVED, now - 3000, now - 2000),
+                new ResolvedSubmission(submissions.get(1), SubmissionOutcome.REMOVED, now - 3000, now - 1000)))
+                .join();
+
+        assertEquals(Collections.singletonList("track3"), trackIds(repository.fetchAllSubmissions().join()));
+
+        List<ResolvedSubmission> history = repository.fetchHistory("user1", 10).join();
+
+        assertEquals(2, history.size());
+        assertEquals("track2", history.get(0).getSubmission().getTrackId()); // newest first
+        assertEquals(SubmissionOutcome.REMOVED, history.get(0).getOutcome());
+        assertEquals(now - 1000, history.get(0).getResolvedAt());
+        assertEquals(1, repository.fetchHistory("user1", 1).join().size());
+        assertTrue(repository.fetchHistory("user2", 10).join().isEmpty());
+    }
+
+    @Test
+    void submissionIsArchivedOnlyOnce() {
+        repository.saveSubmission("track1", "user1", "message1");
+        repository.saveSubmission("track2", "user1", "message2");
+
+        List<Submission> submissions = repository.fetchAllSubmissions().join();
+        long now = System.currentTimeMillis();
+        ResolvedSubmission first = new ResolvedSubmission(submissions.get(0), SubmissionOutcome.APPROVED, now, now);
+
+        assertEquals(1, repository.archiveSubmissions(Collections.singletonList(first)).join().size());
+
+        // resolved again by another path, alongside a submission that is still live
+        List<ResolvedSubmission> archived = repository.archiveSubmissions(Arrays.asList(
+                new ResolvedSubmission(submissions.get(0), SubmissionOutcome.REMOVED, now, now + 1000),
+                new ResolvedSubmission(submissions.get(1), SubmissionOutcome.REMOVED, now, now + 1000))).join();
+
+        assertEquals(Collections.singletonList("track2"), archived.stream()
+                .map(entry -> entry.getSubmission().getTrackId()).collect(Collectors.toList()));
+
+        List<ResolvedSubmission> history = repository.fetchHistory("user1", 10).join();
+
+        assertEquals(2, history.size());
+        assertEquals(SubmissionOutcome.APPROVED, history.get(1).getOutcome()); // the first resolution stands
+    }
+
+    @Test
+    void historyIsDroppedByWholeMonths() {
+        repository.saveSubmission("track1", "user1", "message1");
+        repository.saveSubmission("track2", "user1", "message2");
+
+        List<Submission> submissions = repository.fetchAllSubmissions().join();
+        long now = System.currentTimeMillis();
+        long old = YearMonth.now(ZoneOffset.UTC).minusMonths(3).atDay(15).atStartOfDay(ZoneOffset.UTC)
+                .toInstant().toEpochMilli();
+
+        repository.archiveSubmissions(Arrays.asList(
+                new ResolvedSubmission(submissions.get(0), SubmissionOutcome.APPROVED, old, old),
+                new ResolvedSubmission(submissions.get(1), SubmissionOutcome.APPROVED, now, now))).join();
+
+        assertEquals(1, (int) repository.dropHistoryOlderThan(1).join());
+
+        List<ResolvedSubmission> history = repository.fetchHistory("user1", 10).join();
+
+        assertEquals(1, history.size());
+        assertEquals("track2", history.get(0).getSubmission().getTrackId());
+        assertEquals(0, (int) repository.dropHistoryOlderThan(0).join()); // the current month is always kept
+    }
+
+    // stats -------
+
+    @Test
+    void statsDeltasAddUp() {
+        repository.applyStatsDeltas(Arrays.asList(StatsDeltas.submissions("user1", 2, 1000),
+                StatsDeltas.outcome("user1", true, 1, 1))).join();
+        repository.applyStatsDeltas(Arrays.asList(StatsDeltas.submissions("user1", 1, 500),
+                StatsDeltas.outcome("user1", false, 0, 0))).join();
+
+        UserStats stats = repository.loadUserStats().join().stream()
+                .filter(user -> user.getUserId().equals("user1"))
+                .findFirst()
+                .orElseThrow();
+
+        assertEquals(3, stats.getSubmitted());
+        assertEquals(1, stats.getApproved());
+        assertEquals(1, stats.getRejected());
+        assertEquals(0, stats.getCurrentStreak());
+        assertEquals(1, stats.getBestStreak());
+        assertEquals(1000, stats.getLastSubmittedAt());
+    }
+
+    // duplicate index -------
+
+    @Test
+    void trackIndexIsUpdatedInPlace() {
+        IndexedTrack queued = new IndexedTrack("track1", Source.SUBMISSIONS, "ISRC1", "artist", "title");
+        IndexedTrack approved = new IndexedTrack("track1", Source.APPROVED, "ISRC1", "artist", "title");
+
+        repository.updateTrackIndex(Arrays.asList(queued,
+                new IndexedTrack("track2", Source.SUBMISSIONS, null, "artist", "other")), Collections.emptyList())
+                .join();
+        repository.updateTrackIndex(Collections.singletonList(approved), Collections.singletonList(queued)).join();
+        repository.updateTrackIndex(
+                Collections.singletonList(new IndexedTrack("track2", Source.SUBMISSIONS, "ISRC2", "artist", "other")),
+                Collections.emptyList()).join();
+
+        List<String> entries = repository.loadTrackIndex().join().stream()
+                .map(entry -> entry.getSource() + ":" + entry.getTrackId() + ":" + entry.getIsrc())
+                .sorted()
+                .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList("APPROVED:track1:ISRC1", "SUBMISSIONS:track2:ISRC2"), entries);
+    }
+
+    // private functions -------
+
+    private static List<String> trackIds(List<Submission> submissions) {
+        return submissions.stream().map(Submission::getTrackId).collect(Collectors.toList());
+    }
+}
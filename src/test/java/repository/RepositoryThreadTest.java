@@ -0,0 +1,31 @@
+package repository;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import utils.Utility;
+
+class RepositoryThreadTest {
+
+    @Test
+    void blockingConfigReadIsRefusedOnARepositoryThread() throws InterruptedException {
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread thread = new RepositoryThread(() -> {
+            try {
+                Utility.readFromDatabase("ANY_KEY");
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        }, "db-test");
+
+        thread.start();
+        thread.join();
+
+        assertTrue(error.get() instanceof IllegalStateException);
+        assertFalse(Repositories.isRepositoryThread());
+    }
+}
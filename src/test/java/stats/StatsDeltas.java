@@ -0,0 +1,29 @@
+package stats;
+
+/**
+ * Builds StatsDelta values for tests outside the stats package.
+ */
+public final class StatsDeltas {
+
+    private StatsDeltas() {
+    }
+
+    public static StatsDelta submissions(String userId, int count, long lastSubmittedAt) {
+        StatsDelta delta = new StatsDelta(userId);
+
+        for (int i = 0; i < count; i++) {
+            delta.recordSubmission(lastSubmittedAt);
+        }
+
+        return delta;
+    }
+
+    public static StatsDelta outcome(String userId, boolean approved, int currentStreak, int bestStreak) {
+        StatsDelta delta = new StatsDelta(userId);
+
+        delta.recordOutcome(approved);
+        delta.setStreaks(currentStreak, bestStreak);
+
+        return delta;
+    }
+}
@@ -0,0 +1,45 @@
+package throttle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class TokenReservationsTest {
+
+    @Test
+    void tokenBacksOneSubmissionAtATime() {
+        TokenReservations reservations = new TokenReservations();
+
+        assertEquals(1, reservations.reserve("user1", 1, 1));
+        assertEquals(0, reservations.reserve("user1", 1, 1)); // second message while the first is in flight
+        assertEquals(1, reservations.reserve("user2", 1, 1));
+
+        reservations.release("user1", 1);
+
+        assertEquals(1, reservations.reserve("user1", 1, 1));
+    }
+
+    @Test
+    void batchGetsWhatIsLeft() {
+        TokenReservations reservations = new TokenReservations();
+
+        assertEquals(2, reservations.reserve("user1", 3, 2));
+        assertEquals(1, reservations.reserve("user1", 3, 5));
+        assertEquals(0, reservations.reserve("user1", 3, 1));
+
+        reservations.release("user1", 2);
+
+        assertEquals(2, reservations.reserve("user1", 3, 5));
+    }
+
+    @Test
+    void releasingMoreThanReservedClearsTheUser() {
+        TokenReservations reservations = new TokenReservations();
+
+        reservations.reserve("user1", 2, 1);
+        reservations.release("user1", 5);
+        reservations.release("user2", 1);
+
+        assertEquals(2, reservations.reserve("user1", 2, 2));
+    }
+}